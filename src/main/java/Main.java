@@ -1,11 +1,14 @@
 import ast.nodes.ASTNode;
 import ast.nodes.ProgNode;
+import steps.ASTCache;
 import steps.FSemanter;
+import steps.Optimizer;
 import things.ASTPrinter;
 import steps.Flexer;
 import steps.Parser;
 import steps.Token;
 import things.InputFileReader;
+import things.MemoCache;
 import things.SymbolTable;
 import visitors.InterpreterVisitor;
 import visitors.PrettyVisitor;
@@ -14,12 +17,18 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.List;
 
 public class Main {
 	private static final int TOTAL_TESTS = 16;
 
 	public static void main(String[] args) {
+		if (args.length > 0) {
+			runFiles(args);
+			return;
+		}
 		PrettyVisitor visitor = new PrettyVisitor();
 		Flexer lexer = new Flexer();
 		Parser parser = new Parser();
@@ -33,6 +42,28 @@ public class Main {
 		}
 	}
 
+	//runs the given source files, each on its own, through the AST cache
+	private static void runFiles(String[] paths) {
+		for (String path : paths) {
+			try {
+				Optimizer optimizer = new Optimizer();
+				ASTNode ast = optimizer.optimize(ASTCache.analyze(Path.of(path)));
+				System.err.print(optimizer.report());
+				System.out.println(path + " output:");
+				InterpreterVisitor interpreter = new InterpreterVisitor(new SymbolTable(null), true);
+				interpreter.visitProgNode((ProgNode) ast);
+				MemoCache memo = interpreter.getMemo();
+				if (memo.getHits() + memo.getMisses() > 0) {
+					System.err.println("memo: " + memo.getHits() + " hits, " + memo.getMisses() + " misses");
+				}
+			} catch (IOException e) {
+				System.err.println("Error: " + e.getMessage() + " File: " + path);
+			} catch (Exception e) {
+				System.out.println("Error: " + e.getMessage() + " File: " + path);
+			}
+		}
+	}
+
 	private static void processTestFile(int testNumber, Flexer lexer, Parser parser, PrettyVisitor visitor,
 										FSemanter semanter, InterpreterVisitor interpreter) {
 		String inputPath = "src/main/resources/inputs/test" + testNumber + ".txt";
@@ -44,7 +75,7 @@ public class Main {
 			 Writer writerParser = new FileWriter(outputParserFile);
 			 Writer writerSemantecer = new FileWriter(outputSematecerFile)) {
 
-			String input = InputFileReader.readInputFromFile(inputPath);
+			ByteBuffer input = InputFileReader.mapInputFromFile(inputPath);
 			List<Token> tokens = tokenizeInput(lexer, input);
 			writeTokens(writerLexer, tokens);
 
@@ -54,6 +85,7 @@ public class Main {
 			semanter.analyze(ast);
 			ASTPrinter.printAST(writerSemantecer, ast, visitor, 0);
 
+			ast = new Optimizer().optimize(ast);
 			System.out.println("Test " + testNumber + " output:");
 			interpreter.visitProgNode((ProgNode) ast);
 		} catch (IOException e) {
@@ -64,7 +96,7 @@ public class Main {
 		}
 	}
 
-	private static List<Token> tokenizeInput(Flexer lexer, String input) throws Exception {
+	private static List<Token> tokenizeInput(Flexer lexer, ByteBuffer input) throws Exception {
 		lexer.setInput(input);
 		return lexer.tokenize();
 	}
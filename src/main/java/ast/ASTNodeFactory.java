@@ -1,53 +1,158 @@
 package ast;
 
 import ast.nodes.*;
+import things.Symbols;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
 
+//builds nodes with their children attached. booleans, null, small integers and common reals are
+//flyweights shared by every factory; they carry no line, positions stay with the tokens and the enclosing
+//nodes. with hash-consing on, structurally identical expressions (names, calls and everything built from
+//them included) come back as one shared instance wherever they appear. a shared node carries no line and
+//nothing else that depends on its place, types and tail marks are kept in the program's Annotations.
+//statements and binding forms (prog, func, lambda, setq, while, cond, return, break) are always built
+//fresh with their lines, and placed gives an expression standing as a statement a line of its own
 public class ASTNodeFactory {
+	private static final BooleanNode TRUE = new BooleanNode(true);
+	private static final BooleanNode FALSE = new BooleanNode(false);
+	private static final NullNode NULL = new NullNode();
+
+	private static final int SMALL_MIN = -128;
+	private static final int SMALL_MAX = 1023;
+	private static final LiteralNode[] SMALL_INTEGERS = new LiteralNode[SMALL_MAX - SMALL_MIN + 1];
+	private static final int QUARTERS = 128; //the pooled reals are the quarters from -32.0 to 32.0
+	private static final LiteralNode[] COMMON_REALS = new LiteralNode[2 * QUARTERS + 1];
+	private static final long NEGATIVE_ZERO = Double.doubleToRawLongBits(-0.0);
+
+	static {
+		for (int i = 0; i < SMALL_INTEGERS.length; i++) {
+			SMALL_INTEGERS[i] = numberLiteral(new LiteralNode((long) (SMALL_MIN + i)));
+		}
+		for (int i = 0; i < COMMON_REALS.length; i++) {
+			COMMON_REALS[i] = numberLiteral(new LiteralNode((i - QUARTERS) / 4.0));
+		}
+	}
+
+	private final Map<Shape, ASTNode> canonical;
+
+	public ASTNodeFactory() {
+		this(false);
+	}
+
+	public ASTNodeFactory(boolean hashConsing) {
+		canonical = hashConsing ? new ConcurrentHashMap<>() : null;
+	}
+
+	public boolean isHashConsing() {
+		return canonical != null;
+	}
+
+	//number of distinct shared subtrees built so far
+	public int sharedCount() {
+		return canonical == null ? 0 : canonical.size();
+	}
 
 	public ASTNode createLiteralNode(String value) {
-		return new LiteralNode(value);
+		return shared(LiteralNode.class, value, ASTNode.NO_LINE, List.of(), at -> new LiteralNode(value));
+	}
+
+	public ASTNode createIntegerNode(long value) {
+		if (value >= SMALL_MIN && value <= SMALL_MAX) {
+			return SMALL_INTEGERS[(int) value - SMALL_MIN];
+		}
+		return shared(LiteralNode.class, value, ASTNode.NO_LINE, List.of(), at -> numberLiteral(new LiteralNode(value)));
+	}
+
+	public ASTNode createRealNode(double value) {
+		double quarters = value * 4;
+		//-0.0 is left out, it prints differently from 0.0
+		if (quarters == Math.rint(quarters) && Math.abs(quarters) <= QUARTERS && Double.doubleToRawLongBits(value) != NEGATIVE_ZERO) {
+			return COMMON_REALS[(int) quarters + QUARTERS];
+		}
+		return shared(LiteralNode.class, value, ASTNode.NO_LINE, List.of(), at -> numberLiteral(new LiteralNode(value)));
+	}
+
+	//a number as the parser read it. the pooled node is used only when it prints as the source does,
+	//otherwise the node keeps the source text so that 007, -0 or 0.0001 print as they were written
+	public ASTNode createIntegerNode(long value, CharSequence source, int start, int end) {
+		ASTNode canonical = createIntegerNode(value);
+		return spelledAs(canonical, source, start, end) ? canonical : written(value, source.subSequence(start, end).toString());
+	}
+
+	public ASTNode createRealNode(double value, CharSequence source, int start, int end) {
+		ASTNode canonical = createRealNode(value);
+		return spelledAs(canonical, source, start, end) ? canonical : written(value, source.subSequence(start, end).toString());
+	}
+
+	private ASTNode written(Object value, String text) {
+		return shared(LiteralNode.class, List.of(value, text), ASTNode.NO_LINE, List.of(), at -> numberLiteral(value instanceof Long integer
+				? new LiteralNode((long) integer, text) : new LiteralNode((double) (Double) value, text)));
+	}
+
+	private static boolean spelledAs(ASTNode node, CharSequence source, int start, int end) {
+		String text = ((LiteralNode) node).getValue();
+		if (text.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			if (text.charAt(i) != source.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
 	}
 
 	public ASTNode createAtomNode(String value, int line) {
-		return new AtomNode(value, line);
+		return createAtomNode(Symbols.intern(value), line);
+	}
+
+	public ASTNode createAtomNode(int symbol, int line) {
+		return shared(AtomNode.class, symbol, line, List.of(), at -> new AtomNode(symbol, at));
 	}
 
-	public OperationNode createOperationNode(String operator, List<ASTNode> operands, boolean isUnary, int line) {
-		return new OperationNode(operator, operands, isUnary, line);
+	public OperationNode createOperationNode(Opcode operator, List<ASTNode> operands, boolean isUnary, int line) {
+		return shared(OperationNode.class, List.of(operator, isUnary), line, operands,
+				at -> withChildren(new OperationNode(operator, operands, isUnary, at), operands));
 	}
 
-	public ComparisonNode createComparisonNode(String operator, ASTNode left, ASTNode right, int line) {
-		return new ComparisonNode(operator, left, right, line);
+	public ComparisonNode createComparisonNode(Opcode operator, ASTNode left, ASTNode right, int line) {
+		return shared(ComparisonNode.class, operator, line, List.of(left, right),
+				at -> withChildren(new ComparisonNode(operator, left, right, at), left, right));
 	}
 
-	public LogicalOperationNode createLogicalOperationNode(String operator, ASTNode left, ASTNode right, int lineOp, int lineClo) {
-		return new LogicalOperationNode(operator, left, right, lineOp, lineClo);
+	public LogicalOperationNode createLogicalOperationNode(Opcode operator, ASTNode left, ASTNode right, int lineOp, int lineClo) {
+		return shared(LogicalOperationNode.class, operator, lineOp, List.of(left, right),
+				at -> withChildren(new LogicalOperationNode(operator, left, right, at, at == ASTNode.NO_LINE ? at : lineClo), left, right));
 	}
 
-	public PredicateNode createPredicateNode(String predicate, ASTNode element, int line) {
-		return new PredicateNode(predicate, element, line);
+	public PredicateNode createPredicateNode(Opcode predicate, ASTNode element, int line) {
+		return shared(PredicateNode.class, predicate, line, List.of(element),
+				at -> withChildren(new PredicateNode(predicate, element, at), element));
 	}
 
 	public HeadNode createHeadNode(ASTNode listExpr, int line) {
-		return new HeadNode(listExpr, line);
+		return shared(HeadNode.class, null, line, List.of(listExpr), at -> withChildren(new HeadNode(listExpr, at), listExpr));
 	}
 
 	public TailNode createTailNode(ASTNode listExpr, int line) {
-		return new TailNode(listExpr, line);
+		return shared(TailNode.class, null, line, List.of(listExpr), at -> withChildren(new TailNode(listExpr, at), listExpr));
 	}
 
 	public ConsNode createConsNode(ASTNode head, ASTNode tail, int line) {
-		return new ConsNode(head, tail, line);
+		return shared(ConsNode.class, null, line, List.of(head, tail), at -> withChildren(new ConsNode(head, tail, at), head, tail));
 	}
 
 	public WhileNode createWhileNode(ASTNode condition, List<ASTNode> body, int lineOp, int lineClo) {
-		return new WhileNode(condition, body, lineOp, lineClo);
+		WhileNode node = withChildren(new WhileNode(condition, body, lineOp, lineClo), condition);
+		return withChildren(node, body);
 	}
 
 	public ReturnNode createReturnNode(ASTNode returnValue, int line) {
-		return new ReturnNode(returnValue, line);
+		return withChildren(new ReturnNode(returnValue, line), returnValue);
 	}
 
 	public BreakNode createBreakNode(int line) {
@@ -58,24 +163,29 @@ public class ASTNodeFactory {
 		return new ProgNode(statements, lineOp, lineClo);
 	}
 
+	//the body statements hang directly under the function as well
 	public FunctionNode createFunctionNode(String functionName, List<String> parameters, ASTNode body, int lineOp, int lineClo) {
-		return new FunctionNode(functionName, parameters, body, lineOp, lineClo);
+		return withChildren(new FunctionNode(functionName, parameters, body, lineOp, lineClo), body.getChildren());
 	}
 
 	public FunctionCallNode createFunctionCallNode(String functionName, List<ASTNode> parameters, int line) {
-		return new FunctionCallNode(functionName, parameters, line);
+		return shared(FunctionCallNode.class, functionName, line, parameters, at -> new FunctionCallNode(functionName, parameters, at));
 	}
 
+	//typed apart from a call of a func of the same name
 	public FunctionCallNode createLambdaCallNode(String lambdaName, List<ASTNode> parameters, int line) {
-		return new FunctionCallNode(lambdaName, parameters, line);
+		return shared(FunctionCallNode.class, List.of(ASTNode.NodeType.LAMBDACALL, lambdaName), line, parameters,
+				at -> new FunctionCallNode(lambdaName, parameters, at));
 	}
 
 	public LambdaNode createLambdaNode(List<String> parameters, ASTNode body, int line) {
-		return new LambdaNode(parameters, body, line);
+		return withChildren(new LambdaNode(parameters, body, line), body);
 	}
 
+	//only the first branch is linked as children, the parser builds conditions with a single branch
 	public ConditionNode createConditionNode(List<ConditionBranch> branches, ASTNode defaultAction, int lineOp, int lineClo) {
-		return new ConditionNode(branches, defaultAction, lineOp, lineClo);
+		ConditionBranch branch = branches.getFirst();
+		return withChildren(new ConditionNode(branches, defaultAction, lineOp, lineClo), branch.getCondition(), branch.getAction());
 	}
 
 	public ConditionBranch createConditionBranch(ASTNode condition, ASTNode action) {
@@ -83,31 +193,122 @@ public class ASTNodeFactory {
 	}
 
 	public AssignmentNode createAssignmentNode(String variable, ASTNode value, int line) {
-		return new AssignmentNode(variable, value, line);
+		return withChildren(new AssignmentNode(variable, value, line), value);
 	}
 
 	public ListNode createListNode(List<ASTNode> list, int line) {
-		return new ListNode(list, line);
+		return shared(ListNode.class, null, line, list, at -> withChildren(new ListNode(list, at), list));
 	}
 
 	public NotNode createNotNode(ASTNode element, int line) {
-		return new NotNode(element, line);
+		return shared(NotNode.class, null, line, List.of(element), at -> withChildren(new NotNode(element, at), element));
 	}
 
 	public QuoteNode createQuoteNode(ASTNode value, int line) {
-		return new QuoteNode(value, line);
+		return shared(QuoteNode.class, null, line, List.of(value), at -> withChildren(new QuoteNode(value, at), value));
 	}
 
 	public EvalNode createEvalNode(ASTNode node, int line) {
-		return new EvalNode(node, line);
+		return shared(EvalNode.class, null, line, List.of(node), at -> withChildren(new EvalNode(node, at), node));
+	}
+
+	//the node to stand as a statement read at a line. a shared node has no line of its own, so it gets a copy
+	//of itself that has one and the same children; any other node is already its own and is returned as it is
+	public ASTNode placed(ASTNode node, int line) {
+		if (canonical == null || line == ASTNode.NO_LINE || node.getLine() != ASTNode.NO_LINE) {
+			return node;
+		}
+		ASTNode copy = switch (node) {
+			case AtomNode n -> new AtomNode(n.getSymbol(), line);
+			case OperationNode n -> new OperationNode(n.getOpcode(), n.getOperands(), false, line);
+			case ComparisonNode n -> new ComparisonNode(n.getOpcode(), n.getLeftElement(), n.getRightElement(), line);
+			case LogicalOperationNode n -> new LogicalOperationNode(n.getOpcode(), n.getLeftElement(), n.getRightElement(), line, line);
+			case PredicateNode n -> new PredicateNode(n.getOpcode(), n.getElement(), line);
+			case HeadNode n -> new HeadNode(n.getHead(), line);
+			case TailNode n -> new TailNode(n.getTail(), line);
+			case ConsNode n -> new ConsNode(n.getHead(), n.getTail(), line);
+			case ListNode n -> new ListNode(n.getElements(), line);
+			case NotNode n -> new NotNode(n.getElement(), line);
+			case QuoteNode n -> new QuoteNode(n.getQuotedExpr(), line);
+			case EvalNode n -> new EvalNode(n.getNode(), line);
+			case FunctionCallNode n -> new FunctionCallNode(n.getFunctionName(), n.getParameters(), line);
+			default -> node;
+		};
+		if (copy != node) {
+			withChildren(copy, node.getChildren());
+			copy.setType(node.getType());
+		}
+		return copy;
+	}
+
+	public ASTNode createNullNode() {
+		return NULL;
 	}
 
-	public ASTNode createNullNode(int line) {
-		return new NullNode(line);
+	public ASTNode createBooleanNode(boolean value) {
+		return value ? TRUE : FALSE;
 	}
 
-	public ASTNode createBooleanNode(boolean value, int line) {
-		return new BooleanNode(value, line);
+	//the parser types number literals as atoms
+	private static LiteralNode numberLiteral(LiteralNode node) {
+		node.setType(ASTNode.NodeType.ATOM);
+		return node;
+	}
+
+	private static <T extends ASTNode> T withChildren(T node, ASTNode... children) {
+		for (ASTNode child : children) {
+			node.addChild(child);
+		}
+		return node;
+	}
+
+	private static <T extends ASTNode> T withChildren(T node, List<ASTNode> children) {
+		for (ASTNode child : children) {
+			node.addChild(child);
+		}
+		return node;
+	}
+
+	//create gets the line to build the node with: the given one for a fresh node, none for a shared one
+	@SuppressWarnings("unchecked")
+	private <T extends ASTNode> T shared(Class<T> kind, Object payload, int line, List<ASTNode> children, IntFunction<T> create) {
+		if (canonical == null) {
+			return create.apply(line);
+		}
+		Shape shape = new Shape(kind, payload, List.copyOf(children));
+		ASTNode existing = canonical.get(shape);
+		if (existing != null) {
+			return (T) existing;
+		}
+		T node = create.apply(ASTNode.NO_LINE);
+		existing = canonical.putIfAbsent(shape, node);
+		return existing == null ? node : (T) existing;
+	}
+
+	//children are canonical already, so comparing them by identity compares them structurally
+	private record Shape(Class<?> kind, Object payload, List<ASTNode> children) {
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof Shape shape) || kind != shape.kind || !Objects.equals(payload, shape.payload)
+					|| children.size() != shape.children.size()) {
+				return false;
+			}
+			for (int i = 0; i < children.size(); i++) {
+				if (children.get(i) != shape.children.get(i)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = 31 * kind.hashCode() + Objects.hashCode(payload);
+			for (ASTNode child : children) {
+				hash = 31 * hash + System.identityHashCode(child);
+			}
+			return hash;
+		}
 	}
 }
 
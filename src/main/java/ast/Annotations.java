@@ -0,0 +1,67 @@
+package ast;
+
+import ast.nodes.ASTNode;
+import ast.nodes.ASTNode.ValueType;
+import ast.nodes.FunctionCallNode;
+import ast.nodes.ProgNode;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+//what the passes found out about the nodes of one program, kept beside the tree so that nodes stay as the
+//factory built them and can be shared. the program's root holds it. a shared node has one entry for every
+//place it stands in: its type is the same everywhere since types are inferred per symbol for the whole
+//program, and a call is only a tail call when it is one wherever it appears
+public class Annotations {
+	private final Map<ASTNode, ValueType> valueTypes;
+	private final Map<FunctionCallNode, Boolean> tailCalls;
+
+	public Annotations() {
+		this(new IdentityHashMap<>(), new IdentityHashMap<>());
+	}
+
+	private Annotations(Map<ASTNode, ValueType> valueTypes, Map<FunctionCallNode, Boolean> tailCalls) {
+		this.valueTypes = valueTypes;
+		this.tailCalls = tailCalls;
+	}
+
+	//the table of a program, made when it has none yet. any other root gets a table of its own
+	public static Annotations of(ASTNode root) {
+		if (!(root instanceof ProgNode program)) {
+			return new Annotations();
+		}
+		if (program.getAnnotations() == null) {
+			program.setAnnotations(new Annotations());
+		}
+		return program.getAnnotations();
+	}
+
+	//null when the tree was not analyzed
+	public ValueType valueType(ASTNode node) {
+		return valueTypes.get(node);
+	}
+
+	public void setValueType(ASTNode node, ValueType type) {
+		if (type == null) {
+			valueTypes.remove(node);
+		} else {
+			valueTypes.put(node, type);
+		}
+	}
+
+	public boolean isTail(FunctionCallNode call) {
+		return tailCalls.getOrDefault(call, false);
+	}
+
+	public void markTail(FunctionCallNode call, boolean tail) {
+		tailCalls.merge(call, tail, Boolean::logicalAnd);
+	}
+
+	public void clearTails() {
+		tailCalls.clear();
+	}
+
+	public Annotations copy() {
+		return new Annotations(new IdentityHashMap<>(valueTypes), new IdentityHashMap<>(tailCalls));
+	}
+}
@@ -0,0 +1,645 @@
+package ast;
+
+import ast.nodes.*;
+import things.Symbols;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+//compact AST: one row per node in parallel arrays, nodes numbered in pre-order so a subtree is the
+//range [i, end(i)). children are linked through first/next, strings and numbers live in a shared
+//constant pool. this is a storage format: the rows are what gets written and read back, passes and
+//visitors run on the tree toTree() rebuilds once at load
+public class FlatAST {
+	public enum Kind {
+		ASSIGNMENT, ATOM, BOOLEAN, BREAK, COMPARISON, CONDITION, CONS, EVAL, FUNCTION, FUNCTIONCALL,
+		HEAD, LAMBDA, LAMBDACALL, LIST, LITERAL, LOGICALOP, NOT, NULL, OPERATION, PREDICATE, PROG,
+		QUOTE, RETURN, TAIL, WHILE
+	}
+
+	private static final Kind[] KINDS = Kind.values();
+	private static final ASTNode.NodeType[] TYPES = ASTNode.NodeType.values();
+	private static final ASTNode.ValueType[] VALUE_TYPES = ASTNode.ValueType.values();
+	private static final int OPCODES = Opcode.values().length;
+	private static final int NONE = -1;
+	private static final ASTNodeFactory LEAVES = new ASTNodeFactory(); //for the shared leaf instances
+
+	private byte[] kinds;
+	private byte[] types; //NodeType ordinal + 1, 0 when unset
+	private byte[] valueTypes; //ValueType ordinal + 1, 0 when not inferred
+	private int[] first;
+	private int[] next;
+	private int[] payloads; //symbol, constant index, opcode, boolean or branch count depending on kind
+	private int[] lines;
+	private int[] endLines;
+	private int size;
+
+	private final List<Object> constants = new ArrayList<>();
+	private Map<Object, Integer> constantIndex = new HashMap<>();
+	private Annotations annotations; //while encoding, the types of the tree's nodes
+
+	//a number constant that keeps the text it was written with
+	private record Written(Object number, String text) {
+	}
+
+	private FlatAST(int capacity) {
+		kinds = new byte[capacity];
+		types = new byte[capacity];
+		valueTypes = new byte[capacity];
+		first = new int[capacity];
+		next = new int[capacity];
+		payloads = new int[capacity];
+		lines = new int[capacity];
+		endLines = new int[capacity];
+	}
+
+	public static FlatAST of(ASTNode root) {
+		FlatAST ast = new FlatAST(64);
+		ast.annotations = root instanceof ProgNode program ? program.getAnnotations() : null;
+		ast.encode(root);
+		ast.constantIndex = null;
+		ast.annotations = null;
+		ast.resize(ast.size);
+		return ast;
+	}
+
+	//symbol ids are only meaningful inside one process, so symbols are written by name and interned
+	//again on read
+	public void write(DataOutput out) throws IOException {
+		Map<Integer, Integer> localSymbols = new HashMap<>();
+		List<Integer> symbolOrder = new ArrayList<>();
+		int[] localPayloads = payloads.clone();
+		for (int i = 0; i < size; i++) {
+			if (hasSymbol(i)) {
+				Integer local = localSymbols.get(payloads[i]);
+				if (local == null) {
+					local = symbolOrder.size();
+					localSymbols.put(payloads[i], local);
+					symbolOrder.add(payloads[i]);
+				}
+				localPayloads[i] = local;
+			}
+		}
+
+		out.writeInt(size);
+		out.writeInt(symbolOrder.size());
+		for (int symbol : symbolOrder) {
+			out.writeUTF(Symbols.name(symbol));
+		}
+		out.writeInt(constants.size());
+		for (Object constant : constants) {
+			writeConstant(out, constant);
+		}
+		out.write(kinds, 0, size);
+		out.write(types, 0, size);
+		out.write(valueTypes, 0, size);
+		for (int[] column : new int[][]{first, next, localPayloads, lines, endLines}) {
+			for (int i = 0; i < size; i++) {
+				out.writeInt(column[i]);
+			}
+		}
+	}
+
+	public static FlatAST read(DataInput in) throws IOException {
+		int size = in.readInt();
+		if (size <= 0) {
+			throw new IOException("ERROR: CORRUPT FLAT AST SIZE " + size);
+		}
+		int[] symbols = new int[in.readInt()];
+		for (int s = 0; s < symbols.length; s++) {
+			symbols[s] = Symbols.intern(in.readUTF());
+		}
+		FlatAST ast = new FlatAST(size);
+		int constantCount = in.readInt();
+		for (int c = 0; c < constantCount; c++) {
+			ast.constants.add(readConstant(in));
+		}
+		ast.constantIndex = null;
+		in.readFully(ast.kinds);
+		in.readFully(ast.types);
+		in.readFully(ast.valueTypes);
+		for (int[] column : new int[][]{ast.first, ast.next, ast.payloads, ast.lines, ast.endLines}) {
+			for (int i = 0; i < size; i++) {
+				column[i] = in.readInt();
+			}
+		}
+		ast.size = size;
+		//every row but the root is linked exactly once and only to later rows, so walking the links ends
+		boolean[] linked = new boolean[size];
+		for (int i = 0; i < size; i++) {
+			if (ast.kinds[i] < 0 || ast.kinds[i] >= KINDS.length || ast.types[i] < 0 || ast.types[i] > TYPES.length
+					|| ast.valueTypes[i] < 0 || ast.valueTypes[i] > VALUE_TYPES.length
+					|| !ast.link(i, ast.first[i], linked) || !ast.link(i, ast.next[i], linked) || !ast.validPayload(i, symbols.length)) {
+				throw new IOException("ERROR: CORRUPT FLAT AST ROW " + i);
+			}
+			if (ast.hasSymbol(i)) {
+				ast.payloads[i] = symbols[ast.payloads[i]];
+			}
+		}
+		if (ast.next[0] != NONE) {
+			throw new IOException("ERROR: CORRUPT FLAT AST ROW 0");
+		}
+		for (int i = 1; i < size; i++) {
+			if (!linked[i]) {
+				throw new IOException("ERROR: CORRUPT FLAT AST ROW " + i);
+			}
+		}
+		return ast;
+	}
+
+	private boolean link(int row, int target, boolean[] linked) {
+		if (target == NONE) {
+			return true;
+		}
+		if (target <= row || target >= size || linked[target]) {
+			return false;
+		}
+		linked[target] = true;
+		return true;
+	}
+
+	private boolean validPayload(int row, int symbolCount) {
+		int payload = payloads[row];
+		return switch (kind(row)) {
+			case ASSIGNMENT, ATOM, FUNCTIONCALL -> payload == Symbols.NONE || payload >= 0 && payload < symbolCount;
+			case FUNCTION, LAMBDA -> payload >= 0 && payload < constants.size() && constants.get(payload) instanceof List<?>;
+			case LAMBDACALL -> payload >= 0 && payload < constants.size() && constants.get(payload) instanceof String;
+			case LITERAL -> payload >= 0 && payload < constants.size();
+			case COMPARISON, LOGICALOP, OPERATION, PREDICATE -> payload >= 0 && payload < OPCODES;
+			default -> true;
+		};
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public Kind kind(int index) {
+		return KINDS[kinds[index]];
+	}
+
+	public ASTNode.NodeType type(int index) {
+		return types[index] == 0 ? null : TYPES[types[index] - 1];
+	}
+
+	public ASTNode.ValueType valueType(int index) {
+		return valueTypes[index] == 0 ? null : VALUE_TYPES[valueTypes[index] - 1];
+	}
+
+	public int firstChild(int index) {
+		return first[index];
+	}
+
+	public int nextSibling(int index) {
+		return next[index];
+	}
+
+	public int payload(int index) {
+		return payloads[index];
+	}
+
+	public int line(int index) {
+		return lines[index];
+	}
+
+	public int endLine(int index) {
+		return endLines[index];
+	}
+
+	public Object constant(int index) {
+		return constants.get(index);
+	}
+
+	public int constantCount() {
+		return constants.size();
+	}
+
+	//one past the last node of the subtree rooted at index
+	public int end(int index) {
+		int last = index;
+		for (int child = first[last]; child != NONE; child = first[last]) {
+			while (next[child] != NONE) {
+				child = next[child];
+			}
+			last = child;
+		}
+		return last + 1;
+	}
+
+	//rebuilds the whole tree; children come after their parent, so walking backwards finds every child
+	//already built. the types go to the annotations of the rebuilt program
+	public ASTNode toTree() {
+		Annotations types = new Annotations();
+		ASTNode[] built = new ASTNode[size];
+		for (int i = size - 1; i >= 0; i--) {
+			List<ASTNode> children = new ArrayList<>();
+			for (int child = first[i]; child != NONE; child = next[child]) {
+				children.add(built[child]);
+			}
+			ASTNode node = decode(i, children);
+			node.setType(type(i));
+			types.setValueType(node, valueType(i));
+			built[i] = node;
+		}
+		if (built[0] instanceof ProgNode program) {
+			program.setAnnotations(types);
+		}
+		return built[0];
+	}
+
+	private ASTNode decode(int i, List<ASTNode> parts) {
+		int line = lines[i];
+		int payload = payloads[i];
+		switch (kind(i)) {
+			case ASSIGNMENT -> {
+				return withChildren(new AssignmentNode(Symbols.name(payload), parts.getFirst(), line), parts);
+			}
+			case ATOM -> {
+				return new AtomNode(payload, line);
+			}
+			case BOOLEAN -> {
+				return leaf(LEAVES.createBooleanNode(payload != 0), i, () -> new BooleanNode(payload != 0));
+			}
+			case BREAK -> {
+				return new BreakNode(line);
+			}
+			case COMPARISON -> {
+				return withChildren(new ComparisonNode(Opcode.of(payload), parts.get(0), parts.get(1), line), parts);
+			}
+			case CONDITION -> {
+				int branchCount = payload >> 1;
+				List<ConditionBranch> branches = new ArrayList<>();
+				List<ASTNode> children = new ArrayList<>();
+				for (int b = 0; b < branchCount; b++) {
+					branches.add(new ConditionBranch(parts.get(2 * b), parts.get(2 * b + 1)));
+					children.add(parts.get(2 * b));
+					children.add(parts.get(2 * b + 1));
+				}
+				ASTNode defaultAction = (payload & 1) != 0 ? parts.getLast() : null;
+				return withChildren(new ConditionNode(branches, defaultAction, line, endLines[i]), children);
+			}
+			case CONS -> {
+				return withChildren(new ConsNode(parts.get(0), parts.get(1), line), parts);
+			}
+			case EVAL -> {
+				return withChildren(new EvalNode(parts.getFirst(), line), parts);
+			}
+			case FUNCTION -> {
+				@SuppressWarnings("unchecked")
+				List<String> header = (List<String>) constant(payload);
+				ASTNode body = parts.getFirst();
+				FunctionNode function = new FunctionNode(header.getFirst(), new ArrayList<>(header.subList(1, header.size())),
+						body, line, endLines[i]);
+				//the parser hangs the body statements directly under the function as well
+				return withChildren(function, body.getChildren());
+			}
+			case FUNCTIONCALL -> {
+				return new FunctionCallNode(Symbols.name(payload), parts, line);
+			}
+			case HEAD -> {
+				return withChildren(new HeadNode(parts.getFirst(), line), parts);
+			}
+			case LAMBDA -> {
+				@SuppressWarnings("unchecked")
+				List<String> parameters = (List<String>) constant(payload);
+				return withChildren(new LambdaNode(new ArrayList<>(parameters), parts.getFirst(), line), parts);
+			}
+			case LAMBDACALL -> {
+				return new LambdaCallNode((String) constant(payload), parts, line);
+			}
+			case LIST -> {
+				return withChildren(new ListNode(parts, line), parts);
+			}
+			case LITERAL -> {
+				Object value = constant(payload);
+				if (value instanceof Written written) {
+					return written.number() instanceof Long integer ? new LiteralNode((long) integer, written.text())
+							: new LiteralNode((double) (Double) written.number(), written.text());
+				}
+				if (value instanceof Long integer) {
+					return leaf(LEAVES.createIntegerNode(integer), i, () -> new LiteralNode((long) integer));
+				} else if (value instanceof Double real) {
+					return leaf(LEAVES.createRealNode(real), i, () -> new LiteralNode((double) real));
+				}
+				return new LiteralNode((String) value);
+			}
+			case LOGICALOP -> {
+				return withChildren(new LogicalOperationNode(Opcode.of(payload), parts.get(0), parts.get(1), line, endLines[i]), parts);
+			}
+			case NOT -> {
+				return withChildren(new NotNode(parts.getFirst(), line), parts);
+			}
+			case NULL -> {
+				return leaf(LEAVES.createNullNode(), i, NullNode::new);
+			}
+			case OPERATION -> {
+				return withChildren(new OperationNode(Opcode.of(payload), parts, false, line), parts);
+			}
+			case PREDICATE -> {
+				return withChildren(new PredicateNode(Opcode.of(payload), parts.getFirst(), line), parts);
+			}
+			case PROG -> {
+				return new ProgNode(parts, line, endLines[i]);
+			}
+			case QUOTE -> {
+				return withChildren(new QuoteNode(parts.getFirst(), line), parts);
+			}
+			case RETURN -> {
+				return withChildren(new ReturnNode(parts.getFirst(), line), parts);
+			}
+			case TAIL -> {
+				return withChildren(new TailNode(parts.getFirst(), line), parts);
+			}
+			case WHILE -> {
+				return withChildren(new WhileNode(parts.getFirst(), new ArrayList<>(parts.subList(1, parts.size())), line, endLines[i]), parts);
+			}
+		}
+		throw new IllegalStateException("ERROR: UNKNOWN FLAT NODE KIND " + kinds[i]);
+	}
+
+	//the shared leaf, unless the row was typed differently and needs a node of its own
+	private ASTNode leaf(ASTNode shared, int row, Supplier<ASTNode> fresh) {
+		return shared.getType() == type(row) ? shared : fresh.get();
+	}
+
+	private static ASTNode withChildren(ASTNode node, List<ASTNode> children) {
+		for (ASTNode child : children) {
+			node.addChild(child);
+		}
+		return node;
+	}
+
+	//pre-order, with an explicit stack so deep trees do not overflow
+	private void encode(ASTNode root) {
+		Deque<ASTNode> pending = new ArrayDeque<>();
+		Deque<int[]> parents = new ArrayDeque<>(); //parent row and its last linked child, shared by siblings
+		pending.push(root);
+		parents.push(new int[]{NONE, NONE});
+
+		while (!pending.isEmpty()) {
+			ASTNode node = pending.pop();
+			int[] parent = parents.pop();
+			int row = add(node);
+			if (parent[1] != NONE) {
+				next[parent[1]] = row;
+			} else if (parent[0] != NONE) {
+				first[parent[0]] = row;
+			}
+			parent[1] = row;
+
+			List<ASTNode> parts = parts(node);
+			int[] own = {row, NONE};
+			for (int p = parts.size() - 1; p >= 0; p--) {
+				pending.push(parts.get(p));
+				parents.push(own);
+			}
+		}
+	}
+
+	private int add(ASTNode node) {
+		if (size == kinds.length) {
+			resize(size * 2);
+		}
+		int row = size++;
+		first[row] = NONE;
+		next[row] = NONE;
+		types[row] = (byte) (node.getType() == null ? 0 : node.getType().ordinal() + 1);
+		ASTNode.ValueType valueType = annotations == null ? null : annotations.valueType(node);
+		valueTypes[row] = (byte) (valueType == null ? 0 : valueType.ordinal() + 1);
+
+		Kind kind;
+		int payload = 0;
+		int line = 0;
+		int endLine = 0;
+		if (node instanceof AssignmentNode n) {
+			kind = Kind.ASSIGNMENT;
+			payload = n.getSymbol();
+			line = n.getLine();
+		} else if (node instanceof AtomNode n) {
+			kind = Kind.ATOM;
+			payload = n.getSymbol();
+			line = n.getLine();
+		} else if (node instanceof BooleanNode n) {
+			kind = Kind.BOOLEAN;
+			payload = n.getValue() ? 1 : 0;
+		} else if (node instanceof BreakNode n) {
+			kind = Kind.BREAK;
+			line = n.getLine();
+		} else if (node instanceof ComparisonNode n) {
+			kind = Kind.COMPARISON;
+			payload = n.getOpcode().ordinal();
+			line = n.getLine();
+		} else if (node instanceof ConditionNode n) {
+			kind = Kind.CONDITION;
+			payload = n.getBranches().size() << 1 | (n.getDefaultAction() != null ? 1 : 0);
+			line = n.getLineOp();
+			endLine = n.getLineClo();
+		} else if (node instanceof ConsNode n) {
+			kind = Kind.CONS;
+			line = n.getLine();
+		} else if (node instanceof EvalNode n) {
+			kind = Kind.EVAL;
+			line = n.getLine();
+		} else if (node instanceof FunctionNode n) {
+			kind = Kind.FUNCTION;
+			List<String> header = new ArrayList<>();
+			header.add(n.getFunctionName());
+			header.addAll(n.getParameters());
+			payload = constant(header);
+			line = n.getLineOp();
+			endLine = n.getLineClo();
+		} else if (node instanceof FunctionCallNode n) {
+			kind = Kind.FUNCTIONCALL;
+			payload = n.getSymbol();
+			line = n.getLine();
+		} else if (node instanceof HeadNode n) {
+			kind = Kind.HEAD;
+			line = n.getLine();
+		} else if (node instanceof LambdaNode n) {
+			kind = Kind.LAMBDA;
+			payload = constant(List.copyOf(n.getParameters()));
+			line = n.getLine();
+		} else if (node instanceof LambdaCallNode n) {
+			kind = Kind.LAMBDACALL;
+			payload = constant(n.getLambdaName());
+			line = n.getLine();
+		} else if (node instanceof ListNode n) {
+			kind = Kind.LIST;
+			line = n.getLine();
+		} else if (node instanceof LiteralNode n) {
+			kind = Kind.LITERAL;
+			Object value = n.isInteger() ? (Object) n.getIntegerValue() : n.isReal() ? (Object) n.getRealValue() : n.getValue();
+			payload = constant(n.isWritten() ? new Written(value, n.getValue()) : value);
+		} else if (node instanceof LogicalOperationNode n) {
+			kind = Kind.LOGICALOP;
+			payload = n.getOpcode().ordinal();
+			line = n.getLineOp();
+			endLine = n.getLineClo();
+		} else if (node instanceof NotNode n) {
+			kind = Kind.NOT;
+			line = n.getLine();
+		} else if (node instanceof NullNode) {
+			kind = Kind.NULL;
+		} else if (node instanceof OperationNode n) {
+			kind = Kind.OPERATION;
+			payload = n.getOpcode().ordinal();
+			line = n.getLine();
+		} else if (node instanceof PredicateNode n) {
+			kind = Kind.PREDICATE;
+			payload = n.getOpcode().ordinal();
+			line = n.getLine();
+		} else if (node instanceof ProgNode n) {
+			kind = Kind.PROG;
+			line = n.getLineOp();
+			endLine = n.getLineClo();
+		} else if (node instanceof QuoteNode n) {
+			kind = Kind.QUOTE;
+			line = n.getLine();
+		} else if (node instanceof ReturnNode n) {
+			kind = Kind.RETURN;
+			line = n.getLine();
+		} else if (node instanceof TailNode n) {
+			kind = Kind.TAIL;
+			line = n.getLine();
+		} else if (node instanceof WhileNode n) {
+			kind = Kind.WHILE;
+			line = n.getLineOp();
+			endLine = n.getLineClo();
+		} else {
+			throw new IllegalArgumentException("ERROR: CANNOT FLATTEN " + node.getClass().getSimpleName());
+		}
+		kinds[row] = (byte) kind.ordinal();
+		payloads[row] = payload;
+		lines[row] = line;
+		endLines[row] = endLine;
+		return row;
+	}
+
+	private void resize(int capacity) {
+		kinds = Arrays.copyOf(kinds, capacity);
+		types = Arrays.copyOf(types, capacity);
+		valueTypes = Arrays.copyOf(valueTypes, capacity);
+		first = Arrays.copyOf(first, capacity);
+		next = Arrays.copyOf(next, capacity);
+		payloads = Arrays.copyOf(payloads, capacity);
+		lines = Arrays.copyOf(lines, capacity);
+		endLines = Arrays.copyOf(endLines, capacity);
+	}
+
+	private boolean hasSymbol(int row) {
+		Kind kind = kind(row);
+		return (kind == Kind.ASSIGNMENT || kind == Kind.ATOM || kind == Kind.FUNCTIONCALL) && payloads[row] != Symbols.NONE;
+	}
+
+	private static void writeConstant(DataOutput out, Object constant) throws IOException {
+		if (constant instanceof Long integer) {
+			out.writeByte('I');
+			out.writeLong(integer);
+		} else if (constant instanceof Double real) {
+			out.writeByte('R');
+			out.writeDouble(real);
+		} else if (constant instanceof String string) {
+			out.writeByte('S');
+			out.writeUTF(string);
+		} else if (constant instanceof Written written) {
+			out.writeByte('W');
+			writeConstant(out, written.number());
+			out.writeUTF(written.text());
+		} else if (constant instanceof List<?> names) {
+			out.writeByte('L');
+			out.writeInt(names.size());
+			for (Object name : names) {
+				out.writeUTF((String) name);
+			}
+		} else {
+			throw new IOException("ERROR: CANNOT WRITE CONSTANT " + constant);
+		}
+	}
+
+	private static Object readConstant(DataInput in) throws IOException {
+		byte tag = in.readByte();
+		switch (tag) {
+			case 'I' -> {
+				return in.readLong();
+			}
+			case 'R' -> {
+				return in.readDouble();
+			}
+			case 'S' -> {
+				return in.readUTF();
+			}
+			case 'W' -> {
+				return new Written(readConstant(in), in.readUTF());
+			}
+			case 'L' -> {
+				int count = in.readInt();
+				List<String> names = new ArrayList<>(count);
+				for (int n = 0; n < count; n++) {
+					names.add(in.readUTF());
+				}
+				return List.copyOf(names);
+			}
+		}
+		throw new IOException("ERROR: UNKNOWN CONSTANT TAG " + tag);
+	}
+
+	//equal constants share one pool entry
+	private int constant(Object value) {
+		Integer index = constantIndex.get(value);
+		if (index == null) {
+			index = constants.size();
+			constants.add(value);
+			constantIndex.put(value, index);
+		}
+		return index;
+	}
+
+	//the node's own subtrees in row order
+	private static List<ASTNode> parts(ASTNode node) {
+		if (node instanceof AssignmentNode n) return List.of(n.getValue());
+		if (node instanceof ComparisonNode n) return List.of(n.getLeftElement(), n.getRightElement());
+		if (node instanceof ConditionNode n) {
+			List<ASTNode> parts = new ArrayList<>();
+			for (ConditionBranch branch : n.getBranches()) {
+				parts.add(branch.getCondition());
+				parts.add(branch.getAction());
+			}
+			if (n.getDefaultAction() != null) {
+				parts.add(n.getDefaultAction());
+			}
+			return parts;
+		}
+		if (node instanceof ConsNode n) return List.of(n.getHead(), n.getTail());
+		if (node instanceof EvalNode n) return List.of(n.getNode());
+		if (node instanceof FunctionNode n) return List.of(n.getBody());
+		if (node instanceof FunctionCallNode n) return n.getParameters();
+		if (node instanceof HeadNode n) return List.of(n.getHead());
+		if (node instanceof LambdaNode n) return List.of(n.getBody());
+		if (node instanceof LambdaCallNode n) return n.getParameters();
+		if (node instanceof ListNode n) return n.getElements();
+		if (node instanceof LogicalOperationNode n) return List.of(n.getLeftElement(), n.getRightElement());
+		if (node instanceof NotNode n) return List.of(n.getElement());
+		if (node instanceof OperationNode n) return n.getOperands();
+		if (node instanceof PredicateNode n) return List.of(n.getElement());
+		if (node instanceof ProgNode n) return n.getStatements();
+		if (node instanceof QuoteNode n) return List.of(n.getQuotedExpr());
+		if (node instanceof ReturnNode n) return List.of(n.getReturnValue());
+		if (node instanceof TailNode n) return List.of(n.getTail());
+		if (node instanceof WhileNode n) {
+			List<ASTNode> parts = new ArrayList<>();
+			parts.add(n.getCondition());
+			parts.addAll(n.getBody());
+			return parts;
+		}
+		return List.of();
+	}
+}
@@ -8,9 +8,11 @@ import java.util.List;
 
 // Base class for AST nodes
 public abstract class ASTNode {
+	public static final int NO_LINE = -1; //literals and, when hash-consing, shared expressions carry no line
+
 	private NodeType type;
 
-	private ASTNode parent;
+	//no parent pointer: a node may be shared between several parents
 	private final List<ASTNode> children;
 
 	public ASTNode() {
@@ -22,14 +24,9 @@ public abstract class ASTNode {
 	}
 
 	public void addChild(ASTNode child) {
-		child.setParent(this);
 		children.add(child);
 	}
 
-	public void setParent(ASTNode parent) {
-		this.parent = parent;
-	}
-
 	public abstract <R> R accept(ASTVisitor<R> visitor);
 
 	public NodeType getType() {
@@ -40,6 +37,21 @@ public abstract class ASTNode {
 		this.type = type;
 	}
 
+	//the line the node was read at, NO_LINE when it has none of its own
+	public int getLine() {
+		return NO_LINE;
+	}
+
+	//what evaluating the node yields: INT is an Integer or Long, REAL a Double, LIST a List. inferred types
+	//are kept in the program's Annotations, a shared node may stand in several places
+	public enum ValueType {
+		INT,
+		REAL,
+		BOOL,
+		LIST,
+		UNKNOWN
+	}
+
 	public enum NodeType {
 		ASSIGNMENT,
 		ATOM,
@@ -1,15 +1,18 @@
 package ast.nodes;
 
+import things.Symbols;
 import visitors.ASTVisitor;
 
 //setq
 public class AssignmentNode extends ASTNode {
 	String variable;
+	int symbol;
 	ASTNode value;
 	int line;
 
 	public AssignmentNode(String variable, ASTNode value, int line) {
 		this.variable = variable;
+		this.symbol = Symbols.intern(variable);
 		this.value = value;
 		this.line = line;
 	}
@@ -23,6 +26,10 @@ public class AssignmentNode extends ASTNode {
 		return variable;
 	}
 
+	public int getSymbol() {
+		return symbol;
+	}
+
 	public ASTNode getValue() {
 		return value;
 	}
@@ -1,15 +1,22 @@
 package ast.nodes;
 
+import things.Symbols;
 import visitors.ASTVisitor;
 
 //atom
 public class AtomNode extends ASTNode {
 	String value;
+	int symbol;
 	int line;
 	String eq;
 
 	public AtomNode(String value, int line) {
-		this.value = value;
+		this(Symbols.intern(value), line);
+	}
+
+	public AtomNode(int symbol, int line) {
+		this.value = Symbols.name(symbol);
+		this.symbol = symbol;
 		this.line = line;
 		this.eq = null;
 	}
@@ -23,6 +30,10 @@ public class AtomNode extends ASTNode {
 		return value;
 	}
 
+	public int getSymbol() {
+		return symbol;
+	}
+
 	public int getLine() {
 		return line;
 	}
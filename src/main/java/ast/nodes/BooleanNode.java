@@ -2,13 +2,13 @@ package ast.nodes;
 
 import visitors.ASTVisitor;
 
+//immutable, ASTNodeFactory hands out one instance per value
 public class BooleanNode extends ASTNode {
-	Boolean value;
-	int line;
+	final Boolean value;
 
-	public BooleanNode(Boolean value, int line) {
+	public BooleanNode(Boolean value) {
 		this.value = value;
-		this.line = line;
+		setType(NodeType.BOOL);
 	}
 
 	@Override
@@ -16,10 +16,6 @@ public class BooleanNode extends ASTNode {
 		return visitor.visitBoolNode(this);
 	}
 
-	public int getLine() {
-		return line;
-	}
-
 	public Boolean getValue() {
 		return value;
 	}
@@ -3,12 +3,12 @@ package ast.nodes;
 import visitors.ASTVisitor;
 
 public class ComparisonNode extends ASTNode {
-	String comparison;
+	Opcode comparison;
 	ASTNode leftElement;
 	ASTNode rightElement;
 	int line;
 
-	public ComparisonNode(String comparison, ASTNode leftElement, ASTNode rightElement, int line) {
+	public ComparisonNode(Opcode comparison, ASTNode leftElement, ASTNode rightElement, int line) {
 		this.comparison = comparison;
 		this.leftElement = leftElement;
 		this.rightElement = rightElement;
@@ -20,10 +20,14 @@ public class ComparisonNode extends ASTNode {
 		return visitor.visitComparisonNode(this);
 	}
 
-	public String getComparison() {
+	public Opcode getOpcode() {
 		return comparison;
 	}
 
+	public String getComparison() {
+		return comparison.text();
+	}
+
 	public ASTNode getLeftElement() {
 		return leftElement;
 	}
@@ -35,6 +35,11 @@ public class ConditionNode extends ASTNode {
 		return lineClo;
 	}
 
+	@Override
+	public int getLine() {
+		return lineOp;
+	}
+
 	public int getLineOp() {
 		return lineOp;
 	}
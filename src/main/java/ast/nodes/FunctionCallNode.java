@@ -1,16 +1,19 @@
 package ast.nodes;
 
+import things.Symbols;
 import visitors.ASTVisitor;
 
 import java.util.List;
 
 public class FunctionCallNode extends ASTNode {
 	String functionName;
+	int symbol;
 	List<ASTNode> parameters;
 	int line;
 
 	public FunctionCallNode(String functionName, List<ASTNode> parameters, int line) {
 		this.functionName = functionName;
+		this.symbol = Symbols.intern(functionName);
 		this.parameters = parameters;
 		this.line = line;
 	}
@@ -24,6 +27,10 @@ public class FunctionCallNode extends ASTNode {
 		return functionName;
 	}
 
+	public int getSymbol() {
+		return symbol;
+	}
+
 	public List<ASTNode> getParameters() {
 		return parameters;
 	}
@@ -1,5 +1,6 @@
 package ast.nodes;
 
+import things.Symbols;
 import visitors.ASTVisitor;
 
 import java.util.List;
@@ -7,14 +8,19 @@ import java.util.List;
 //func
 public class FunctionNode extends ASTNode {
 	String functionName;
+	int symbol;
 	List<String> parameters;
+	int[] parameterSymbols;
 	ASTNode body;
 	int lineOp;
 	int lineClo;
+	boolean pure; //set by the purity pass, calls with equal arguments then give equal results
 
 	public FunctionNode(String functionName, List<String> parameters, ASTNode body, int lineOp, int lineClo) {
 		this.functionName = functionName;
+		this.symbol = Symbols.intern(functionName);
 		this.parameters = parameters;
+		this.parameterSymbols = parameters.stream().mapToInt(Symbols::intern).toArray();
 		this.body = body;
 		this.lineOp = lineOp;
 		this.lineClo = lineClo;
@@ -29,14 +35,27 @@ public class FunctionNode extends ASTNode {
 		return functionName;
 	}
 
+	public int getSymbol() {
+		return symbol;
+	}
+
 	public List<String> getParameters() {
 		return parameters;
 	}
 
+	public int[] getParameterSymbols() {
+		return parameterSymbols;
+	}
+
 	public ASTNode getBody() {
 		return body;
 	}
 
+	@Override
+	public int getLine() {
+		return lineOp;
+	}
+
 	public int getLineOp() {
 		return lineOp;
 	}
@@ -44,4 +63,12 @@ public class FunctionNode extends ASTNode {
 	public int getLineClo() {
 		return lineClo;
 	}
+
+	public boolean isPure() {
+		return pure;
+	}
+
+	public void setPure(boolean pure) {
+		this.pure = pure;
+	}
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package ast.nodes;
 
+import things.Symbols;
 import visitors.ASTVisitor;
 
 import java.util.List;
@@ -7,11 +8,13 @@ import java.util.List;
 public class LambdaNode extends ASTNode {
 
 	List<String> parameters;
+	int[] parameterSymbols;
 	ASTNode body;
 	int line;
 
 	public LambdaNode(List<String> parameters, ASTNode body, int line) {
 		this.parameters = parameters;
+		this.parameterSymbols = parameters.stream().mapToInt(Symbols::intern).toArray();
 		this.body = body;
 		this.line = line;
 	}
@@ -25,6 +28,10 @@ public class LambdaNode extends ASTNode {
 		return parameters;
 	}
 
+	public int[] getParameterSymbols() {
+		return parameterSymbols;
+	}
+
 	public ASTNode getBody() {
 		return body;
 	}
@@ -5,17 +5,69 @@ import visitors.ASTVisitor;
 //literals
 public class LiteralNode extends ASTNode {
 	String value;
+	boolean integer;
+	boolean real;
+	long integerValue;
+	double realValue;
+	boolean written; //the number keeps the text it was written with
 
 	public LiteralNode(String value) {
 		this.value = value;
 	}
 
+	public LiteralNode(long value) {
+		this.integer = true;
+		this.integerValue = value;
+	}
+
+	public LiteralNode(double value) {
+		this.real = true;
+		this.realValue = value;
+	}
+
+	//a number whose source text differs from how its value would print, e.g. 007 or 0.0001
+	public LiteralNode(long value, String text) {
+		this(value);
+		this.value = text;
+		this.written = true;
+	}
+
+	public LiteralNode(double value, String text) {
+		this(value);
+		this.value = text;
+		this.written = true;
+	}
+
 	@Override
 	public <R> R accept(ASTVisitor<R> visitor) {
 		return visitor.visitLiteralNode(this);
 	}
 
+	//numeric literals only get a text form when printed
 	public String getValue() {
+		if (value == null) {
+			value = integer ? Long.toString(integerValue) : Double.toString(realValue);
+		}
 		return value;
 	}
+
+	public boolean isInteger() {
+		return integer;
+	}
+
+	public boolean isReal() {
+		return real;
+	}
+
+	public boolean isWritten() {
+		return written;
+	}
+
+	public long getIntegerValue() {
+		return integerValue;
+	}
+
+	public double getRealValue() {
+		return realValue;
+	}
 }
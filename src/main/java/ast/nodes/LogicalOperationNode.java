@@ -3,13 +3,13 @@ package ast.nodes;
 import visitors.ASTVisitor;
 
 public class LogicalOperationNode extends ASTNode {
-	String operator;
+	Opcode operator;
 	ASTNode leftElement;
 	ASTNode rightElement;
 	int lineOp;
 	int lineClo;
 
-	public LogicalOperationNode(String operator, ASTNode leftElement, ASTNode rightElement, int lineOp, int lineClo) {
+	public LogicalOperationNode(Opcode operator, ASTNode leftElement, ASTNode rightElement, int lineOp, int lineClo) {
 		this.operator = operator;
 		this.leftElement = leftElement;
 		this.rightElement = rightElement;
@@ -22,10 +22,14 @@ public class LogicalOperationNode extends ASTNode {
 		return visitor.visitLogicalOperationNode(this);
 	}
 
-	public String getOperator() {
+	public Opcode getOpcode() {
 		return operator;
 	}
 
+	public String getOperator() {
+		return operator.text();
+	}
+
 	public ASTNode getLeftElement() {
 		return leftElement;
 	}
@@ -38,6 +42,11 @@ public class LogicalOperationNode extends ASTNode {
 		return lineClo;
 	}
 
+	@Override
+	public int getLine() {
+		return lineOp;
+	}
+
 	public int getLineOp() {
 		return lineOp;
 	}
@@ -2,19 +2,15 @@ package ast.nodes;
 
 import visitors.ASTVisitor;
 
+//immutable, ASTNodeFactory hands out a single instance
 public class NullNode extends ASTNode {
-	int line;
 
-	public NullNode(int line) {
-		this.line = line;
+	public NullNode() {
+		setType(NodeType.NULL);
 	}
 
 	@Override
 	public <R> R accept(ASTVisitor<R> visitor) {
 		return visitor.visitNullNode(this);
 	}
-
-	public int getLine() {
-		return line;
-	}
 }
@@ -0,0 +1,64 @@
+package ast.nodes;
+
+import java.util.HashMap;
+import java.util.Map;
+
+//the operator of an operation, comparison, logical operation or predicate. the parser resolves the
+//name once when it builds the node, evaluation switches on the constant; the name is only for printing
+public enum Opcode {
+	PLUS,
+	MINUS,
+	TIMES,
+	DIVIDE,
+	EQUAL,
+	NONEQUAL,
+	LESS,
+	LESSEQ,
+	GREATER,
+	GREATEREQ,
+	AND,
+	OR,
+	XOR,
+	NOR,
+	NAND,
+	XNOR,
+	ISINT,
+	ISREAL,
+	ISBOOL,
+	ISNULL,
+	ISATOM,
+	ISLIST;
+
+	private static final Opcode[] VALUES = values();
+	private static final Map<String, Opcode> BY_TEXT = new HashMap<>();
+
+	static {
+		for (Opcode opcode : VALUES) {
+			BY_TEXT.put(opcode.text, opcode);
+		}
+	}
+
+	private final String text = name().toLowerCase();
+
+	//the name as written in source
+	public String text() {
+		return text;
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	public static Opcode of(String text) {
+		Opcode opcode = BY_TEXT.get(text);
+		if (opcode == null) {
+			throw new IllegalArgumentException("ERROR: UNKNOWN OPERATOR " + text);
+		}
+		return opcode;
+	}
+
+	public static Opcode of(int ordinal) {
+		return VALUES[ordinal];
+	}
+}
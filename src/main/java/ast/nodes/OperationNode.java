@@ -5,11 +5,11 @@ import visitors.ASTVisitor;
 import java.util.List;
 
 public class OperationNode extends ASTNode {
-	String operator;
+	Opcode operator;
 	List<ASTNode> operands;
 	int line;
 
-	public OperationNode(String operator, List<ASTNode> operands, Boolean sign, int line) {
+	public OperationNode(Opcode operator, List<ASTNode> operands, Boolean sign, int line) {
 		this.operator = operator;
 		this.operands = operands;
 		this.line = line;
@@ -20,10 +20,14 @@ public class OperationNode extends ASTNode {
 		return visitor.visitOperationNode(this);
 	}
 
-	public String getOperator() {
+	public Opcode getOpcode() {
 		return operator;
 	}
 
+	public String getOperator() {
+		return operator.text();
+	}
+
 	public List<ASTNode> getOperands() {
 		return operands;
 	}
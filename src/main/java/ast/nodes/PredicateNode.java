@@ -3,11 +3,11 @@ package ast.nodes;
 import visitors.ASTVisitor;
 
 public class PredicateNode extends ASTNode {
-	String predicate;
+	Opcode predicate;
 	ASTNode element;
 	int line;
 
-	public PredicateNode(String predicate, ASTNode element, int line) {
+	public PredicateNode(Opcode predicate, ASTNode element, int line) {
 		this.predicate = predicate;
 		this.element = element;
 		this.line = line;
@@ -18,10 +18,14 @@ public class PredicateNode extends ASTNode {
 		return visitor.visitPredicateNode(this);
 	}
 
-	public String getPredicate() {
+	public Opcode getOpcode() {
 		return predicate;
 	}
 
+	public String getPredicate() {
+		return predicate.text();
+	}
+
 	public ASTNode getElement() {
 		return element;
 	}
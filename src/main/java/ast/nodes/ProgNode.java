@@ -1,5 +1,6 @@
 package ast.nodes;
 
+import ast.Annotations;
 import visitors.ASTVisitor;
 
 import java.util.List;
@@ -8,6 +9,7 @@ public class ProgNode extends ASTNode {
 	private final List<ASTNode> statements;
 	int lineOp;
 	int lineClo;
+	private Annotations annotations; //only on the root of a program
 
 	public ProgNode(List<ASTNode> statements, int lineOp, int lineClo) {
 		this.statements = statements;
@@ -28,6 +30,11 @@ public class ProgNode extends ASTNode {
 		return statements;
 	}
 
+	@Override
+	public int getLine() {
+		return lineOp;
+	}
+
 	public int getLineOp() {
 		return lineOp;
 	}
@@ -35,4 +42,12 @@ public class ProgNode extends ASTNode {
 	public int getLineClo() {
 		return lineClo;
 	}
+
+	public Annotations getAnnotations() {
+		return annotations;
+	}
+
+	public void setAnnotations(Annotations annotations) {
+		this.annotations = annotations;
+	}
 }
@@ -34,6 +34,11 @@ public class WhileNode extends ASTNode {
 		return lineClo;
 	}
 
+	@Override
+	public int getLine() {
+		return lineOp;
+	}
+
 	public int getLineOp() {
 		return lineOp;
 	}
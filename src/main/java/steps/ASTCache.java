@@ -0,0 +1,161 @@
+package steps;
+
+import ast.ASTNodeFactory;
+import ast.FlatAST;
+import ast.nodes.ASTNode;
+import things.InputFileReader;
+import visitors.OperandCheckPass;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.List;
+
+//analyzed ASTs stored next to their source as <source>.ast, so an unchanged file skips the lexer,
+//parser and semanter. an entry is only used when its content hash and compiler version both match
+public class ASTCache {
+	private static final int MAGIC = 0x46415354; //"FAST"
+	private static final int FORMAT_VERSION = 4;
+	//the classes that build and annotate the cached trees; their bytecode is the compiler version, so any
+	//change to them invalidates the old entries
+	private static final List<Class<?>> FRONT_END = List.of(Flexer.class, TokenBuffer.class, Parser.class,
+			ASTNodeFactory.class, FSemanter.class, OperandCheckPass.class, TypeInferencePass.class, FlatAST.class);
+	public static final String COMPILER_VERSION = frontEndVersion();
+	public static final String SUFFIX = ".ast";
+
+	private ASTCache() {
+	}
+
+	//the analyzed tree of the source, from its cache entry when that is still valid
+	public static ASTNode analyze(Path source) throws Exception {
+		ByteBuffer input = InputFileReader.mapInputFromFile(source.toString());
+		byte[] hash = contentHash(input);
+		Path cache = cachePath(source);
+		ASTNode cached = load(cache, hash);
+		if (cached != null) {
+			return cached;
+		}
+
+		//a fresh parser, because the tree must not depend on anything parsed before it
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		Parser parser = new Parser();
+		parser.setTokens(lexer.tokenizeToBuffer());
+		ASTNode ast = parser.parse();
+		new FSemanter().analyze(ast);
+
+		try {
+			write(cache, hash, FlatAST.of(ast));
+		} catch (IOException e) {
+			System.err.println("Warning: could not write AST cache " + cache + ": " + e.getMessage());
+		}
+		return ast;
+	}
+
+	public static Path cachePath(Path source) {
+		return source.resolveSibling(source.getFileName() + SUFFIX);
+	}
+
+	public static byte[] contentHash(ByteBuffer source) {
+		MessageDigest digest = sha256();
+		digest.update(source.duplicate());
+		return digest.digest();
+	}
+
+	//nested classes included, since inner visitors do much of the work
+	private static String frontEndVersion() {
+		MessageDigest digest = sha256();
+		Deque<Class<?>> pending = new ArrayDeque<>(FRONT_END);
+		while (!pending.isEmpty()) {
+			Class<?> type = pending.pop();
+			digest.update(type.getName().getBytes());
+			try (InputStream bytecode = type.getResourceAsStream("/" + type.getName().replace('.', '/') + ".class")) {
+				if (bytecode != null) {
+					digest.update(bytecode.readAllBytes());
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException(e);
+			}
+			pending.addAll(List.of(type.getDeclaredClasses()));
+		}
+		return HexFormat.of().formatHex(digest.digest(), 0, 8);
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	//the tree of a valid entry, null when it has to be parsed again; rows that decode to no valid tree
+	//count as a miss as well
+	private static ASTNode load(Path cache, byte[] hash) {
+		FlatAST cached = read(cache, hash);
+		if (cached == null) {
+			return null;
+		}
+		try {
+			return cached.toTree();
+		} catch (RuntimeException e) {
+			return null;
+		}
+	}
+
+	//null when there is no entry, or it is stale, from another compiler version or unreadable
+	public static FlatAST read(Path cache, byte[] hash) {
+		if (!Files.isRegularFile(cache)) {
+			return null;
+		}
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cache)))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !in.readUTF().equals(COMPILER_VERSION)) {
+				return null;
+			}
+			byte[] stored = new byte[in.readUnsignedByte()];
+			in.readFully(stored);
+			if (!Arrays.equals(stored, hash)) {
+				return null;
+			}
+			return FlatAST.read(in);
+		} catch (IOException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	//written to a temporary file first so a reader never sees half an entry
+	public static void write(Path cache, byte[] hash, FlatAST ast) throws IOException {
+		Path temporary = Files.createTempFile(cache.toAbsolutePath().getParent(), cache.getFileName().toString(), ".tmp");
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT_VERSION);
+				out.writeUTF(COMPILER_VERSION);
+				out.writeByte(hash.length);
+				out.write(hash);
+				ast.write(out);
+			}
+			try {
+				Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, cache, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package steps;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+//reads UTF-8 bytes as chars without decoding; the token grammar is ASCII, so any other byte is reported as unknown
+public class ByteCharSequence implements CharSequence {
+	private static final char NON_ASCII = '\uFFFD';
+
+	private final ByteBuffer bytes;
+	private final int offset;
+	private final int length;
+
+	public ByteCharSequence(ByteBuffer bytes) {
+		this(bytes, bytes.position(), bytes.remaining());
+	}
+
+	private ByteCharSequence(ByteBuffer bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+	}
+
+	@Override
+	public int length() {
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		byte b = bytes.get(offset + index);
+		return b < 0 ? NON_ASCII : (char) b;
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new ByteCharSequence(bytes, offset + start, end - start);
+	}
+
+	@Override
+	public String toString() {
+		byte[] copy = new byte[length];
+		bytes.get(offset, copy);
+		return new String(copy, StandardCharsets.US_ASCII);
+	}
+}
@@ -0,0 +1,215 @@
+package steps;
+
+import ast.nodes.*;
+import ast.nodes.ASTNode.ValueType;
+import things.SymbolTable;
+import visitors.ASTTransformer;
+import visitors.InterpreterVisitor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//evaluates what the tree already knows: operations, comparisons, logic, not and predicates over constants
+//become literals, conditions with a constant condition become the branch that runs, and a global setq of
+//a number that nothing else ever binds replaces the reads of its variable after it. folding and
+//propagation repeat until neither finds anything. constants are evaluated by the interpreter itself, so
+//a folded node gives exactly what running it would; anything that fails to evaluate is left for run
+//time to report. quoted code is left as written, it is printed as a node
+public class ConstantFoldingPass extends ASTTransformer {
+	private final InterpreterVisitor evaluator = new InterpreterVisitor(new SymbolTable(null), false);
+
+	public ConstantFoldingPass() {
+		super("constant-folding");
+	}
+
+	@Override
+	protected ASTNode rewrite(ASTNode root) {
+		ASTNode current = root;
+		while (true) {
+			ASTNode folded = transformNode(current);
+			ASTNode propagated = propagate(folded);
+			if (propagated == current) {
+				return current;
+			}
+			current = propagated;
+		}
+	}
+
+	private static boolean isNumber(ASTNode node) {
+		return node instanceof LiteralNode literal && (literal.isInteger() || literal.isReal());
+	}
+
+	private static boolean isConstant(ASTNode node) {
+		return node instanceof LiteralNode || node instanceof BooleanNode || node instanceof NullNode;
+	}
+
+	//the literal for an evaluated value, or null when the value has none
+	private ASTNode literal(Object value) {
+		ASTNode node;
+		ValueType type;
+		if (value instanceof Integer || value instanceof Long) {
+			node = factory.createIntegerNode(((Number) value).longValue());
+			type = ValueType.INT;
+		} else if (value instanceof Double) {
+			node = factory.createRealNode((double) value);
+			type = ValueType.REAL;
+		} else if (value instanceof Boolean) {
+			node = factory.createBooleanNode((boolean) value);
+			type = ValueType.BOOL;
+		} else {
+			return null;
+		}
+		annotations().setValueType(node, type);
+		return node;
+	}
+
+	private ASTNode fold(ASTNode node) {
+		try {
+			ASTNode folded = literal(node.accept(evaluator));
+			if (folded == null) {
+				return node;
+			}
+			count("folded");
+			return folded;
+		} catch (RuntimeException e) {
+			return node;
+		}
+	}
+
+	@Override
+	public ASTNode visitOperationNode(OperationNode node) {
+		ASTNode transformed = super.visitOperationNode(node);
+		for (ASTNode operand : ((OperationNode) transformed).getOperands()) {
+			if (!isNumber(operand)) {
+				return transformed;
+			}
+		}
+		return fold(transformed);
+	}
+
+	@Override
+	public ASTNode visitComparisonNode(ComparisonNode node) {
+		ComparisonNode transformed = (ComparisonNode) super.visitComparisonNode(node);
+		if (isNumber(transformed.getLeftElement()) && isNumber(transformed.getRightElement())) {
+			return fold(transformed);
+		}
+		return transformed;
+	}
+
+	@Override
+	public ASTNode visitLogicalOperationNode(LogicalOperationNode node) {
+		LogicalOperationNode transformed = (LogicalOperationNode) super.visitLogicalOperationNode(node);
+		if (transformed.getLeftElement() instanceof BooleanNode && transformed.getRightElement() instanceof BooleanNode) {
+			return fold(transformed);
+		}
+		return transformed;
+	}
+
+	@Override
+	public ASTNode visitNotNode(NotNode node) {
+		NotNode transformed = (NotNode) super.visitNotNode(node);
+		if (transformed.getElement() instanceof BooleanNode) {
+			return fold(transformed);
+		}
+		return transformed;
+	}
+
+	@Override
+	public ASTNode visitPredicateNode(PredicateNode node) {
+		//isnull and islist look at the element as written, never at its value
+		if (node.getOpcode() == Opcode.ISNULL || node.getOpcode() == Opcode.ISLIST) {
+			return fold(node);
+		}
+		PredicateNode transformed = (PredicateNode) super.visitPredicateNode(node);
+		if (isConstant(transformed.getElement())) {
+			return fold(transformed);
+		}
+		return transformed;
+	}
+
+	//only the first branch is ever evaluated. an action that is a prog, break, quote or lambda behaves
+	//differently once it stands on its own, and a default only runs inside a null check, so those stay
+	@Override
+	public ASTNode visitConditionNode(ConditionNode node) {
+		ConditionNode transformed = (ConditionNode) super.visitConditionNode(node);
+		ConditionBranch branch = transformed.getBranches().getFirst();
+		if (!(branch.getCondition() instanceof BooleanNode condition)) {
+			return transformed;
+		}
+		if (condition.getValue()) {
+			ASTNode action = branch.getAction();
+			boolean standsAlone = !(action instanceof ProgNode || action instanceof BreakNode
+					|| action instanceof QuoteNode || action instanceof LambdaNode);
+			return standsAlone ? pruned(action) : transformed;
+		}
+		ASTNode defaultAction = transformed.getDefaultAction();
+		if (defaultAction == null) {
+			return pruned(factory.createNullNode());
+		}
+		return isConstant(defaultAction) ? pruned(defaultAction) : transformed;
+	}
+
+	private ASTNode pruned(ASTNode branch) {
+		count("pruned");
+		return branch;
+	}
+
+	@Override
+	public ASTNode visitQuoteNode(QuoteNode node) {
+		return node;
+	}
+
+	//names are resolved dynamically, so a variable is only a constant when its one setq is a statement of
+	//the program itself and it is never a parameter or a function that some call could bind in between
+	private ASTNode propagate(ASTNode root) {
+		if (!(root instanceof ProgNode program)) {
+			return root;
+		}
+		UseDefInfo info = UseDefInfo.of(program);
+
+		List<ASTNode> statements = program.getStatements();
+		Map<Integer, ASTNode> constants = new HashMap<>();
+		Substitute substitute = new Substitute(constants);
+		ASTNode[] replaced = statements.toArray(new ASTNode[0]);
+		boolean changed = false;
+		for (int i = 0; i < replaced.length; i++) {
+			if (!constants.isEmpty()) {
+				replaced[i] = substitute.transform(replaced[i]);
+				changed |= replaced[i] != statements.get(i);
+			}
+			if (replaced[i] instanceof AssignmentNode assignment && isNumber(assignment.getValue())
+					&& info.isSingleAssignment(assignment.getSymbol())) {
+				constants.put(assignment.getSymbol(), assignment.getValue());
+			}
+		}
+		if (!changed) {
+			return root;
+		}
+		return typedLike(factory.createProgNode(List.of(replaced), program.getLineOp(), program.getLineClo()), program);
+	}
+
+	private class Substitute extends ASTTransformer {
+		private final Map<Integer, ASTNode> constants;
+
+		Substitute(Map<Integer, ASTNode> constants) {
+			super("substitute", ConstantFoldingPass.this);
+			this.constants = constants;
+		}
+
+		@Override
+		public ASTNode visitAtomNode(AtomNode node) {
+			ASTNode constant = constants.get(node.getSymbol());
+			if (constant == null) {
+				return node;
+			}
+			ConstantFoldingPass.this.count("propagated");
+			return constant;
+		}
+
+		@Override
+		public ASTNode visitQuoteNode(QuoteNode node) {
+			return node;
+		}
+	}
+}
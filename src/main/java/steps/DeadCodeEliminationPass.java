@@ -0,0 +1,112 @@
+package steps;
+
+import ast.nodes.*;
+import visitors.ASTTransformer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//drops statements that can never run or whose effect nobody can see: what follows a break in a while
+//body, setqs of names that are never used and funcs that are never called. a setq only goes when its
+//value cannot fail or do anything (a constant, quote or lambda), so running it again could not have
+//printed or stopped the program. a prog gives the value of its last statement, so that one stays, except
+//in the program itself where every statement prints on its own. return does not end a prog here, the
+//statements after it still run and the last one still decides the value, so nothing after a return is
+//dead. removing a definition can leave others unused, so the pass repeats until nothing goes
+public class DeadCodeEliminationPass extends ASTTransformer {
+	private ASTNode program;
+	private UseDefInfo info;
+
+	public DeadCodeEliminationPass() {
+		super("dead-code");
+	}
+
+	@Override
+	protected ASTNode rewrite(ASTNode root) {
+		ASTNode current = root;
+		while (true) {
+			program = current;
+			info = UseDefInfo.of(current);
+			ASTNode next = transformNode(current);
+			if (next == current) {
+				program = null;
+				info = null;
+				return current;
+			}
+			current = next;
+		}
+	}
+
+	@Override
+	public ASTNode visitProgNode(ProgNode node) {
+		boolean valueUnused = node == program;
+		ProgNode transformed = (ProgNode) super.visitProgNode(node);
+		List<ASTNode> statements = live(transformed.getStatements(), valueUnused);
+		if (statements == null) {
+			return transformed;
+		}
+		return typedLike(factory.createProgNode(statements, transformed.getLineOp(), transformed.getLineClo()), transformed);
+	}
+
+	//only a break written directly in the body ends the loop
+	@Override
+	public ASTNode visitWhileNode(WhileNode node) {
+		WhileNode transformed = (WhileNode) super.visitWhileNode(node);
+		List<ASTNode> body = transformed.getBody();
+		for (int i = 0; i < body.size() - 1; i++) {
+			if (body.get(i) instanceof BreakNode) {
+				for (int j = i + 1; j < body.size(); j++) {
+					count("unreachable");
+				}
+				body = body.subList(0, i + 1);
+				break;
+			}
+		}
+		List<ASTNode> statements = live(body, true);
+		if (statements == null && body == transformed.getBody()) {
+			return transformed;
+		}
+		return typedLike(factory.createWhileNode(transformed.getCondition(), statements == null ? body : statements,
+				transformed.getLineOp(), transformed.getLineClo()), transformed);
+	}
+
+	@Override
+	public ASTNode visitQuoteNode(QuoteNode node) {
+		return node;
+	}
+
+	//null when every statement stays
+	private List<ASTNode> live(List<ASTNode> statements, boolean valueUnused) {
+		List<ASTNode> result = null;
+		for (int i = 0; i < statements.size(); i++) {
+			ASTNode statement = statements.get(i);
+			boolean last = i == statements.size() - 1;
+			if ((valueUnused || !last) && isDead(statement)) {
+				if (result == null) {
+					result = new ArrayList<>(statements.subList(0, i));
+				}
+			} else if (result != null) {
+				result.add(statement);
+			}
+		}
+		return result;
+	}
+
+	private boolean isDead(ASTNode statement) {
+		if (statement instanceof AssignmentNode assignment && info.uses(assignment.getSymbol()) == 0
+				&& isInert(assignment.getValue())) {
+			count("unused setq");
+			return true;
+		}
+		if (statement instanceof FunctionNode function && info.uses(function.getSymbol()) == 0) {
+			count("uncalled func");
+			return true;
+		}
+		return false;
+	}
+
+	private static boolean isInert(ASTNode value) {
+		return value instanceof LiteralNode || value instanceof BooleanNode || value instanceof NullNode
+				|| value instanceof QuoteNode || value instanceof LambdaNode;
+	}
+}
@@ -1,65 +1,125 @@
 package steps;
 
-import ast.nodes.*;
+import ast.nodes.ASTNode;
+import visitors.ASTWalker;
+import visitors.OperandCheckPass;
+import visitors.SemanticPass;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+//runs the registered passes over the tree. consecutive passes that do not depend on each other are fused
+//into one traversal, each node is handed to them in registration order
 public class FSemanter {
-    public void checkArithmeticOperation(ASTNode operation) throws Exception {
-        String operator = ((OperationNode) operation).getOperator();
-        List<ASTNode> operands = ((OperationNode) operation).getOperands();
+    private final List<SemanticPass> passes = new ArrayList<>();
+    private boolean timing;
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+    private int traversals;
 
-        if (operands.isEmpty()) {
-            throw new Exception("ERROR: ARITHMETIC OPERATION " + operator + " HAS NO OPERANDS" + " at line: " +
-                    ((OperationNode) operation).getLine());
-        }
+    public FSemanter() {
+        register(new OperandCheckPass());
+        register(new TypeInferencePass());
     }
 
-    private void checkLogicalOperation(LogicalOperationNode operation) throws Exception {
-        String operator = operation.getOperator();
-        ASTNode leftOperand = operation.getLeftElement();
-        ASTNode rightOperand = operation.getRightElement();
-
-        if (leftOperand == null || rightOperand == null) {
-            throw new Exception("ERROR: LOGICAL OPERATION " + operator + " HAS NO OPERANDS at line: " +
-                    operation.getLineOp());
-        }
+    public FSemanter register(SemanticPass pass) {
+        passes.add(pass);
+        return this;
     }
 
-    private void checkComparisonOperation(ComparisonNode operation) throws Exception {
-        String comparison = operation.getComparison();
-        ASTNode leftOperand = operation.getLeftElement();
-        ASTNode rightOperand = operation.getRightElement();
+    public List<SemanticPass> getPasses() {
+        return Collections.unmodifiableList(passes);
+    }
 
-        if (leftOperand == null || rightOperand == null) {
-            throw new Exception("ERROR: COMPARISON " + comparison + " HAS NO OPERANDS at line: " + operation.getLine());
-        }
+    //measures the time spent in each pass; off by default, the clock is read around every visit
+    public void setTiming(boolean timing) {
+        this.timing = timing;
+    }
 
-        if (leftOperand.getType() != rightOperand.getType()) {
-            throw new Exception("ERROR: " + leftOperand.getType()
-                    + " CANNOT BE COMPARED WITH " + rightOperand.getType()
-                    + " at line " + operation.getLine());
-        }
+    //nanoseconds per pass name for the last analyze, only filled with timing on
+    public Map<String, Long> getTimings() {
+        return Collections.unmodifiableMap(timings);
     }
 
+    //traversals made by the last analyze
+    public int getTraversals() {
+        return traversals;
+    }
 
     public void analyze(ASTNode root) throws Exception {
-        traverseAndCheck(root);
+        timings.clear();
+        traversals = 0;
+        try {
+            for (List<SemanticPass> group : groups()) {
+                run(group, root);
+            }
+        } catch (RuntimeException e) {
+            throw new Exception(e.getMessage(), e);
+        }
     }
 
-    private void traverseAndCheck(ASTNode node) throws Exception {
-        if (node == null) return;
-        else if (node.getClass().getSimpleName().equals("OperationNode")) {
-            checkArithmeticOperation(node);
-
-        } else if (node.getClass().getSimpleName().equals("ComparisonNode")) {
-            checkComparisonOperation((ComparisonNode) node);
+    //a pass starts a new group when it depends on a pass of the current one
+    private List<List<SemanticPass>> groups() {
+        List<List<SemanticPass>> groups = new ArrayList<>();
+        List<SemanticPass> group = new ArrayList<>();
+        for (SemanticPass pass : passes) {
+            for (SemanticPass member : group) {
+                if (pass.dependsOn().contains(member.getClass())) {
+                    groups.add(group);
+                    group = new ArrayList<>();
+                    break;
+                }
+            }
+            group.add(pass);
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
 
-        } else if (node.getClass().getSimpleName().equals("LogicalOperationNode")) {
-            checkLogicalOperation((LogicalOperationNode) node);
+    private void run(List<SemanticPass> group, ASTNode root) {
+        SemanticPass[] fused = group.toArray(new SemanticPass[0]);
+        long[] spent = new long[fused.length];
+        for (int i = 0; i < fused.length; i++) {
+            long start = System.nanoTime();
+            fused[i].begin(root);
+            spent[i] += System.nanoTime() - start;
+        }
+        traversals++;
+        if (timing) {
+            traverseTimed(root, fused, spent);
+        } else {
+            traverse(root, fused);
         }
-        for (ASTNode child : node.getChildren()) {
-            traverseAndCheck(child);
+        for (int i = 0; i < fused.length; i++) {
+            long start = System.nanoTime();
+            fused[i].end(root);
+            spent[i] += System.nanoTime() - start;
+            if (timing) {
+                timings.merge(fused[i].getName(), spent[i], Long::sum);
+            }
         }
     }
+
+    //over an explicit stack, deep trees do not overflow the java stack
+    private void traverse(ASTNode root, SemanticPass[] fused) {
+        ASTWalker.preOrder(root, (node, depth) -> {
+            for (SemanticPass pass : fused) {
+                node.accept(pass);
+            }
+        });
+    }
+
+    private void traverseTimed(ASTNode root, SemanticPass[] fused, long[] spent) {
+        ASTWalker.preOrder(root, (node, depth) -> {
+            for (int i = 0; i < fused.length; i++) {
+                long start = System.nanoTime();
+                node.accept(fused[i]);
+                spent[i] += System.nanoTime() - start;
+            }
+        });
+    }
 }
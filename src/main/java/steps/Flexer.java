@@ -1,40 +1,216 @@
 package steps;
 
+import things.Symbols;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 public class Flexer {
-	private String input;
+	private static final int CHUNK_SIZE = 8192;
+
+	private CharSequence input;
 	private int pos;
 	private int length;
 	private int line;
 
+	//streaming mode: only the current token and the unread part of the last chunk are kept
+	private Reader reader;
+	private StringBuilder window;
+	private char[] chunk;
+	private int tokenStart;
+
+	//decoded value of the last INTEGER or REAL token
+	private long integerValue;
+	private double realValue;
+
+	//interned name of the last ATOM token
+	private String atomName;
+	private final String[] recentNames = new String[RECENT_SIZE];
+	private final int[] recentSymbols = new int[RECENT_SIZE];
+
 	public void setInput(String input) {
+		setInput((CharSequence) input);
+	}
+
+	//scans mapped UTF-8 bytes in place, see InputFileReader.mapInputFromFile
+	public void setInput(ByteBuffer input) {
+		setInput(new ByteCharSequence(input));
+	}
+
+	public void setInput(CharSequence input) {
+		setInput(input, 0, input.length(), 1);
+	}
+
+	//lexes only [start, end) of the source, counting lines from the given one
+	void setInput(CharSequence input, int start, int end, int line) {
 		this.input = input;
+		this.pos = start;
+		this.length = end;
+		this.line = line;
+		this.reader = null;
+	}
+
+	public void setInput(Reader reader) {
+		this.reader = reader;
+		this.window = new StringBuilder(CHUNK_SIZE);
+		this.chunk = new char[CHUNK_SIZE];
+		this.input = window;
 		this.pos = 0;
-		this.length = input.length();
+		this.length = 0;
 		this.line = 1;
+		this.tokenStart = 0;
 	}
 
 
 	//Lexical analyzer
 	public List<Token> tokenize() throws Exception {
 		List<Token> tokens = new ArrayList<>();
-		while (pos < length) {
+		Token token;
+		do {
+			token = nextToken();
+			tokens.add(token);
+		} while (token.type != TokenType.EOF);
+		return tokens;
+	}
+
+	//same tokens as tokenize(), stored as offsets into the source instead of Token objects
+	public TokenBuffer tokenizeToBuffer() throws Exception {
+		if (reader != null) {
+			throw new Exception("ERROR: TOKEN BUFFER NEEDS THE WHOLE SOURCE, NOT A STREAM");
+		}
+		TokenBuffer buffer = new TokenBuffer(input, (length - pos) / 4 + 16);
+		TokenType type;
+		do {
+			type = scan();
+			buffer.add(type, tokenStart, pos - tokenStart, line, payload(type));
+		} while (type != TokenType.EOF);
+		return buffer;
+	}
+
+	//tokens for the source with [offset, offset + removedLength) replaced by insertedText. only the tokens
+	//around the edit are scanned again: lexing resumes after the last token that ends before the edit and
+	//stops at the first token past it that starts where an old token started, the rest is copied shifted
+	public TokenBuffer relex(TokenBuffer previous, int offset, int removedLength, String insertedText) throws Exception {
+		CharSequence oldSource = previous.getSource();
+		int removedEnd = offset + removedLength;
+		if (offset < 0 || removedLength < 0 || removedEnd > oldSource.length()) {
+			throw new Exception("ERROR: EDIT OUT OF RANGE: " + offset + ", " + removedLength);
+		}
+		String source = new StringBuilder(oldSource.length() - removedLength + insertedText.length())
+				.append(oldSource, 0, offset)
+				.append(insertedText)
+				.append(oldSource, removedEnd, oldSource.length())
+				.toString();
+		int shift = insertedText.length() - removedLength;
+		int lineShift = countLines(insertedText, 0, insertedText.length()) - countLines(oldSource, offset, removedEnd);
+		int editEnd = offset + insertedText.length();
+
+		//a token ending right at the edit is rescanned too, the edit may extend it
+		int first = firstEndingAt(previous, offset);
+		TokenBuffer buffer = new TokenBuffer(source, previous.size() + 16);
+		buffer.append(previous, 0, first, 0, 0);
+		if (first == 0) {
+			setInput(source, 0, source.length(), 1);
+		} else {
+			setInput(source, previous.start(first - 1) + previous.length(first - 1), source.length(), previous.line(first - 1));
+		}
+
+		int next = first;
+		TokenType type;
+		do {
+			type = scan();
+			if (tokenStart >= editEnd) {
+				int oldStart = tokenStart - shift;
+				while (next < previous.size() && previous.start(next) < oldStart) {
+					next++;
+				}
+				if (next < previous.size() && previous.start(next) == oldStart) {
+					buffer.append(previous, next, previous.size(), shift, lineShift);
+					return buffer;
+				}
+			}
+			buffer.add(type, tokenStart, pos - tokenStart, line, payload(type));
+		} while (type != TokenType.EOF);
+		return buffer;
+	}
+
+	private long payload(TokenType type) {
+		return switch (type) {
+			case ATOM -> internAtom();
+			case INTEGER -> integerValue;
+			case REAL -> Double.doubleToRawLongBits(realValue);
+			default -> 0;
+		};
+	}
+
+	private static int firstEndingAt(TokenBuffer buffer, int offset) {
+		int low = 0;
+		int high = buffer.size() - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (buffer.start(middle) + buffer.length(middle) >= offset) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+
+	private static int countLines(CharSequence text, int start, int end) {
+		int lines = 0;
+		for (int i = start; i < end; i++) {
+			if (text.charAt(i) == '\n') {
+				lines++;
+			}
+		}
+		return lines;
+	}
+
+	//returns EOF once the input is exhausted
+	public Token nextToken() throws Exception {
+		TokenType type = scan();
+		return switch (type) {
+			case ATOM -> {
+				int symbol = internAtom();
+				yield new Token(type, atomName, line, symbol);
+			}
+			//a streamed window is reused for the next chunk, so a number is copied out of it
+			case INTEGER -> reader != null ? Token.ofInteger(integerValue, spelling(), 0, pos - tokenStart, line)
+					: Token.ofInteger(integerValue, input, tokenStart, pos, line);
+			case REAL -> reader != null ? Token.ofReal(realValue, spelling(), 0, pos - tokenStart, line)
+					: Token.ofReal(realValue, input, tokenStart, pos, line);
+			default -> new Token(type, text(type, input, tokenStart, pos), line);
+		};
+	}
+
+	private String spelling() {
+		return input.subSequence(tokenStart, pos).toString();
+	}
+
+	//moves past the next token, leaving it in [tokenStart, pos)
+	private TokenType scan() throws Exception {
+		while (hasMore()) {
+			tokenStart = pos;
 			char curr = input.charAt(pos);
 
 			switch (curr) {
 				case '(' -> {
-					tokens.add(new Token(TokenType.LPAREN, "(", line));
 					pos++;
+					return TokenType.LPAREN;
 				}
 				case ')' -> {
-					tokens.add(new Token(TokenType.RPAREN, ")", line));
 					pos++;
+					return TokenType.RPAREN;
 				}
 				case '\'' -> {
-					tokens.add(new Token(TokenType.QUOTE, "'", line));
 					pos++;
+					return TokenType.QUOTE;
 				}
 				case '\n' -> {
 					line++;
@@ -44,106 +220,202 @@ public class Flexer {
 					if (Character.isWhitespace(curr)) {
 						pos++;
 					} else if (Character.isDigit(curr) || curr == '+' || curr == '-') {
-						tokens.add(parseNumber());
+						return parseNumber();
 					} else if (Character.isLetter(curr)) {
-						tokens.add(parseIdOrKeyword());
+						return parseIdOrKeyword();
 					} else {
 						throw new Exception("ERROR: UNKNOWN CHARACTER: " + curr + "at line: " + line);
 					}
 				}
 			}
 		}
-		tokens.add(new Token(TokenType.EOF, "", line));
-		return tokens;
+		tokenStart = pos;
+		return TokenType.EOF;
+	}
+
+	private boolean hasMore() throws IOException {
+		return pos < length || fill();
+	}
+
+	private char current() throws IOException {
+		return hasMore() ? input.charAt(pos) : '\0';
+	}
+
+	//drops everything before the current token and reads the next chunk
+	private boolean fill() throws IOException {
+		if (reader == null) {
+			return false;
+		}
+		window.delete(0, tokenStart);
+		pos -= tokenStart;
+		tokenStart = 0;
+
+		int read = reader.read(chunk);
+		if (read < 0) {
+			reader = null;
+			length = window.length();
+			return false;
+		}
+		window.append(chunk, 0, read);
+		length = window.length();
+		return pos < length;
 	}
 
-	//parse numbers
-	public Token parseNumber() throws Exception {
-		StringBuilder num = new StringBuilder();
+	//parse numbers, decoding the value while scanning
+	private TokenType parseNumber() throws Exception {
 		boolean isReal = false;
 		boolean isNegative = false;
+		boolean isExact = true;
+		long mantissa = 0;
+		int fractionDigits = 0;
 
-		if (input.charAt(pos) == '-') {
+		if (current() == '-') {
 			isNegative = true;
 			pos++;
-			if (!Character.isDigit(input.charAt(pos))) {
+			if (!Character.isDigit(current())) {
 				throw new Exception("ERROR: UNEXPECTED CHARACTER: - at line: " + line);
 			}
-		} else if (input.charAt(pos) == '+') {
+		} else if (current() == '+') {
 			pos++;
-			if (!Character.isDigit(input.charAt(pos))) {
+			if (!Character.isDigit(current())) {
 				throw new Exception("ERROR: UNEXPECTED CHARACTER: + at line: " + line);
 			}
 		}
-		while (pos < length && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
-			if (input.charAt(pos) == '.') {
+		while (hasMore() && (Character.isDigit(input.charAt(pos)) || input.charAt(pos) == '.')) {
+			char curr = input.charAt(pos);
+			if (curr == '.') {
+				if (isReal) {
+					throw new Exception("ERROR: MALFORMED NUMBER at line: " + line);
+				}
 				isReal = true;
+			} else if (mantissa <= (Long.MAX_VALUE - 9) / 10) {
+				mantissa = mantissa * 10 + Character.digit(curr, 10);
+				if (isReal) {
+					fractionDigits++;
+				}
+			} else {
+				isExact = false; //too long to accumulate, only a real can still take it
 			}
-			num.append(input.charAt(pos));
 			pos++;
 		}
-		if (Character.isLetter(input.charAt(pos))) {
+		if (Character.isLetter(current())) {
 			throw new Exception("ERROR: NOT A NUMBER at line: " + line);
 		}
-		if (isNegative) {
-			num.insert(0, '-');
-		}
 
-		return new Token(isReal ? TokenType.REAL : TokenType.INTEGER, num.toString(), line);
+		if (!isReal) {
+			if (!isExact) {
+				throw new Exception("ERROR: INTEGER OUT OF RANGE at line: " + line);
+			}
+			integerValue = isNegative ? -mantissa : mantissa;
+			return TokenType.INTEGER;
+		}
+		if (isExact && mantissa <= MAX_EXACT_MANTISSA && fractionDigits < POWERS_OF_TEN.length) {
+			//both operands are exact doubles, so one division rounds correctly
+			realValue = mantissa / POWERS_OF_TEN[fractionDigits];
+			realValue = isNegative ? -realValue : realValue;
+		} else {
+			realValue = Double.parseDouble(input.subSequence(tokenStart, pos).toString());
+		}
+		return TokenType.REAL;
 	}
 
-	private Token parseIdOrKeyword() {
-		StringBuilder ident = new StringBuilder();
-		while (pos < length && (Character.isLetterOrDigit(input.charAt(pos)) || input.charAt(pos) == '_')) {
-			ident.append(input.charAt(pos));
+	private TokenType parseIdOrKeyword() throws IOException {
+		while (hasMore() && (Character.isLetterOrDigit(input.charAt(pos)) || input.charAt(pos) == '_')) {
 			pos++;
 		}
 
-		String id = ident.toString();
-
 		//search for keywords.
-		return switch (id) {
-			case "setq" -> new Token(TokenType.SETQ, id, line);
-			case "null" -> new Token(TokenType.NULL, id, line);
-			case "func" -> new Token(TokenType.FUNC, id, line);
-			case "lambda" -> new Token(TokenType.LAMBDA, id, line);
-			case "prog" -> new Token(TokenType.PROG, id, line);
-			case "cond" -> new Token(TokenType.COND, id, line);
-			case "while" -> new Token(TokenType.WHILE, id, line);
-			case "return" -> new Token(TokenType.RETURN, id, line);
-			case "break" -> new Token(TokenType.BREAK, id, line);
-			case "plus" -> new Token(TokenType.PLUS, id, line);
-			case "minus" -> new Token(TokenType.MINUS, id, line);
-			case "times" -> new Token(TokenType.TIMES, id, line);
-			case "divide" -> new Token(TokenType.DIVIDE, id, line);
-			case "head" -> new Token(TokenType.HEAD, id, line);
-			case "tail" -> new Token(TokenType.TAIL, id, line);
-			case "cons" -> new Token(TokenType.CONS, id, line);
-			case "equal" -> new Token(TokenType.EQUAL, id, line);
-			case "nonequal" -> new Token(TokenType.NONEQUAL, id, line);
-			case "less" -> new Token(TokenType.LESS, id, line);
-			case "lesseq" -> new Token(TokenType.LESSEQ, id, line);
-			case "greater" -> new Token(TokenType.GREATER, id, line);
-			case "greatereq" -> new Token(TokenType.GREATEREQ, id, line);
-			case "isint" -> new Token(TokenType.ISINT, id, line);
-			case "isreal" -> new Token(TokenType.ISREAL, id, line);
-			case "isbool" -> new Token(TokenType.ISBOOL, id, line);
-			case "isnull" -> new Token(TokenType.ISNULL, id, line);
-			case "isatom" -> new Token(TokenType.ISATOM, id, line);
-			case "islist" -> new Token(TokenType.ISLIST, id, line);
-			case "and" -> new Token(TokenType.AND, id, line);
-			case "or" -> new Token(TokenType.OR, id, line);
-			case "xor" -> new Token(TokenType.XOR, id, line);
-			case "not" -> new Token(TokenType.NOT, id, line);
-			case "eval" -> new Token(TokenType.EVAL, id, line);
-			case "true" -> new Token(TokenType.BOOLEAN, id, line);
-			case "false" -> new Token(TokenType.BOOLEAN, id, line);
-			case "quote" -> new Token(TokenType.QUOTE, id, line);
-			case "'" -> new Token(TokenType.QUOTE, id, line);
-			case "" -> new Token(TokenType.EOF, id, line);
-			default -> new Token(TokenType.ATOM, id, line);
+		for (int i = 0; i < KEYWORDS.length; i++) {
+			if (matches(KEYWORDS[i], input, tokenStart, pos)) {
+				return KEYWORD_TYPES[i];
+			}
+		}
+		return TokenType.ATOM;
+	}
+
+	//a few recently seen names are kept per lexer, so repeated identifiers skip the shared table and its lock
+	private int internAtom() {
+		int hash = 0;
+		for (int i = tokenStart; i < pos; i++) {
+			hash = 31 * hash + input.charAt(i);
+		}
+		int slot = (hash ^ (hash >>> 16)) & RECENT_MASK;
+		String name = recentNames[slot];
+		if (name != null && matches(name, input, tokenStart, pos)) {
+			atomName = name;
+			return recentSymbols[slot];
+		}
+		int symbol = Symbols.intern(input, tokenStart, pos);
+		atomName = Symbols.name(symbol);
+		recentNames[slot] = atomName;
+		recentSymbols[slot] = symbol;
+		return symbol;
+	}
+
+	private static boolean matches(String keyword, CharSequence source, int start, int end) {
+		if (keyword.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < keyword.length(); i++) {
+			if (keyword.charAt(i) != source.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	//token value as the parser sees it; fixed spellings are shared instead of copied out of the source
+	static String text(TokenType type, CharSequence source, int start, int end) {
+		return switch (type) {
+			case LPAREN -> "(";
+			case RPAREN -> ")";
+			case QUOTE -> end - start == 1 ? "'" : "quote";
+			case BOOLEAN -> end - start == 4 ? "true" : "false";
+			case EOF -> "";
+			default -> {
+				Integer keyword = KEYWORD_INDEX.get(type);
+				yield keyword != null ? KEYWORDS[keyword] : source.subSequence(start, end).toString();
+			}
 		};
 	}
-}
 
+	private static final int RECENT_SIZE = 256;
+	private static final int RECENT_MASK = RECENT_SIZE - 1;
+
+	private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+			1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private static final String[] KEYWORDS = {
+			"setq", "null", "func", "lambda", "prog", "cond", "while", "return", "break",
+			"plus", "minus", "times", "divide", "head", "tail", "cons",
+			"equal", "nonequal", "less", "lesseq", "greater", "greatereq",
+			"isint", "isreal", "isbool", "isnull", "isatom", "islist",
+			"and", "or", "xor", "not", "eval", "true", "false", "quote"
+	};
+
+	private static final TokenType[] KEYWORD_TYPES = {
+			TokenType.SETQ, TokenType.NULL, TokenType.FUNC, TokenType.LAMBDA, TokenType.PROG, TokenType.COND,
+			TokenType.WHILE, TokenType.RETURN, TokenType.BREAK,
+			TokenType.PLUS, TokenType.MINUS, TokenType.TIMES, TokenType.DIVIDE, TokenType.HEAD, TokenType.TAIL,
+			TokenType.CONS,
+			TokenType.EQUAL, TokenType.NONEQUAL, TokenType.LESS, TokenType.LESSEQ, TokenType.GREATER,
+			TokenType.GREATEREQ,
+			TokenType.ISINT, TokenType.ISREAL, TokenType.ISBOOL, TokenType.ISNULL, TokenType.ISATOM,
+			TokenType.ISLIST,
+			TokenType.AND, TokenType.OR, TokenType.XOR, TokenType.NOT, TokenType.EVAL, TokenType.BOOLEAN,
+			TokenType.BOOLEAN, TokenType.QUOTE
+	};
+
+	private static final Map<TokenType, Integer> KEYWORD_INDEX = new EnumMap<>(TokenType.class);
+
+	static {
+		for (int i = 0; i < KEYWORD_TYPES.length; i++) {
+			KEYWORD_INDEX.putIfAbsent(KEYWORD_TYPES[i], i);
+		}
+	}
+}
 
@@ -0,0 +1,53 @@
+package steps;
+
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.NoSuchElementException;
+
+//lexes lazily, one token of lookahead at a time
+public class FlexerTokenStream implements TokenStream {
+	private final Flexer lexer;
+	private Token lookahead;
+	private boolean finished;
+
+	public FlexerTokenStream(Reader reader) {
+		this.lexer = new Flexer();
+		this.lexer.setInput(reader);
+	}
+
+	public FlexerTokenStream(ReadableByteChannel channel) {
+		this(Channels.newReader(channel, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public Token peek() {
+		if (lookahead == null) {
+			if (finished) {
+				throw new NoSuchElementException("ERROR: TOKEN STREAM IS EXHAUSTED");
+			}
+			try {
+				lookahead = lexer.nextToken();
+			} catch (Exception e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+		return lookahead;
+	}
+
+	@Override
+	public boolean hasNext() {
+		return !finished;
+	}
+
+	@Override
+	public Token next() {
+		Token token = peek();
+		lookahead = null;
+		if (token.type == TokenType.EOF) {
+			finished = true;
+		}
+		return token;
+	}
+}
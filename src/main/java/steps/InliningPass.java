@@ -0,0 +1,362 @@
+package steps;
+
+import ast.nodes.*;
+import things.Symbols;
+import visitors.ASTTransformer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//replaces calls to small funcs with the func's body. a call wraps every error of its body in its own
+//message and binds arguments through a number-or-text conversion, so only bodies that cannot fail are
+//inlined, called with arguments that evaluate to numbers: arithmetic (divide only by a nonzero literal),
+//comparisons, logic, predicates and conds over parameters, numeric variables and constants, optionally in
+//a prog of setqs. a body that calls anything is left alone, which leaves recursive funcs alone too; once
+//a callee has been inlined into it, its caller can be inlined on the next round.
+//names are resolved dynamically and funcs are global, so only a func defined once, by a statement of the
+//program, whose name is never assigned or a parameter, is inlined, and only after its definition. the
+//body's setqs get fresh names, and an argument used more than once that is not a constant or variable is
+//bound once to a fresh name first. a prog run by the global visitor prints its statements, so bodies or
+//arguments that need one are only inlined where the call is not evaluated by it
+public class InliningPass extends ASTTransformer {
+	public static final int DEFAULT_MAX_SIZE = 24;
+
+	private enum Kind {NUMBER, BOOL}
+
+	private final int maxSize;
+	private final Map<Integer, FunctionNode> inlinable = new HashMap<>();
+	private ASTNode program;
+	private UseDefInfo info;
+	private boolean global;
+	private int fresh;
+
+	public InliningPass() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	//bodies of at most maxSize nodes are inlined
+	public InliningPass(int maxSize) {
+		super("inlining");
+		this.maxSize = maxSize;
+	}
+
+	@Override
+	protected ASTNode rewrite(ASTNode root) {
+		ASTNode current = root;
+		while (true) {
+			program = current;
+			info = UseDefInfo.of(current);
+			inlinable.clear();
+			global = true;
+			ASTNode next = transformNode(current);
+			if (next == current) {
+				program = null;
+				info = null;
+				inlinable.clear();
+				return current;
+			}
+			current = next;
+		}
+	}
+
+	//a prog statement runs with a visitor of its own that never prints
+	@Override
+	public ASTNode visitProgNode(ProgNode node) {
+		boolean outer = global;
+		List<ASTNode> statements = node.getStatements();
+		List<ASTNode> result = null;
+		for (int i = 0; i < statements.size(); i++) {
+			global = outer && !(statements.get(i) instanceof ProgNode);
+			ASTNode transformed = transformNode(statements.get(i));
+			if (node == program && transformed instanceof FunctionNode function && isInlinable(function)) {
+				inlinable.put(function.getSymbol(), function);
+			}
+			if (result == null && transformed != statements.get(i)) {
+				result = new ArrayList<>(statements.subList(0, i));
+			}
+			if (result != null) {
+				result.add(transformed);
+			}
+		}
+		global = outer;
+		if (result == null) {
+			return node;
+		}
+		return typedLike(factory.createProgNode(result, node.getLineOp(), node.getLineClo()), node);
+	}
+
+	@Override
+	public ASTNode visitFunctionNode(FunctionNode node) {
+		boolean outer = global;
+		global = false;
+		try {
+			return super.visitFunctionNode(node);
+		} finally {
+			global = outer;
+		}
+	}
+
+	@Override
+	public ASTNode visitLambdaNode(LambdaNode node) {
+		boolean outer = global;
+		global = false;
+		try {
+			return super.visitLambdaNode(node);
+		} finally {
+			global = outer;
+		}
+	}
+
+	@Override
+	public ASTNode visitQuoteNode(QuoteNode node) {
+		return node;
+	}
+
+	@Override
+	public ASTNode visitFunctionCallNode(FunctionCallNode node) {
+		FunctionCallNode transformed = (FunctionCallNode) super.visitFunctionCallNode(node);
+		FunctionNode function = inlinable.get(transformed.getSymbol());
+		if (function == null) {
+			return transformed;
+		}
+		ASTNode inlined = inline(function, transformed);
+		if (inlined == null) {
+			return transformed;
+		}
+		count("inlined");
+		return inlined;
+	}
+
+	private boolean isInlinable(FunctionNode function) {
+		int symbol = function.getSymbol();
+		if (info.functions(symbol) != 1 || info.assignments(symbol) != 0 || info.isParameter(symbol)) {
+			return false;
+		}
+		Set<Integer> parameters = new HashSet<>();
+		for (int parameter : function.getParameterSymbols()) {
+			if (!parameters.add(parameter)) {
+				return false;
+			}
+		}
+		ASTNode body = unwrap(function.getBody());
+		return size(body) <= maxSize && body(body, parameters) != null;
+	}
+
+	//the parser wraps every body in a prog, a prog of one statement gives just that statement's value
+	private static ASTNode unwrap(ASTNode body) {
+		while (body instanceof ProgNode prog && prog.getStatements().size() == 1) {
+			body = prog.getStatements().getFirst();
+		}
+		return body;
+	}
+
+	//the setqs of a prog body and its result expression, or null when the body cannot be inlined
+	private List<ASTNode> body(ASTNode body, Set<Integer> parameters) {
+		if (!(body instanceof ProgNode prog)) {
+			return kind(body, parameters, Set.of(), Set.of()) == null ? null : List.of(body);
+		}
+		List<ASTNode> statements = prog.getStatements();
+		if (statements.isEmpty()) {
+			return null;
+		}
+		Set<Integer> assigned = new HashSet<>();
+		for (ASTNode statement : statements) {
+			if (statement instanceof AssignmentNode assignment) {
+				assigned.add(assignment.getSymbol());
+			}
+		}
+		Set<Integer> defined = new HashSet<>();
+		for (int i = 0; i < statements.size() - 1; i++) {
+			if (!(statements.get(i) instanceof AssignmentNode assignment) || parameters.contains(assignment.getSymbol())
+					|| kind(assignment.getValue(), parameters, defined, assigned) != Kind.NUMBER) {
+				return null;
+			}
+			defined.add(assignment.getSymbol());
+		}
+		return kind(statements.getLast(), parameters, defined, assigned) == null ? null : statements;
+	}
+
+	//what a node evaluates to when it can never fail, null otherwise. parameters and defined locals hold
+	//numbers; a name assigned in the body but not yet defined would still be looked up outside
+	private Kind kind(ASTNode node, Set<Integer> parameters, Set<Integer> defined, Set<Integer> assigned) {
+		if (node instanceof LiteralNode literal) {
+			return literal.isInteger() || literal.isReal() ? Kind.NUMBER : null;
+		} else if (node instanceof BooleanNode) {
+			return Kind.BOOL;
+		} else if (node instanceof AtomNode atom) {
+			int symbol = atom.getSymbol();
+			if (parameters.contains(symbol) || defined.contains(symbol)) {
+				return Kind.NUMBER;
+			} else if (assigned.contains(symbol)) {
+				return null;
+			}
+			ASTNode.ValueType type = annotations().valueType(atom);
+			return type == ASTNode.ValueType.INT || type == ASTNode.ValueType.REAL ? Kind.NUMBER : null;
+		} else if (node instanceof OperationNode operation) {
+			List<ASTNode> operands = operation.getOperands();
+			if (operands.isEmpty()) {
+				return null;
+			}
+			for (int i = 0; i < operands.size(); i++) {
+				if (kind(operands.get(i), parameters, defined, assigned) != Kind.NUMBER) {
+					return null;
+				}
+				if (i > 0 && operation.getOpcode() == Opcode.DIVIDE && !isNonzero(operands.get(i))) {
+					return null;
+				}
+			}
+			return switch (operation.getOpcode()) {
+				case PLUS, MINUS, TIMES, DIVIDE -> Kind.NUMBER;
+				default -> null;
+			};
+		} else if (node instanceof ComparisonNode comparison) {
+			return kind(comparison.getLeftElement(), parameters, defined, assigned) == Kind.NUMBER
+					&& kind(comparison.getRightElement(), parameters, defined, assigned) == Kind.NUMBER ? Kind.BOOL : null;
+		} else if (node instanceof LogicalOperationNode logical) {
+			return kind(logical.getLeftElement(), parameters, defined, assigned) == Kind.BOOL
+					&& kind(logical.getRightElement(), parameters, defined, assigned) == Kind.BOOL ? Kind.BOOL : null;
+		} else if (node instanceof NotNode not) {
+			return kind(not.getElement(), parameters, defined, assigned) == Kind.BOOL ? Kind.BOOL : null;
+		} else if (node instanceof PredicateNode predicate) {
+			//isnull and islist never evaluate their element
+			boolean syntactic = predicate.getOpcode() == Opcode.ISNULL || predicate.getOpcode() == Opcode.ISLIST;
+			return syntactic || kind(predicate.getElement(), parameters, defined, assigned) != null ? Kind.BOOL : null;
+		} else if (node instanceof ConditionNode condition) {
+			ConditionBranch branch = condition.getBranches().getFirst();
+			if (condition.getDefaultAction() == null
+					|| kind(branch.getCondition(), parameters, defined, assigned) != Kind.BOOL) {
+				return null;
+			}
+			Kind action = kind(branch.getAction(), parameters, defined, assigned);
+			return action == kind(condition.getDefaultAction(), parameters, defined, assigned) ? action : null;
+		}
+		return null;
+	}
+
+	private static boolean isNonzero(ASTNode node) {
+		return node instanceof LiteralNode literal && (literal.isInteger() ? literal.getIntegerValue() != 0
+				: literal.isReal() && literal.getRealValue() != 0);
+	}
+
+	private ASTNode inline(FunctionNode function, FunctionCallNode call) {
+		int[] parameters = function.getParameterSymbols();
+		List<ASTNode> arguments = call.getParameters();
+		if (arguments.size() != parameters.length) {
+			return null;
+		}
+		for (ASTNode argument : arguments) {
+			if (kind(argument, Set.of(), Set.of(), Set.of()) != Kind.NUMBER) {
+				return null;
+			}
+		}
+		ASTNode body = unwrap(function.getBody());
+		boolean prog = body instanceof ProgNode;
+		if (prog && global) {
+			return null;
+		}
+
+		Map<Integer, Integer> uses = new HashMap<>();
+		new Count(uses).transform(body);
+		Map<Integer, ASTNode> substitutes = new HashMap<>();
+		List<ASTNode> bindings = new ArrayList<>();
+		for (int i = 0; i < parameters.length; i++) {
+			ASTNode argument = arguments.get(i);
+			if (argument instanceof LiteralNode || argument instanceof AtomNode || uses.getOrDefault(parameters[i], 0) <= 1) {
+				substitutes.put(parameters[i], argument);
+			} else if (global) {
+				return null;
+			} else {
+				String name = freshName(Symbols.name(parameters[i]), function);
+				bindings.add(typedLike(factory.createAssignmentNode(name, argument, call.getLine()), argument));
+				substitutes.put(parameters[i], typedLike(factory.createAtomNode(name, call.getLine()), argument));
+			}
+		}
+
+		Rename rename = new Rename(substitutes, function);
+		if (!prog && bindings.isEmpty()) {
+			return rename.transform(body);
+		}
+		List<ASTNode> statements = new ArrayList<>(bindings);
+		for (ASTNode statement : prog ? ((ProgNode) body).getStatements() : List.of(body)) {
+			statements.add(rename.transform(statement));
+		}
+		return factory.createProgNode(statements, call.getLine(), call.getLine());
+	}
+
+	//'$' never appears in a name read from source
+	private String freshName(String name, FunctionNode function) {
+		return name + "$" + function.getFunctionName() + (++fresh);
+	}
+
+	private static int size(ASTNode node) {
+		Size size = new Size();
+		size.transform(node);
+		return size.nodes;
+	}
+
+	private static class Size extends ASTTransformer {
+		private int nodes;
+
+		Size() {
+			super("size");
+		}
+
+		@Override
+		protected ASTNode transformNode(ASTNode node) {
+			if (node != null) {
+				nodes++;
+			}
+			return super.transformNode(node);
+		}
+	}
+
+	private static class Count extends ASTTransformer {
+		private final Map<Integer, Integer> uses;
+
+		Count(Map<Integer, Integer> uses) {
+			super("count");
+			this.uses = uses;
+		}
+
+		@Override
+		public ASTNode visitAtomNode(AtomNode node) {
+			uses.merge(node.getSymbol(), 1, Integer::sum);
+			return node;
+		}
+	}
+
+	//parameters become their arguments and every setq of the body a fresh name
+	private class Rename extends ASTTransformer {
+		private final Map<Integer, ASTNode> substitutes;
+		private final Map<Integer, String> locals = new HashMap<>();
+		private final FunctionNode function;
+
+		Rename(Map<Integer, ASTNode> substitutes, FunctionNode function) {
+			super("rename", InliningPass.this);
+			this.substitutes = substitutes;
+			this.function = function;
+		}
+
+		@Override
+		public ASTNode visitAtomNode(AtomNode node) {
+			ASTNode substitute = substitutes.get(node.getSymbol());
+			if (substitute != null) {
+				return substitute;
+			}
+			String local = locals.get(node.getSymbol());
+			return local == null ? node : typedLike(factory.createAtomNode(local, node.getLine()), node);
+		}
+
+		@Override
+		public ASTNode visitAssignmentNode(AssignmentNode node) {
+			ASTNode value = transformNode(node.getValue());
+			String local = freshName(node.getVariable(), function);
+			locals.put(node.getSymbol(), local);
+			return typedLike(factory.createAssignmentNode(local, value, node.getLine()), node);
+		}
+	}
+}
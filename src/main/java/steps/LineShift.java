@@ -0,0 +1,166 @@
+package steps;
+
+import ast.ASTNodeFactory;
+import ast.nodes.*;
+import visitors.ASTTransformer;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//copies a tree that moved by a number of lines: every node that carries a line is rebuilt with the new
+//one, literals and other line-free leaves are kept, and so are the shared expressions of a hash-consing
+//factory, which have no line. the input is left as it is, other places may still use it
+class LineShift extends ASTTransformer {
+	private final int delta;
+	private final Map<ASTNode, ASTNode> moved = new IdentityHashMap<>();
+
+	LineShift(ASTNodeFactory factory, int delta) {
+		super("lineshift", factory);
+		this.delta = delta;
+	}
+
+	//the copy made of a node of the last transform, the node itself if it has none
+	ASTNode movedNode(ASTNode node) {
+		return moved.getOrDefault(node, node);
+	}
+
+	private List<ASTNode> all(List<ASTNode> nodes) {
+		List<ASTNode> result = new ArrayList<>(nodes.size());
+		for (ASTNode node : nodes) {
+			result.add(transformNode(node));
+		}
+		return result;
+	}
+
+	private int shift(int line) {
+		return line == ASTNode.NO_LINE ? line : line + delta;
+	}
+
+	//a statement of the input has a line even when shared, the rebuilt one is placed at the new one
+	private ASTNode moved(ASTNode node, ASTNode copy) {
+		copy = factory.placed(copy, shift(node.getLine()));
+		moved.put(node, copy);
+		return typedLike(copy, node);
+	}
+
+	@Override
+	public ASTNode visitAssignmentNode(AssignmentNode node) {
+		return moved(node, factory.createAssignmentNode(node.getVariable(), transformNode(node.getValue()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitAtomNode(AtomNode node) {
+		return moved(node, factory.createAtomNode(node.getSymbol(), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitBreakNode(BreakNode node) {
+		return moved(node, factory.createBreakNode(shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitComparisonNode(ComparisonNode node) {
+		return moved(node, factory.createComparisonNode(node.getOpcode(), transformNode(node.getLeftElement()),
+				transformNode(node.getRightElement()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitConditionNode(ConditionNode node) {
+		List<ConditionBranch> branches = new ArrayList<>();
+		for (ConditionBranch branch : node.getBranches()) {
+			branches.add(factory.createConditionBranch(transformNode(branch.getCondition()), transformNode(branch.getAction())));
+		}
+		return moved(node, factory.createConditionNode(branches, transformNode(node.getDefaultAction()),
+				shift(node.getLineOp()), shift(node.getLineClo())));
+	}
+
+	@Override
+	public ASTNode visitConsNode(ConsNode node) {
+		return moved(node, factory.createConsNode(transformNode(node.getHead()), transformNode(node.getTail()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitFunctionNode(FunctionNode node) {
+		return moved(node, factory.createFunctionNode(node.getFunctionName(), node.getParameters(), transformNode(node.getBody()),
+				shift(node.getLineOp()), shift(node.getLineClo())));
+	}
+
+	@Override
+	public ASTNode visitFunctionCallNode(FunctionCallNode node) {
+		return moved(node, factory.createFunctionCallNode(node.getFunctionName(), all(node.getParameters()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitHeadNode(HeadNode node) {
+		return moved(node, factory.createHeadNode(transformNode(node.getHead()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitLambdaNode(LambdaNode node) {
+		return moved(node, factory.createLambdaNode(node.getParameters(), transformNode(node.getBody()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitListNode(ListNode node) {
+		return moved(node, factory.createListNode(all(node.getElements()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitLogicalOperationNode(LogicalOperationNode node) {
+		return moved(node, factory.createLogicalOperationNode(node.getOpcode(), transformNode(node.getLeftElement()),
+				transformNode(node.getRightElement()), shift(node.getLineOp()), shift(node.getLineClo())));
+	}
+
+	@Override
+	public ASTNode visitNotNode(NotNode node) {
+		return moved(node, factory.createNotNode(transformNode(node.getElement()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitOperationNode(OperationNode node) {
+		return moved(node, factory.createOperationNode(node.getOpcode(), all(node.getOperands()), false, shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitPredicateNode(PredicateNode node) {
+		return moved(node, factory.createPredicateNode(node.getOpcode(), transformNode(node.getElement()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitProgNode(ProgNode node) {
+		return moved(node, factory.createProgNode(all(node.getStatements()), shift(node.getLineOp()), shift(node.getLineClo())));
+	}
+
+	@Override
+	public ASTNode visitReturnNode(ReturnNode node) {
+		return moved(node, factory.createReturnNode(transformNode(node.getReturnValue()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitTailNode(TailNode node) {
+		return moved(node, factory.createTailNode(transformNode(node.getTail()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitWhileNode(WhileNode node) {
+		return moved(node, factory.createWhileNode(transformNode(node.getCondition()), all(node.getBody()),
+				shift(node.getLineOp()), shift(node.getLineClo())));
+	}
+
+	@Override
+	public ASTNode visitQuoteNode(QuoteNode node) {
+		return moved(node, factory.createQuoteNode(transformNode(node.getQuotedExpr()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitLambdaCallNode(LambdaCallNode node) {
+		return moved(node, new LambdaCallNode(node.getLambdaName(), all(node.getParameters()), shift(node.getLine())));
+	}
+
+	@Override
+	public ASTNode visitEvalNode(EvalNode node) {
+		return moved(node, factory.createEvalNode(transformNode(node.getNode()), shift(node.getLine())));
+	}
+}
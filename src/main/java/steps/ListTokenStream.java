@@ -0,0 +1,28 @@
+package steps;
+
+import java.util.List;
+
+public class ListTokenStream implements TokenStream {
+	private final List<Token> tokens;
+	private int index;
+
+	public ListTokenStream(List<Token> tokens) {
+		this.tokens = tokens;
+		this.index = 0;
+	}
+
+	@Override
+	public Token peek() {
+		return tokens.get(index);
+	}
+
+	@Override
+	public boolean hasNext() {
+		return index < tokens.size();
+	}
+
+	@Override
+	public Token next() {
+		return tokens.get(index++);
+	}
+}
@@ -0,0 +1,243 @@
+package steps;
+
+import ast.nodes.*;
+import visitors.ASTTransformer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//moves arithmetic that gives the same number on every iteration of a while out of the loop, into a setq
+//of a fresh name right before it, and reads that name where the arithmetic was. only a while that is a
+//statement is rewritten, so there is a place before it. the moved arithmetic now runs even when the loop
+//would not have reached it, so it must not be able to fail: number literals, and variables that type
+//inference found numeric, that a statement before the loop sets (or that are parameters) and that the
+//loop never sets; divide only by a nonzero literal. a setq in a called func lands in the func's own scope,
+//so calls set nothing here, but an eval in the loop could set anything and leaves the loop as it is
+public class LoopInvariantCodeMotionPass extends ASTTransformer {
+	private Set<Integer> defined = new HashSet<>(); //set by an earlier statement of the enclosing progs
+	private int fresh;
+
+	public LoopInvariantCodeMotionPass() {
+		super("loop-invariant");
+	}
+
+	@Override
+	protected ASTNode rewrite(ASTNode root) {
+		defined = new HashSet<>();
+		return transformNode(root);
+	}
+
+	@Override
+	public ASTNode visitProgNode(ProgNode node) {
+		List<ASTNode> statements = statements(node.getStatements());
+		if (statements == null) {
+			return node;
+		}
+		return typedLike(factory.createProgNode(statements, node.getLineOp(), node.getLineClo()), node);
+	}
+
+	@Override
+	public ASTNode visitWhileNode(WhileNode node) {
+		ASTNode condition = transformNode(node.getCondition());
+		List<ASTNode> body = statements(node.getBody());
+		if (condition == node.getCondition() && body == null) {
+			return node;
+		}
+		return typedLike(factory.createWhileNode(condition, body == null ? node.getBody() : body,
+				node.getLineOp(), node.getLineClo()), node);
+	}
+
+	//null when no statement changed. inner loops are done first, what they hoist can then move further out
+	private List<ASTNode> statements(List<ASTNode> statements) {
+		Set<Integer> outer = defined;
+		defined = new HashSet<>(outer);
+		List<ASTNode> result = null;
+		for (int i = 0; i < statements.size(); i++) {
+			ASTNode statement = statements.get(i);
+			ASTNode transformed = transformNode(statement);
+			List<ASTNode> replacement = transformed instanceof WhileNode loop ? hoist(loop) : List.of(transformed);
+			if (result == null && (replacement.size() != 1 || replacement.getFirst() != statement)) {
+				result = new ArrayList<>(statements.subList(0, i));
+			}
+			if (result != null) {
+				result.addAll(replacement);
+			}
+			if (statement instanceof AssignmentNode assignment) {
+				defined.add(assignment.getSymbol());
+			}
+		}
+		defined = outer;
+		return result;
+	}
+
+	private List<ASTNode> hoist(WhileNode loop) {
+		Assigned assigned = new Assigned();
+		assigned.transform(loop);
+		if (assigned.eval) {
+			return List.of(loop);
+		}
+		Hoist hoist = new Hoist(assigned.symbols);
+		ASTNode condition = hoist.from(loop.getCondition());
+		List<ASTNode> body = hoist.from(loop.getBody());
+		if (hoist.setqs.isEmpty()) {
+			return List.of(loop);
+		}
+		List<ASTNode> result = new ArrayList<>(hoist.setqs);
+		result.add(typedLike(factory.createWhileNode(condition, body == null ? loop.getBody() : body,
+				loop.getLineOp(), loop.getLineClo()), loop));
+		return result;
+	}
+
+	//a func body runs in a scope of its own, where only the parameters are set to begin with
+	@Override
+	public ASTNode visitFunctionNode(FunctionNode node) {
+		Set<Integer> outer = defined;
+		defined = new HashSet<>();
+		for (int parameter : node.getParameterSymbols()) {
+			defined.add(parameter);
+		}
+		try {
+			return super.visitFunctionNode(node);
+		} finally {
+			defined = outer;
+		}
+	}
+
+	@Override
+	public ASTNode visitLambdaNode(LambdaNode node) {
+		Set<Integer> outer = defined;
+		defined = new HashSet<>();
+		try {
+			return super.visitLambdaNode(node);
+		} finally {
+			defined = outer;
+		}
+	}
+
+	//quoted code can run through eval anywhere
+	@Override
+	public ASTNode visitQuoteNode(QuoteNode node) {
+		return node;
+	}
+
+	//what a loop sets in the scope it runs in
+	private static class Assigned extends ASTTransformer {
+		private final Set<Integer> symbols = new HashSet<>();
+		private boolean eval;
+
+		Assigned() {
+			super("loop-invariant");
+		}
+
+		@Override
+		public ASTNode visitAssignmentNode(AssignmentNode node) {
+			symbols.add(node.getSymbol());
+			return super.visitAssignmentNode(node);
+		}
+
+		@Override
+		public ASTNode visitFunctionNode(FunctionNode node) {
+			symbols.add(node.getSymbol());
+			return node;
+		}
+
+		@Override
+		public ASTNode visitLambdaNode(LambdaNode node) {
+			return node;
+		}
+
+		@Override
+		public ASTNode visitQuoteNode(QuoteNode node) {
+			return node;
+		}
+
+		@Override
+		public ASTNode visitEvalNode(EvalNode node) {
+			eval = true;
+			return super.visitEvalNode(node);
+		}
+	}
+
+	//replaces the largest invariant arithmetic of one loop, the same node by the same name
+	private class Hoist extends ASTTransformer {
+		private final Set<Integer> assigned;
+		private final Map<ASTNode, ASTNode> temporaries = new IdentityHashMap<>();
+		private final List<ASTNode> setqs = new ArrayList<>();
+
+		Hoist(Set<Integer> assigned) {
+			super("loop-invariant", LoopInvariantCodeMotionPass.this);
+			this.assigned = assigned;
+		}
+
+		ASTNode from(ASTNode node) {
+			return transformNode(node);
+		}
+
+		List<ASTNode> from(List<ASTNode> nodes) {
+			return transformAll(nodes);
+		}
+
+		@Override
+		protected ASTNode transformNode(ASTNode node) {
+			if (node instanceof OperationNode operation && invariant(operation)) {
+				return temporaries.computeIfAbsent(operation, this::temporary);
+			}
+			return super.transformNode(node);
+		}
+
+		//'$' never appears in a name read from source
+		private ASTNode temporary(ASTNode expression) {
+			String name = "$loop" + (++fresh);
+			int line = ((OperationNode) expression).getLine();
+			setqs.add(typedLike(factory.createAssignmentNode(name, expression, line), expression));
+			LoopInvariantCodeMotionPass.this.count("hoisted");
+			return typedLike(factory.createAtomNode(name, line), expression);
+		}
+
+		private boolean invariant(ASTNode node) {
+			if (node instanceof LiteralNode literal) {
+				return literal.isInteger() || literal.isReal();
+			} else if (node instanceof AtomNode atom) {
+				return !assigned.contains(atom.getSymbol()) && defined.contains(atom.getSymbol())
+						&& (annotations().valueType(atom) == ASTNode.ValueType.INT || annotations().valueType(atom) == ASTNode.ValueType.REAL);
+			} else if (node instanceof OperationNode operation && !operation.getOperands().isEmpty()) {
+				List<ASTNode> operands = operation.getOperands();
+				for (int i = 0; i < operands.size(); i++) {
+					if (i > 0 && operation.getOpcode() == Opcode.DIVIDE && !nonzero(operands.get(i))) {
+						return false;
+					}
+					if (!invariant(operands.get(i))) {
+						return false;
+					}
+				}
+				return true;
+			}
+			return false;
+		}
+
+		private static boolean nonzero(ASTNode node) {
+			return node instanceof LiteralNode literal && (literal.isInteger() ? literal.getIntegerValue() != 0
+					: literal.isReal() && literal.getRealValue() != 0);
+		}
+
+		//bodies and quoted code do not run as part of the loop
+		@Override
+		public ASTNode visitFunctionNode(FunctionNode node) {
+			return node;
+		}
+
+		@Override
+		public ASTNode visitLambdaNode(LambdaNode node) {
+			return node;
+		}
+
+		@Override
+		public ASTNode visitQuoteNode(QuoteNode node) {
+			return node;
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package steps;
+
+import ast.nodes.ASTNode;
+import visitors.ASTTransformer;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//rewrites an analyzed tree into one that runs the same but does less. transformers run in the order they
+//were registered, each on the tree the one before it returned; the analyzed tree itself is never changed
+public class Optimizer {
+	private final List<ASTTransformer> transformers = new ArrayList<>();
+
+	public Optimizer() {
+		register(new InliningPass());
+		register(new ConstantFoldingPass());
+		register(new LoopInvariantCodeMotionPass());
+		register(new DeadCodeEliminationPass());
+		//these two only mark what the interpreter may memoize or run without recursing, so they see the final tree
+		register(new PurityPass());
+		register(new TailCallPass());
+	}
+
+	public void register(ASTTransformer transformer) {
+		transformers.add(transformer);
+	}
+
+	public List<ASTTransformer> getTransformers() {
+		return List.copyOf(transformers);
+	}
+
+	public ASTNode optimize(ASTNode root) {
+		ASTNode current = root;
+		for (ASTTransformer transformer : transformers) {
+			current = transformer.transform(current);
+		}
+		return current;
+	}
+
+	//what each transformer changed in the last optimize, by kind of change
+	public Map<String, Map<String, Integer>> getCounts() {
+		Map<String, Map<String, Integer>> counts = new LinkedHashMap<>();
+		for (ASTTransformer transformer : transformers) {
+			counts.put(transformer.getName(), transformer.getCounts());
+		}
+		return counts;
+	}
+
+	//one line per transformer that changed anything, e.g. "dead-code: 2 unused setq, 1 uncalled func"
+	public String report() {
+		StringBuilder report = new StringBuilder();
+		for (Map.Entry<String, Map<String, Integer>> transformer : getCounts().entrySet()) {
+			if (transformer.getValue().isEmpty()) {
+				continue;
+			}
+			report.append(transformer.getKey()).append(':');
+			String separator = " ";
+			for (Map.Entry<String, Integer> change : transformer.getValue().entrySet()) {
+				report.append(separator).append(change.getValue()).append(' ').append(change.getKey());
+				separator = ", ";
+			}
+			report.append('\n');
+		}
+		return report.toString();
+	}
+}
@@ -0,0 +1,155 @@
+package steps;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//lexes large sources on a fork-join pool; the source is cut only after a closing top-level paren,
+//so no token spans two chunks and the stitched result is the same as Flexer.tokenize()
+public class ParallelFlexer {
+	private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+	private final ForkJoinPool pool;
+	private final int minChunkSize;
+
+	public ParallelFlexer() {
+		this(ForkJoinPool.commonPool(), MIN_CHUNK_SIZE);
+	}
+
+	public ParallelFlexer(ForkJoinPool pool, int minChunkSize) {
+		this.pool = pool;
+		this.minChunkSize = minChunkSize;
+	}
+
+	public List<Token> tokenize(ByteBuffer input) throws Exception {
+		return tokenize(new ByteCharSequence(input));
+	}
+
+	public List<Token> tokenize(CharSequence input) throws Exception {
+		Chunk[] chunks = split(input);
+		Lex task = new Lex(input, chunks, 0, chunks.length, false);
+		pool.invoke(task);
+
+		int total = 1;
+		for (Chunk chunk : chunks) {
+			rethrow(chunk);
+			total += chunk.tokens.size() - 1;
+		}
+		//every chunk ends with its own EOF, only the last one is kept
+		List<Token> tokens = new ArrayList<>(total);
+		for (int i = 0; i < chunks.length; i++) {
+			List<Token> chunkTokens = chunks[i].tokens;
+			tokens.addAll(i == chunks.length - 1 ? chunkTokens : chunkTokens.subList(0, chunkTokens.size() - 1));
+		}
+		return tokens;
+	}
+
+	public TokenBuffer tokenizeToBuffer(ByteBuffer input) throws Exception {
+		return tokenizeToBuffer(new ByteCharSequence(input));
+	}
+
+	public TokenBuffer tokenizeToBuffer(CharSequence input) throws Exception {
+		Chunk[] chunks = split(input);
+		Lex task = new Lex(input, chunks, 0, chunks.length, true);
+		pool.invoke(task);
+
+		int total = 1;
+		for (Chunk chunk : chunks) {
+			rethrow(chunk);
+			total += chunk.buffer.size() - 1;
+		}
+		TokenBuffer buffer = new TokenBuffer(input, total);
+		for (int i = 0; i < chunks.length; i++) {
+			TokenBuffer chunkBuffer = chunks[i].buffer;
+			buffer.append(chunkBuffer, 0, i == chunks.length - 1 ? chunkBuffer.size() : chunkBuffer.size() - 1, 0, 0);
+		}
+		return buffer;
+	}
+
+	//chunks are checked in source order, so the reported error is the one the sequential lexer hits first
+	private static void rethrow(Chunk chunk) throws Exception {
+		if (chunk.error != null) {
+			throw chunk.error;
+		}
+	}
+
+	//one pass counting parens and newlines; only cuts where the depth drops back to zero
+	private Chunk[] split(CharSequence input) {
+		int length = input.length();
+		int target = Math.max(minChunkSize, length / (pool.getParallelism() * 4 + 1));
+		List<Chunk> chunks = new ArrayList<>();
+		int start = 0;
+		int startLine = 1;
+		int line = 1;
+		int depth = 0;
+
+		for (int i = 0; i < length; i++) {
+			char curr = input.charAt(i);
+			if (curr == '\n') {
+				line++;
+			} else if (curr == '(') {
+				depth++;
+			} else if (curr == ')' && depth > 0 && --depth == 0 && i + 1 - start >= target) {
+				chunks.add(new Chunk(start, i + 1, startLine));
+				start = i + 1;
+				startLine = line;
+			}
+		}
+		chunks.add(new Chunk(start, length, startLine));
+		return chunks.toArray(new Chunk[0]);
+	}
+
+	private static class Chunk {
+		final int start;
+		final int end;
+		final int line;
+		List<Token> tokens;
+		TokenBuffer buffer;
+		Exception error;
+
+		Chunk(int start, int end, int line) {
+			this.start = start;
+			this.end = end;
+			this.line = line;
+		}
+	}
+
+	private static class Lex extends RecursiveAction {
+		private final CharSequence input;
+		private final Chunk[] chunks;
+		private final int from;
+		private final int to;
+		private final boolean buffered;
+
+		Lex(CharSequence input, Chunk[] chunks, int from, int to, boolean buffered) {
+			this.input = input;
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.buffered = buffered;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Lex(input, chunks, from, middle, buffered), new Lex(input, chunks, middle, to, buffered));
+				return;
+			}
+			Chunk chunk = chunks[from];
+			Flexer lexer = new Flexer();
+			lexer.setInput(input, chunk.start, chunk.end, chunk.line);
+			try {
+				if (buffered) {
+					chunk.buffer = lexer.tokenizeToBuffer();
+				} else {
+					chunk.tokens = lexer.tokenize();
+				}
+			} catch (Exception e) {
+				chunk.error = e;
+			}
+		}
+	}
+}
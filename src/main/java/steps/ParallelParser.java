@@ -0,0 +1,216 @@
+package steps;
+
+import ast.nodes.ASTNode;
+import ast.nodes.FunctionNode;
+import ast.nodes.LambdaNode;
+import things.SymbolTable;
+import things.Symbols;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+//parses runs of top-level forms on a fork-join pool. whether (f ...) is a call or a list depends on the
+//global definitions made before it, so a first parallel pass registers what every run declares (each func
+//with its arity, and setq outside of prog, func and lambda) and every run then starts from the declarations
+//of the runs before it, the same view the sequential parser would have at that point
+public class ParallelParser {
+	private static final int MIN_TASK_TOKENS = 4096;
+
+	private final Parser parser;
+	private final ForkJoinPool pool;
+	private final int minTaskTokens;
+
+	public ParallelParser(Parser parser) {
+		this(parser, ForkJoinPool.commonPool(), MIN_TASK_TOKENS);
+	}
+
+	public ParallelParser(Parser parser, ForkJoinPool pool, int minTaskTokens) {
+		this.parser = parser;
+		this.pool = pool;
+		this.minTaskTokens = minTaskTokens;
+	}
+
+	public ASTNode parse(TokenBuffer buffer) throws Exception {
+		Run[] runs = split(buffer);
+		if (runs.length < 2) {
+			return parseSequentially(buffer);
+		}
+		pool.invoke(new Each(runs, 0, runs.length, run -> run.declarations = declarations(buffer, run.from, run.to)));
+		pool.invoke(new Each(runs, 0, runs.length, run -> parseRun(buffer, runs, run)));
+
+		//a run that did not stop on its boundary means the forms were not shaped like their parens
+		for (Run run : runs) {
+			if (run.error != null) {
+				break;
+			}
+			if (run.end != run.to) {
+				return parseSequentially(buffer);
+			}
+		}
+
+		List<ASTNode> statements = new ArrayList<>();
+		for (Run run : runs) {
+			run.definitions.defineIn(parser.getGlobalScope());
+			statements.addAll(run.statements);
+			if (run.error != null) {
+				throw run.error;
+			}
+		}
+		return parser.createProgram(statements);
+	}
+
+	private ASTNode parseSequentially(TokenBuffer buffer) throws Exception {
+		parser.setTokens(buffer);
+		return parser.parse();
+	}
+
+	private void parseRun(TokenBuffer buffer, Run[] runs, Run run) {
+		SymbolTable scope = parser.getGlobalScope().copy();
+		for (int i = 0; runs[i] != run; i++) {
+			runs[i].declarations.defineIn(scope);
+		}
+		Parser worker = new Parser(scope, parser.getFactory());
+		worker.record(run.definitions);
+		TokenBuffer.Cursor cursor = buffer.stream(run.from);
+		worker.setTokens(cursor);
+		try {
+			while (cursor.index() < run.to) {
+				run.statements.add(worker.parseExpr());
+			}
+		} catch (Exception e) {
+			run.error = e;
+		}
+		run.end = cursor.index();
+	}
+
+	//cuts before a top-level ( that follows a closed top-level form, once a run has enough tokens
+	private List<Integer> cuts(TokenBuffer buffer) {
+		List<Integer> cuts = new ArrayList<>();
+		cuts.add(0);
+		int depth = 0;
+		int last = 0;
+		for (int i = 0; i < buffer.size(); i++) {
+			TokenType type = buffer.type(i);
+			if (type == TokenType.LPAREN) {
+				if (depth == 0 && i > 0 && buffer.type(i - 1) == TokenType.RPAREN && i - last >= minTaskTokens) {
+					cuts.add(i);
+					last = i;
+				}
+				depth++;
+			} else if (type == TokenType.RPAREN) {
+				depth--;
+			}
+		}
+		cuts.add(buffer.size() - 1);
+		return cuts;
+	}
+
+	private Run[] split(TokenBuffer buffer) {
+		List<Integer> cuts = cuts(buffer);
+		Run[] runs = new Run[cuts.size() - 1];
+		for (int i = 0; i < runs.length; i++) {
+			runs[i] = new Run(cuts.get(i), cuts.get(i + 1));
+		}
+		return runs;
+	}
+
+	//global names the forms in [from, to) define, with placeholder nodes of the right kind
+	private static Parser.Definitions declarations(TokenBuffer buffer, int from, int to) {
+		Parser.Definitions declarations = new Parser.Definitions();
+		int[] scopes = new int[16];
+		int scopeCount = 0;
+		int depth = 0;
+		for (int i = from; i < to; i++) {
+			TokenType type = buffer.type(i);
+			if (type == TokenType.RPAREN) {
+				if (scopeCount > 0 && scopes[scopeCount - 1] == depth) {
+					scopeCount--;
+				}
+				depth--;
+			} else if (type == TokenType.LPAREN && i + 1 < to) {
+				depth++;
+				TokenType operator = buffer.type(i + 1);
+				if (operator == TokenType.FUNC || operator == TokenType.PROG || operator == TokenType.LAMBDA) {
+					if (scopeCount == scopes.length) {
+						scopes = Arrays.copyOf(scopes, scopeCount * 2);
+					}
+					scopes[scopeCount++] = depth;
+				}
+				if (operator == TokenType.FUNC) {
+					FunctionNode function = declaredFunction(buffer, i + 1, to);
+					if (function != null) {
+						declarations.add(function.getSymbol(), function);
+					}
+				} else if (operator == TokenType.SETQ && scopeCount == 0 && i + 2 < to && buffer.type(i + 2) == TokenType.ATOM) {
+					declarations.add(buffer.symbol(i + 2), declaredValue(buffer, i + 3, to));
+				}
+			}
+		}
+		return declarations;
+	}
+
+	private static FunctionNode declaredFunction(TokenBuffer buffer, int func, int to) {
+		if (func + 2 >= to || buffer.type(func + 1) != TokenType.ATOM || buffer.type(func + 2) != TokenType.LPAREN) {
+			return null;
+		}
+		List<String> parameters = new ArrayList<>();
+		for (int i = func + 3; i < to && buffer.type(i) == TokenType.ATOM; i++) {
+			parameters.add(Symbols.name(buffer.symbol(i)));
+		}
+		return new FunctionNode(Symbols.name(buffer.symbol(func + 1)), parameters, null, 0, 0);
+	}
+
+	private static ASTNode declaredValue(TokenBuffer buffer, int value, int to) {
+		if (value + 1 >= to || buffer.type(value) != TokenType.LPAREN) {
+			return null;
+		}
+		return switch (buffer.type(value + 1)) {
+			case LAMBDA -> new LambdaNode(List.of(), null, 0);
+			case FUNC -> declaredFunction(buffer, value + 1, to);
+			default -> null;
+		};
+	}
+
+	private static class Run {
+		final int from;
+		final int to;
+		Parser.Definitions declarations;
+		final Parser.Definitions definitions = new Parser.Definitions();
+		final List<ASTNode> statements = new ArrayList<>();
+		Exception error;
+		int end;
+
+		Run(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+	}
+
+	private static class Each extends RecursiveAction {
+		private final Run[] runs;
+		private final int from;
+		private final int to;
+		private final Consumer<Run> work;
+
+		Each(Run[] runs, int from, int to, Consumer<Run> work) {
+			this.runs = runs;
+			this.from = from;
+			this.to = to;
+			this.work = work;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Each(runs, from, middle, work), new Each(runs, middle, to, work));
+				return;
+			}
+			work.accept(runs[from]);
+		}
+	}
+}
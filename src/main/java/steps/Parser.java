@@ -5,31 +5,74 @@ import ast.nodes.ASTNode;
 import ast.nodes.ConditionBranch;
 import ast.nodes.FunctionNode;
 import ast.nodes.LambdaNode;
+import ast.nodes.Opcode;
 import things.SymbolTable;
+import things.Symbols;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class Parser {
     private final ASTNodeFactory factory;
-    private List<Token> tokens;
-    private int currentTokenIndex;
+    private TokenStream tokens;
     private final SymbolTable globalScope;
     private SymbolTable currentScope;
 
+    //top-level forms of the last reparse, keyed by their content and the definitions visible before them
+    private Map<Long, ParsedForm> parsedForms = new HashMap<>();
+    private Definitions recording;
+
     public Parser() {
-        factory = new ASTNodeFactory();
-        this.globalScope = new SymbolTable(null);
+        this(new ASTNodeFactory());
+    }
+
+    //pass new ASTNodeFactory(true) to share identical subtrees
+    public Parser(ASTNodeFactory factory) {
+        this(new SymbolTable(null), factory);
+    }
+
+    Parser(SymbolTable globalScope, ASTNodeFactory factory) {
+        this.factory = factory;
+        this.globalScope = globalScope;
         this.currentScope = globalScope;
     }
 
+    ASTNodeFactory getFactory() {
+        return factory;
+    }
+
+    SymbolTable getGlobalScope() {
+        return globalScope;
+    }
+
+    //global definitions made from now on are also added to the given list
+    void record(Definitions definitions) {
+        recording = definitions;
+    }
+
     public void setTokens(List<Token> tokens) {
+        this.tokens = new ListTokenStream(tokens);
+    }
+
+    public void setTokens(TokenStream tokens) {
         this.tokens = tokens;
-        this.currentTokenIndex = 0;
     }
 
+    public void setTokens(TokenBuffer tokens) {
+        this.tokens = tokens.stream();
+    }
+
+    //the parser reads the fields of the current token from the stream, a Token is only built for error messages
     private Token peek() {
-        return tokens.get(currentTokenIndex);
+        return tokens.peek();
+    }
+
+    private TokenType type() {
+        return tokens.type();
     }
 
     public ASTNode parse() throws Exception {
@@ -38,500 +81,918 @@ public class Parser {
             ASTNode node = parseExpr();
             statements.add(node);
         }
+        return createProgram(statements);
+    }
+
+    ASTNode createProgram(List<ASTNode> statements) {
         ASTNode prognode = factory.createProgNode(statements, 0, 0);
         prognode.setType(ASTNode.NodeType.PROG);
-
         return prognode;
     }
 
+    //parses the buffer again, keeping the nodes of every top-level form whose tokens and preceding global
+    //definitions are unchanged since the last call. a form that only moved to other lines is copied with
+    //its lines shifted instead of being parsed again. the global scope is rebuilt from the forms, so
+    //functions of removed or edited forms disappear with them
+    public ASTNode reparse(TokenBuffer buffer) throws Exception {
+        globalScope.clear();
+        currentScope = globalScope;
+
+        Map<Long, ParsedForm> forms = new HashMap<>();
+        List<ASTNode> statements = new ArrayList<>();
+        long environment = 0;
+        int index = 0;
+        while (buffer.type(index) != TokenType.EOF) {
+            int end = formEnd(buffer, index);
+            long hash = end < 0 ? 0 : hash(buffer, index, end, environment);
+            //a form is taken out once reused, so a second copy of it elsewhere gets nodes of its own
+            ParsedForm form = end < 0 ? null : parsedForms.remove(hash);
+            if (form != null && form.matches(buffer, index, end)) {
+                form = form.movedTo(buffer, index, factory);
+                form.definitions.defineIn(globalScope);
+            } else {
+                form = parseForm(buffer, index, environment);
+            }
+            forms.put(form.hash, form);
+            statements.add(form.node);
+            environment = form.environmentAfter;
+            index += form.length;
+        }
+        parsedForms = forms;
+        return createProgram(statements);
+    }
+
+    private ParsedForm parseForm(TokenBuffer buffer, int start, long environment) throws Exception {
+        TokenBuffer.Cursor cursor = buffer.stream(start);
+        tokens = cursor;
+        ParsedForm form = new ParsedForm();
+        recording = form.definitions;
+        try {
+            form.node = parseExpr();
+        } finally {
+            recording = null;
+        }
+        form.buffer = buffer;
+        form.start = start;
+        form.length = cursor.index() - start;
+        form.hash = hash(buffer, start, cursor.index(), environment);
+
+        long after = environment;
+        for (int i = 0; i < form.definitions.symbols.size(); i++) {
+            ASTNode value = form.definitions.values.get(i);
+            int kind = value instanceof FunctionNode function ? 2 + function.getParameters().size()
+                    : value instanceof LambdaNode ? 1 : 0;
+            after = (after * 31 + form.definitions.symbols.get(i)) * 0x100000001b3L ^ kind;
+        }
+        form.environmentAfter = after;
+        return form;
+    }
+
+    //end of the parenthesized form starting at index, -1 if it is not one or is never closed
+    private static int formEnd(TokenBuffer buffer, int index) {
+        if (buffer.type(index) != TokenType.LPAREN) {
+            return -1;
+        }
+        int depth = 0;
+        for (int i = index; i < buffer.size(); i++) {
+            TokenType type = buffer.type(i);
+            if (type == TokenType.LPAREN) {
+                depth++;
+            } else if (type == TokenType.RPAREN && --depth == 0) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    //lines are left out, a form that only moved finds its old nodes
+    private static long hash(TokenBuffer buffer, int start, int end, long environment) {
+        long hash = environment ^ 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ buffer.type(i).ordinal()) * 0x100000001b3L;
+            hash = (hash ^ buffer.length(i)) * 0x100000001b3L;
+            hash = (hash ^ buffer.payload(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    //records what a top-level form put into the global scope while recording
+    private void define(SymbolTable scope, int symbol, ASTNode value) {
+        scope.define(symbol, value);
+        if (recording != null && scope == globalScope) {
+            recording.add(symbol, value);
+        }
+    }
+
+    private static class ParsedForm {
+        ASTNode node;
+        TokenBuffer buffer; //the tokens it was parsed from, kept to check a hash hit against
+        int start;
+        int length;
+        long hash;
+        long environmentAfter;
+        Definitions definitions = new Definitions();
+
+        //same tokens as [start, end) of the given buffer, all moved by the same number of lines
+        boolean matches(TokenBuffer other, int otherStart, int otherEnd) {
+            if (otherEnd - otherStart != length) {
+                return false;
+            }
+            int delta = other.line(otherStart) - buffer.line(start);
+            for (int i = 0; i < length; i++) {
+                int mine = start + i;
+                int theirs = otherStart + i;
+                if (buffer.type(mine) != other.type(theirs) || buffer.payload(mine) != other.payload(theirs)
+                        || buffer.length(mine) != other.length(theirs) || other.line(theirs) - buffer.line(mine) != delta) {
+                    return false;
+                }
+                //7 and 007 decode alike, numbers are compared as written
+                if ((buffer.type(mine) == TokenType.INTEGER || buffer.type(mine) == TokenType.REAL)
+                        && CharSequence.compare(buffer.value(mine), other.value(theirs)) != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        //the form at its place in the given buffer, with its nodes copied when its lines changed
+        ParsedForm movedTo(TokenBuffer other, int otherStart, ASTNodeFactory factory) {
+            ParsedForm form = new ParsedForm();
+            form.buffer = other;
+            form.start = otherStart;
+            form.length = length;
+            form.hash = hash;
+            form.environmentAfter = environmentAfter;
+            int delta = other.line(otherStart) - buffer.line(start);
+            if (delta == 0) {
+                form.node = node;
+                form.definitions = definitions;
+                return form;
+            }
+            LineShift shift = new LineShift(factory, delta);
+            form.node = shift.transform(node);
+            for (int i = 0; i < definitions.symbols.size(); i++) {
+                ASTNode value = definitions.values.get(i);
+                form.definitions.add(definitions.symbols.get(i), value == null ? null : shift.movedNode(value));
+            }
+            return form;
+        }
+    }
+
+    //global definitions in the order they were made
+    static class Definitions {
+        final List<Integer> symbols = new ArrayList<>();
+        final List<ASTNode> values = new ArrayList<>();
+
+        void add(int symbol, ASTNode value) {
+            symbols.add(symbol);
+            values.add(value);
+        }
+
+        void defineIn(SymbolTable scope) {
+            for (int i = 0; i < symbols.size(); i++) {
+                scope.define(symbols.get(i), values.get(i));
+            }
+        }
+    }
+
+    //iterative: constructs being parsed are kept as frames on a heap stack, so nesting depth is only
+    //limited by memory. each frame asks for child expressions until it can build its node
     public ASTNode parseExpr() throws Exception {
-        Token currentToken = peek();
+        Deque<Frame> stack = new ArrayDeque<>();
+        ASTNode result = start(stack);
+        while (!stack.isEmpty()) {
+            Frame frame = stack.peek();
+            if (result != null) {
+                frame.accept(result);
+                result = null;
+            }
+            if (frame.more()) {
+                result = start(stack);
+            } else {
+                stack.pop();
+                result = frame.finish();
+            }
+        }
+        return result;
+    }
+
+    //one partly parsed construct
+    private abstract static class Frame {
+        final List<ASTNode> children = new ArrayList<>();
+        boolean statement; //the node built stands as a statement
 
-        return switch (currentToken.type) {
+        //true when the expression started next is one of the statements the construct is made of
+        boolean takesStatements() {
+            return false;
+        }
+
+        void accept(ASTNode child) throws Exception {
+            children.add(child);
+        }
+
+        //true while another expression is expected
+        abstract boolean more() throws Exception;
+
+        abstract ASTNode finish() throws Exception;
+    }
+
+    //returns the node of a leaf expression, or pushes the frame of a construct and returns null
+    private ASTNode start(Deque<Frame> stack) throws Exception {
+        TokenType type = type();
+        boolean statement = stack.isEmpty() || stack.peek().takesStatements();
+
+        Frame frame = switch (type) {
             case LPAREN -> parseParenthesizedExpr();
             case QUOTE -> parseQuoteWithoutBrackets();
             case INTEGER -> {
+                ASTNode intnode = factory.createIntegerNode(tokens.integer(), tokens.source(), tokens.start(), tokens.end());
                 advance();
-                ASTNode intnode = factory.createLiteralNode(currentToken.value);
                 intnode.setType(ASTNode.NodeType.ATOM);
-                yield intnode;
+                yield done(intnode);
             }
             case REAL -> {
+                ASTNode realnode = factory.createRealNode(tokens.real(), tokens.source(), tokens.start(), tokens.end());
                 advance();
-                ASTNode realnode = factory.createLiteralNode(currentToken.value);
                 realnode.setType(ASTNode.NodeType.ATOM);
-                yield realnode;
+                yield done(realnode);
             }
             case NULL -> {
                 advance();
-                ASTNode nullnode = factory.createNullNode(currentToken.line);
+                ASTNode nullnode = factory.createNullNode();
                 nullnode.setType(ASTNode.NodeType.NULL);
-                yield nullnode;
+                yield done(nullnode);
             }
             case BOOLEAN -> {
+                ASTNode boolnode = factory.createBooleanNode(Boolean.parseBoolean(tokens.text()));
                 advance();
-                ASTNode boolnode = factory.createBooleanNode(Boolean.parseBoolean(currentToken.value), currentToken.line);
                 boolnode.setType(ASTNode.NodeType.BOOL);
-                yield boolnode;
+                yield done(boolnode);
             }
             case ATOM -> {
-                advance();
+                int symbol = tokens.symbol();
+                int line = advance();
 
-                if (currentScope.isDefined(currentToken.value)) {
-                    ASTNode atomnode = factory.createAtomNode(currentToken.value, currentToken.line);
+                if (currentScope.isDefined(symbol)) {
+                    ASTNode atomnode = factory.createAtomNode(symbol, line);
                     atomnode.setType(ASTNode.NodeType.ATOM);
-                    yield atomnode;
+                    yield done(placed(statement, atomnode, line));
                 } else {
-                    throw new Exception("ERROR: UNDEFINED VARIABLE " + currentToken.value + " at line " + currentToken.line);
+                    throw new Exception("ERROR: UNDEFINED VARIABLE " + Symbols.name(symbol) + " at line " + line);
                 }
             }
-            case LESS, LESSEQ, GREATER, GREATEREQ, EQUAL, NONEQUAL -> parseComparison(currentToken.value);
-            case PLUS, MINUS, TIMES, DIVIDE -> parseOperation(currentToken.value);
+            case LESS, LESSEQ, GREATER, GREATEREQ, EQUAL, NONEQUAL -> parseComparison(opcode(type));
+            case PLUS, MINUS, TIMES, DIVIDE -> parseOperation(opcode(type));
             default ->
-                    throw new Exception("ERROR: UNEXPECTED TOKEN: " + currentToken + " at line " + currentToken.line);
+                    throw new Exception("ERROR: UNEXPECTED TOKEN: " + peek() + " at line " + tokens.line());
         };
+        if (frame instanceof Done leaf) {
+            return leaf.node;
+        }
+        frame.statement = statement;
+        stack.push(frame);
+        return null;
     }
 
-    private ASTNode parseQuoteWithoutBrackets() throws Exception {
-        Token quoteToken = advance();
-        ASTNode quotedExpr = parseExpr();
-        ASTNode quotednode = factory.createQuoteNode(quotedExpr, quoteToken.line);
-        quotednode.addChild(quotedExpr);
-        quotednode.setType(ASTNode.NodeType.QUOTE);
-        return quotednode;
+    //a construct that needed no child expressions
+    private static class Done extends Frame {
+        final ASTNode node;
+
+        Done(ASTNode node) {
+            this.node = node;
+        }
+
+        @Override
+        boolean more() {
+            return false;
+        }
+
+        @Override
+        ASTNode finish() {
+            return node;
+        }
+    }
+
+    private static Frame done(ASTNode node) {
+        return new Done(node);
+    }
+
+    //with hash-consing an expression is shared and has no line, one standing as a statement gets a node of
+    //its own that has it. errors inside a shared expression are reported at the line of that statement
+    private ASTNode placed(boolean statement, ASTNode node, int line) {
+        return statement ? factory.placed(node, line) : node;
+    }
+
+    private Frame parseQuoteWithoutBrackets() {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() {
+                ASTNode quotedExpr = children.getFirst();
+                ASTNode quotednode = factory.createQuoteNode(quotedExpr, line);
+                quotednode.setType(ASTNode.NodeType.QUOTE);
+                return placed(statement, quotednode, line);
+            }
+        };
     }
 
-    private ASTNode parseQuote() throws Exception {
-        Token quoteToken = advance();
-        ASTNode quotedExpr = parseExpr();
-        ASTNode quotednode = factory.createQuoteNode(quotedExpr, quoteToken.line);
-        quotednode.addChild(quotedExpr);
-        quotednode.setType(ASTNode.NodeType.QUOTE);
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER QUOTE at line: " + quoteToken.line);
-        return quotednode;
+    private Frame parseQuote() {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode quotedExpr = children.getFirst();
+                ASTNode quotednode = factory.createQuoteNode(quotedExpr, line);
+                quotednode.setType(ASTNode.NodeType.QUOTE);
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER QUOTE at line: " + line);
+                return placed(statement, quotednode, line);
+            }
+        };
     }
 
     private boolean isAtEnd() {
-        return currentTokenIndex >= tokens.size() || peek().type == TokenType.EOF;
+        return !tokens.hasNext() || type() == TokenType.EOF;
     }
 
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return type() == type;
     }
 
-    public Token advance() {
+    //moves past the current token and returns its line, -1 at the end of input
+    public int advance() {
         if (!isAtEnd()) {
-            return tokens.get(currentTokenIndex++);
+            int line = tokens.line();
+            tokens.skip();
+            return line;
         }
-        return null;
+        return -1;
+    }
+
+    //keyword tokens are named after their operator
+    private static Opcode opcode(TokenType type) {
+        return Opcode.valueOf(type.name());
     }
 
-    private Token consume(TokenType type, String errorMessage) throws Exception {
+    private int consume(TokenType type, String errorMessage) throws Exception {
         if (check(type)) return advance();
         Token opTok = peek();
         throw new Exception(errorMessage + ". FOUND: " + opTok + " at line: " + opTok.getLine());
     }
 
-    private ASTNode parseParenthesizedExpr() throws Exception {
+    private Frame parseParenthesizedExpr() throws Exception {
         consume(TokenType.LPAREN, "ERROR: EXPECTED (");
-        Token operatorToken = peek();
-        if (operatorToken.type == TokenType.INTEGER ||
-                operatorToken.type == TokenType.REAL ||
-                operatorToken.type == TokenType.BOOLEAN) {
+        TokenType operator = type();
+        if (operator == TokenType.INTEGER ||
+                operator == TokenType.REAL ||
+                operator == TokenType.BOOLEAN) {
             // if literal or atom assume a list of literals
             return parseLiteralList();
-        } else if (operatorToken.type == TokenType.ATOM) {
-            String operatorValue = operatorToken.value;
-            if (globalScope.isDefined(operatorValue) && globalScope.lookup(operatorValue) instanceof FunctionNode) {
-                return parseFuncCall(operatorValue);
-            } else if (globalScope.isDefined(operatorValue) && globalScope.lookup(operatorValue) instanceof LambdaNode) {
-                return parseLambdaCall(operatorValue);
+        } else if (operator == TokenType.ATOM) {
+            int operatorSymbol = tokens.symbol();
+            if (globalScope.isDefined(operatorSymbol) && globalScope.lookup(operatorSymbol) instanceof FunctionNode) {
+                return parseFuncCall();
+            } else if (globalScope.isDefined(operatorSymbol) && globalScope.lookup(operatorSymbol) instanceof LambdaNode) {
+                return parseLambdaCall();
             } else {
                 return parseLiteralList();
             }
         }
 
-        return switch (operatorToken.value) {
-            case "setq" -> parseSETQ();
-            case "func" -> parseFUNC();
-            case "cond" -> parseCOND();
-            case "prog" -> parsePROG();
-            case "plus", "minus", "times", "divide" -> parseOperation(operatorToken.value);
-            case "head" -> parseHeadOrTail("head");
-            case "tail" -> parseHeadOrTail("tail");
-            case "cons" -> parseCons();
-            case "while" -> parseWHILE();
-            case "return" -> parseRETURN();
-            case "break" -> parseBREAK();
-            case "isint", "isreal", "isbool", "isnull", "isatom", "islist" -> parsePredicate(operatorToken.value);
-            case "equal", "nonequal", "less", "lesseq", "greater", "greatereq" -> parseComparison(operatorToken.value);
-            case "and", "or", "xor" -> parseLogicalOperator(operatorToken.value);
-            case "not" -> parseNot();
-            case "lambda" -> parseLambda();
-            case ")" -> parseLiteralList();
-            case "quote" -> parseQuote();
-            case "eval" -> parseEval();
-            default -> parseFuncCall(operatorToken.value);
+        return switch (operator) {
+            case SETQ -> parseSETQ();
+            case FUNC -> parseFUNC();
+            case COND -> parseCOND();
+            case PROG -> parsePROG();
+            case PLUS, MINUS, TIMES, DIVIDE -> parseOperation(opcode(operator));
+            case HEAD -> parseHeadOrTail("head");
+            case TAIL -> parseHeadOrTail("tail");
+            case CONS -> parseCons();
+            case WHILE -> parseWHILE();
+            case RETURN -> parseRETURN();
+            case BREAK -> parseBREAK();
+            case ISINT, ISREAL, ISBOOL, ISNULL, ISATOM, ISLIST -> parsePredicate(opcode(operator));
+            case EQUAL, NONEQUAL, LESS, LESSEQ, GREATER, GREATEREQ -> parseComparison(opcode(operator));
+            case AND, OR, XOR -> parseLogicalOperator(opcode(operator));
+            case NOT -> parseNot();
+            case LAMBDA -> parseLambda();
+            case RPAREN -> parseLiteralList();
+            //a quote mark right after ( is not the quote keyword
+            case QUOTE -> tokens.text().equals("quote") ? parseQuote() : parseFuncCall();
+            case EVAL -> parseEval();
+            default -> parseFuncCall();
         };
     }
 
-    private ASTNode parseEval() throws Exception {
-        Token op = advance();
-        ASTNode q = parseExpr();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER EVAL at line: " + op.getLine());
-        ASTNode evalnode = factory.createEvalNode(q, op.line);
-        evalnode.addChild(q);
-        evalnode.setType(ASTNode.NodeType.EVAL);
-        return evalnode;
+    private Frame parseEval() {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode q = children.getFirst();
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER EVAL at line: " + line);
+                ASTNode evalnode = factory.createEvalNode(q, line);
+                evalnode.setType(ASTNode.NodeType.EVAL);
+                return placed(statement, evalnode, line);
+            }
+        };
     }
 
-    private ASTNode parseBREAK() throws Exception {
-        Token op = advance();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER BREAK at line: " + op.getLine());
-        ASTNode breaknode = factory.createBreakNode(op.line);
+    private Frame parseBREAK() throws Exception {
+        int line = advance();
+        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER BREAK at line: " + line);
+        ASTNode breaknode = factory.createBreakNode(line);
         breaknode.setType(ASTNode.NodeType.BREAK);
-        return breaknode;
+        return done(breaknode);
     }
 
-    private ASTNode parseRETURN() throws Exception {
-        Token op = advance();
-        ASTNode returnValue = parseExpr();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER RETURN at line: " + op.getLine());
-        ASTNode returnnode = factory.createReturnNode(returnValue, op.line);
-        returnnode.addChild(returnValue);
-        returnnode.setType(ASTNode.NodeType.RETURN);
-        return returnnode;
+    private Frame parseRETURN() {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode returnValue = children.getFirst();
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER RETURN at line: " + line);
+                ASTNode returnnode = factory.createReturnNode(returnValue, line);
+                returnnode.setType(ASTNode.NodeType.RETURN);
+                return returnnode;
+            }
+        };
     }
 
-    private ASTNode parseWHILE() throws Exception {
-        Token op = advance();
-        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER WHILE at line: " + op.getLine());
-        ASTNode condition = parseExpr();
-        List<ASTNode> body = new ArrayList<>();
-        while (!check(TokenType.RPAREN)) {
-            body.add(parseExpr());
-        }
-        Token clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER WHILE BODY at line: " + op.getLine());
-        ASTNode whilenode = factory.createWhileNode(condition, body, op.line, clo.line);
-        whilenode.addChild(condition);
-        for (ASTNode statement : body) {
-            whilenode.addChild(statement);
-        }
-        return whilenode;
+    private Frame parseWHILE() throws Exception {
+        int line = advance();
+        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER WHILE at line: " + line);
+        //first child is the condition, the rest is the body
+        return new Frame() {
+            @Override
+            boolean takesStatements() {
+                return !children.isEmpty();
+            }
+
+            @Override
+            boolean more() {
+                return children.isEmpty() || !check(TokenType.RPAREN);
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode condition = children.getFirst();
+                List<ASTNode> body = new ArrayList<>(children.subList(1, children.size()));
+                int clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER WHILE BODY at line: " + line);
+                ASTNode whilenode = factory.createWhileNode(condition, body, line, clo);
+                return whilenode;
+            }
+        };
     }
 
-    private ASTNode parsePROG() throws Exception {
-        Token op = advance();
+    private Frame parsePROG() throws Exception {
+        int line = advance();
 
         //enter new scope
         SymbolTable previousScope = currentScope;
         currentScope = new SymbolTable(previousScope);
 
-        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER PROG at line: " + op.getLine());
+        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER PROG at line: " + line);
         while (!check(TokenType.RPAREN)) {
-            String varName = consume(TokenType.ATOM, "ERROR: EXPECTED ATOM FOR LOCAL VARIABLE at line: " + op.getLine()).value;
-            currentScope.define(varName, null);
+            int var = tokens.symbol();
+            consume(TokenType.ATOM, "ERROR: EXPECTED ATOM FOR LOCAL VARIABLE at line: " + line);
+            define(currentScope, var, null);
         }
 
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LOCAL VARIABLE LIST at line: " + op.getLine());
+        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LOCAL VARIABLE LIST at line: " + line);
 
-        List<ASTNode> statements = new ArrayList<>();
-        while (!check(TokenType.RPAREN)) {
-            statements.add(parseExpr());
-        }
+        return new Frame() {
+            @Override
+            boolean takesStatements() {
+                return true;
+            }
 
-        Token clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER PROG BLOCK at line: " + op.getLine());
-        //exit scope
-        currentScope = previousScope;
+            @Override
+            boolean more() {
+                return !check(TokenType.RPAREN);
+            }
 
-        ASTNode prognode = factory.createProgNode(statements, op.line, clo.line);
-        prognode.setType(ASTNode.NodeType.PROG);
-        return prognode;
+            @Override
+            ASTNode finish() throws Exception {
+                int clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER PROG BLOCK at line: " + line);
+                //exit scope
+                currentScope = previousScope;
+
+                ASTNode prognode = factory.createProgNode(children, line, clo);
+                prognode.setType(ASTNode.NodeType.PROG);
+                return prognode;
+            }
+        };
     }
 
-    private ASTNode parseFUNC() throws Exception {
-        Token op = advance();
+    private Frame parseFUNC() throws Exception {
+        int line = advance();
 
         SymbolTable previousScope = currentScope;
         currentScope = new SymbolTable(previousScope);
 
-        String functionName = consume(TokenType.ATOM, "ERROR: MISSING FUNCTION NAME at line: " + op.getLine()).value;
+        int functionSymbol = tokens.symbol();
+        consume(TokenType.ATOM, "ERROR: MISSING FUNCTION NAME at line: " + line);
+        String functionName = Symbols.name(functionSymbol);
 
-        FunctionNode placeholderFunctionNode = new FunctionNode(functionName, new ArrayList<>(), null, op.line, op.line);
+        FunctionNode placeholderFunctionNode = new FunctionNode(functionName, new ArrayList<>(), null, line, line);
         placeholderFunctionNode.setType(ASTNode.NodeType.FUNC);
 
-        globalScope.define(functionName, placeholderFunctionNode);
-        currentScope.define(functionName, placeholderFunctionNode);
+        define(globalScope, functionSymbol, placeholderFunctionNode);
+        define(currentScope, functionSymbol, placeholderFunctionNode);
         List<String> parameters = new ArrayList<>();
-        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER FUNCTION NAME at line: " + op.getLine());
+        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER FUNCTION NAME at line: " + line);
         while (!check(TokenType.RPAREN)) {
-            String varName = consume(TokenType.ATOM, "ERROR: EXPECTED ATOM FOR LOCAL PARAMETER at line: " + op.getLine()).value;
-            parameters.add(varName);
-            currentScope.define(varName, null);
+            int var = tokens.symbol();
+            consume(TokenType.ATOM, "ERROR: EXPECTED ATOM FOR LOCAL PARAMETER at line: " + line);
+            parameters.add(Symbols.name(var));
+            define(currentScope, var, null);
         }
 
-        placeholderFunctionNode = new FunctionNode(functionName, parameters, null, op.line, op.line);
-        globalScope.define(functionName, placeholderFunctionNode);
-        currentScope.define(functionName, placeholderFunctionNode);
+        placeholderFunctionNode = new FunctionNode(functionName, parameters, null, line, line);
+        define(globalScope, functionSymbol, placeholderFunctionNode);
+        define(currentScope, functionSymbol, placeholderFunctionNode);
 
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER FUNCTION PARAMETER LIST at line: " + op.getLine());
-        List<ASTNode> bodyExpressions = new ArrayList<>();
+        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER FUNCTION PARAMETER LIST at line: " + line);
 
-        while (!check(TokenType.RPAREN)) {
-            ASTNode expr = parseExpr();
-            bodyExpressions.add(expr);
-        }
-        Token clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER FUNCTION BODY at line: " + op.getLine());
+        return new Frame() {
+            @Override
+            boolean takesStatements() {
+                return true;
+            }
 
-        ASTNode body = factory.createProgNode(bodyExpressions, op.getLine(), clo.getLine());
-        body.setType(ASTNode.NodeType.PROG);
-        currentScope = previousScope;
+            @Override
+            boolean more() {
+                return !check(TokenType.RPAREN);
+            }
 
-        ASTNode functionNode = factory.createFunctionNode(functionName, parameters, body, op.line, clo.line);
-        for (ASTNode expr : bodyExpressions) {
-            functionNode.addChild(expr);
-        }
-        functionNode.setType(ASTNode.NodeType.FUNC);
-        globalScope.define(functionName, functionNode);
-        currentScope.define(functionName, functionNode);
-        return functionNode;
+            @Override
+            ASTNode finish() throws Exception {
+                List<ASTNode> bodyExpressions = children;
+                int clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER FUNCTION BODY at line: " + line);
+
+                ASTNode body = factory.createProgNode(bodyExpressions, line, clo);
+                body.setType(ASTNode.NodeType.PROG);
+                currentScope = previousScope;
+
+                ASTNode functionNode = factory.createFunctionNode(functionName, parameters, body, line, clo);
+                functionNode.setType(ASTNode.NodeType.FUNC);
+                define(globalScope, functionSymbol, functionNode);
+                define(currentScope, functionSymbol, functionNode);
+                return functionNode;
+            }
+        };
     }
 
-    private ASTNode parseLambda() throws Exception {
-        Token op = advance();
+    private Frame parseLambda() throws Exception {
+        int line = advance();
 
         SymbolTable previousScope = currentScope;
         currentScope = new SymbolTable(previousScope);
 
         List<String> parameters = new ArrayList<>();
-        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER LAMBDA at line: " + op.getLine());
+        consume(TokenType.LPAREN, "ERROR: EXPECTED ( AFTER LAMBDA at line: " + line);
         while (!check(TokenType.RPAREN)) {
-            String varName = consume(TokenType.ATOM, "ERROR: EXPECTED ATOM FOR LOCAL PARAMETER at line: " + op.getLine()).value;
-            parameters.add(varName);
-            currentScope.define(varName, null);
+            int var = tokens.symbol();
+            consume(TokenType.ATOM, "ERROR: EXPECTED ATOM FOR LOCAL PARAMETER at line: " + line);
+            parameters.add(Symbols.name(var));
+            define(currentScope, var, null);
         }
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LAMBDA PARAMETER LIST at line: " + op.getLine());
+        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LAMBDA PARAMETER LIST at line: " + line);
 
-        ASTNode body = parseExpr();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LAMBDA BODY at line: " + op.getLine());
-        currentScope = previousScope;
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
 
-        ASTNode lambdanode = factory.createLambdaNode(parameters, body, op.line);
-        lambdanode.addChild(body);
-        lambdanode.setType(ASTNode.NodeType.LAMBDA);
-        return lambdanode;
-    }
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode body = children.getFirst();
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LAMBDA BODY at line: " + line);
+                currentScope = previousScope;
 
-    private ASTNode parseLiteralList() throws Exception {
-        List<ASTNode> elements = new ArrayList<>();
+                ASTNode lambdanode = factory.createLambdaNode(parameters, body, line);
+                lambdanode.setType(ASTNode.NodeType.LAMBDA);
+                return lambdanode;
+            }
+        };
+    }
 
-        int line = 0;
-        if (check(TokenType.RPAREN)) {
-            Token clo = advance();
-            line = clo.getLine();
-            ASTNode listNode = factory.createListNode(elements, clo.line);
-            listNode.setType(ASTNode.NodeType.LIST);
-            return listNode;
-        }
+    private Frame parseLiteralList() {
+        return new Frame() {
+            @Override
+            boolean more() {
+                return !check(TokenType.RPAREN);
+            }
 
-        while (!check(TokenType.RPAREN)) {
-            elements.add(parseExpr()); // add each literal to list
-        }
-        Token clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LITERAL LIST at line: " + line);
-        ASTNode listnode = factory.createListNode(elements, clo.line);
-        for (ASTNode el : elements) {
-            listnode.addChild(el);
-        }
-        listnode.setType(ASTNode.NodeType.LIST);
-        return listnode;
+            @Override
+            ASTNode finish() throws Exception {
+                List<ASTNode> elements = children;
+                int clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER LITERAL LIST at line: " + 0);
+                ASTNode listnode = factory.createListNode(elements, clo);
+                listnode.setType(ASTNode.NodeType.LIST);
+                return placed(statement, listnode, clo);
+            }
+        };
     }
 
-    private ASTNode parseLogicalOperator(String operator) throws Exception {
-        Token op = advance();
-        ASTNode leftElement = parseExpr();
-        ASTNode rightElement = parseExpr();
-        Token clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + operator + " at line: " + op.getLine());
+    private Frame parseLogicalOperator(Opcode operator) {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.size() < 2;
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode leftElement = children.get(0);
+                ASTNode rightElement = children.get(1);
+                int clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + operator + " at line: " + line);
 
-        ASTNode logicalopnode = factory.createLogicalOperationNode(operator, leftElement, rightElement, op.line, clo.line);
-        logicalopnode.addChild(leftElement);
-        logicalopnode.addChild(rightElement);
-        logicalopnode.setType(ASTNode.NodeType.LOGICALOP);
-        return logicalopnode;
+                ASTNode logicalopnode = factory.createLogicalOperationNode(operator, leftElement, rightElement, line, clo);
+                logicalopnode.setType(ASTNode.NodeType.LOGICALOP);
+                return placed(statement, logicalopnode, line);
+            }
+        };
     }
 
-    private ASTNode parseNot() throws Exception {
-        Token op = advance();
-        ASTNode element = parseExpr();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER NOT at line: " + op.getLine());
-        ASTNode notnode = factory.createNotNode(element, op.line);
-        notnode.addChild(element);
-        notnode.setType(ASTNode.NodeType.NOT);
-        return notnode;
+    private Frame parseNot() {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode element = children.getFirst();
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER NOT at line: " + line);
+                ASTNode notnode = factory.createNotNode(element, line);
+                notnode.setType(ASTNode.NodeType.NOT);
+                return placed(statement, notnode, line);
+            }
+        };
     }
 
-    private ASTNode parseComparison(String comparison) throws Exception {
-        Token op = advance();
-        ASTNode leftElement = parseExpr();
-        ASTNode rightElement = parseExpr();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + comparison + " at line: " + op.getLine());
+    private Frame parseComparison(Opcode comparison) {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.size() < 2;
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode leftElement = children.get(0);
+                ASTNode rightElement = children.get(1);
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + comparison + " at line: " + line);
 
-        ASTNode compnode = factory.createComparisonNode(comparison, leftElement, rightElement, op.line);
-        compnode.addChild(leftElement);
-        compnode.addChild(rightElement);
-        compnode.setType(ASTNode.NodeType.BOOL);
-        return compnode;
+                ASTNode compnode = factory.createComparisonNode(comparison, leftElement, rightElement, line);
+                compnode.setType(ASTNode.NodeType.BOOL);
+                return placed(statement, compnode, line);
+            }
+        };
     }
 
     //issmth
-    private ASTNode parsePredicate(String predicate) throws Exception {
-        Token op = advance();
-        ASTNode element = parseExpr();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + predicate + " at line: " + op.getLine());
-        ASTNode predicatenode = factory.createPredicateNode(predicate, element, op.line);
-        predicatenode.addChild(element);
-        predicatenode.setType(ASTNode.NodeType.PREDICATE);
-        return predicatenode;
-    }
-
-    private ASTNode parseHeadOrTail(String type) throws Exception {
-        Token op = advance();
-        ASTNode listExpr = parseExpr();
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + type + " at line: " + op.getLine());
-        if (type.equals("head")) {
-            ASTNode headnode = factory.createHeadNode(listExpr, op.line);
-            headnode.addChild(listExpr);
-            headnode.setType(ASTNode.NodeType.HEAD);
-            return headnode;
-        } else {
-            ASTNode tailnode = factory.createTailNode(listExpr, op.line);
-            tailnode.addChild(listExpr);
-            tailnode.setType(ASTNode.NodeType.TAIL);
-            return tailnode;
-        }
+    private Frame parsePredicate(Opcode predicate) {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode element = children.getFirst();
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + predicate + " at line: " + line);
+                ASTNode predicatenode = factory.createPredicateNode(predicate, element, line);
+                predicatenode.setType(ASTNode.NodeType.PREDICATE);
+                return placed(statement, predicatenode, line);
+            }
+        };
+    }
+
+    private Frame parseHeadOrTail(String type) {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode listExpr = children.getFirst();
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER " + type + " at line: " + line);
+                if (type.equals("head")) {
+                    ASTNode headnode = factory.createHeadNode(listExpr, line);
+                    headnode.setType(ASTNode.NodeType.HEAD);
+                    return placed(statement, headnode, line);
+                } else {
+                    ASTNode tailnode = factory.createTailNode(listExpr, line);
+                    tailnode.setType(ASTNode.NodeType.TAIL);
+                    return placed(statement, tailnode, line);
+                }
+            }
+        };
     }
 
-    private ASTNode parseCons() throws Exception {
-        Token op = advance();
-        ASTNode item = parseExpr();//what to add
-        ASTNode list = parseExpr();//to list
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER CONS at line: " + op.getLine());
-        ASTNode consnode = factory.createConsNode(item, list, op.line);
-        consnode.addChild(item);
-        consnode.addChild(list);
-        consnode.setType(ASTNode.NodeType.CONS);
-        return consnode;
+    private Frame parseCons() {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return children.size() < 2;
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode item = children.get(0);//what to add
+                ASTNode list = children.get(1);//to list
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER CONS at line: " + line);
+                ASTNode consnode = factory.createConsNode(item, list, line);
+                consnode.setType(ASTNode.NodeType.CONS);
+                return placed(statement, consnode, line);
+            }
+        };
     }
 
-    private ASTNode parseOperation(String operator) throws Exception {
-        Token op = advance();
-        List<ASTNode> operands = new ArrayList<>();
+    private Frame parseOperation(Opcode operator) {
+        int line = advance();
+        return new Frame() {
+            @Override
+            boolean more() {
+                return !check(TokenType.RPAREN);
+            }
 
-        while (!check(TokenType.RPAREN)) {
-            ASTNode expr = parseExpr();
-            operands.add(expr);
-        }
-        consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER OPERATION at line: " + op.getLine());
+            @Override
+            ASTNode finish() throws Exception {
+                List<ASTNode> operands = children;
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER OPERATION at line: " + line);
 
-        if (operands.size() < 2 && !(operator.equals("plus") || operator.equals("minus"))) {
-            throw new Exception("ERROR: IMPOSSIBLE OPERATION at line: " + op.getLine());
-        }
-        ASTNode opnode = factory.createOperationNode(operator, operands, false, op.line);
-        for (ASTNode operand : operands) {
-            opnode.addChild(operand);
-        }
-        opnode.setType(operands.getFirst().getType());
-        return opnode;
+                if (operands.size() < 2 && operator != Opcode.PLUS && operator != Opcode.MINUS) {
+                    throw new Exception("ERROR: IMPOSSIBLE OPERATION at line: " + line);
+                }
+                ASTNode opnode = factory.createOperationNode(operator, operands, false, line);
+                opnode.setType(operands.getFirst().getType());
+                return placed(statement, opnode, line);
+            }
+        };
     }
 
-    private ASTNode parseFuncCall(String functionName) throws Exception {
-        int line = peek().line;
-        if (!globalScope.isDefined(functionName)) {
+    private Frame parseFuncCall() throws Exception {
+        String functionName = tokens.text();
+        int symbol = tokens.symbol();
+        int line = tokens.line();
+        if (symbol == Symbols.NONE || !globalScope.isDefined(symbol)) {
             throw new Exception("ERROR: UNDEFINED FUNCTION " + functionName + " at line " + line);
         }
 
-        ASTNode functionNode = globalScope.lookup(functionName);
+        Object functionNode = globalScope.lookup(symbol);
         if (!(functionNode instanceof FunctionNode)) {
             throw new Exception("ERROR: " + functionName + " IS NOT A FUNCTION at line: " + line);
         }
 
-        List<ASTNode> operands = new ArrayList<>();
-
         advance();
 
-        while (!check(TokenType.RPAREN)) {
-            ASTNode expr = parseExpr();
-            operands.add(expr);
-        }
+        return new Frame() {
+            @Override
+            boolean more() {
+                return !check(TokenType.RPAREN);
+            }
 
-        if (operands.size() != ((FunctionNode) functionNode).getParameters().size()) {
-            throw new Exception("ERROR: INCORRECT NUMBER OF PARAMETERS FOR FUNCTION " + functionName +
-                    "EXPECTED-GOT: " + ((FunctionNode) functionNode).getParameters().size() + "-" + operands.size() +
-                    " at line: " + line);
-        }
+            @Override
+            ASTNode finish() throws Exception {
+                List<ASTNode> operands = children;
+                if (operands.size() != ((FunctionNode) functionNode).getParameters().size()) {
+                    throw new Exception("ERROR: INCORRECT NUMBER OF PARAMETERS FOR FUNCTION " + functionName +
+                            "EXPECTED-GOT: " + ((FunctionNode) functionNode).getParameters().size() + "-" + operands.size() +
+                            " at line: " + line);
+                }
 
-        Token clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER OPERATION at line: " + line);
-        return factory.createFunctionCallNode(functionName, operands, clo.line);
+                int clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER OPERATION at line: " + line);
+                return placed(statement, factory.createFunctionCallNode(functionName, operands, clo), clo);
+            }
+        };
     }
 
-    private ASTNode parseLambdaCall(String lambdaName) throws Exception {
-        int line = peek().line;
-        if (!globalScope.isDefined(lambdaName)) {
+    private Frame parseLambdaCall() throws Exception {
+        String lambdaName = tokens.text();
+        int symbol = tokens.symbol();
+        int line = tokens.line();
+        if (!globalScope.isDefined(symbol)) {
             throw new Exception("ERROR: UNDEFINED LAMBDA " + lambdaName + " at line: " + line);
         }
 
-        ASTNode lambdaNode = globalScope.lookup(lambdaName);
+        Object lambdaNode = globalScope.lookup(symbol);
         if (!(lambdaNode instanceof LambdaNode)) {
             throw new Exception("ERROR: " + lambdaName + " IS NOT A LAMBDA at line: " + line);
         }
 
-        List<ASTNode> operands = new ArrayList<>();
-
-        while (!check(TokenType.RPAREN)) {
-            operands.add(parseExpr());
-        }
+        return new Frame() {
+            @Override
+            boolean more() {
+                return !check(TokenType.RPAREN);
+            }
 
-        Token clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER OPERATION at line: " + line);
-        ASTNode lambdacallnode = factory.createLambdaCallNode(lambdaName, operands, clo.line);
-        lambdacallnode.setType(ASTNode.NodeType.LAMBDACALL);
-        return lambdacallnode;
+            @Override
+            ASTNode finish() throws Exception {
+                int clo = consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER OPERATION at line: " + line);
+                ASTNode lambdacallnode = factory.createLambdaCallNode(lambdaName, children, clo);
+                lambdacallnode.setType(ASTNode.NodeType.LAMBDACALL);
+                return placed(statement, lambdacallnode, clo);
+            }
+        };
     }
 
-    private ASTNode parseSETQ() throws Exception {
-        Token op = advance();
-        String variable = consume(TokenType.ATOM, "ERROR: EXPECTED VARIABLE FOR SETQ at line: " + op.getLine()).value;
-        currentScope.define(variable, null);
-        ASTNode value = parseExpr();
-        currentScope.define(variable, value); //add var to scope in symbol table
-		consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER SETQ ASSIGNMENT at line: " + op.getLine());
-        ASTNode assignmentnode = factory.createAssignmentNode(variable, value, op.line);
-        assignmentnode.addChild(value);
-        assignmentnode.setType(ASTNode.NodeType.ASSIGNMENT);
-        return assignmentnode;
+    private Frame parseSETQ() throws Exception {
+        int line = advance();
+        int var = tokens.symbol();
+        consume(TokenType.ATOM, "ERROR: EXPECTED VARIABLE FOR SETQ at line: " + line);
+        String variable = Symbols.name(var);
+        define(currentScope, var, null);
+        return new Frame() {
+            @Override
+            void accept(ASTNode value) {
+                children.add(value);
+                define(currentScope, var, value); //add var to scope in symbol table
+            }
+
+            @Override
+            boolean more() {
+                return children.isEmpty();
+            }
+
+            @Override
+            ASTNode finish() throws Exception {
+                ASTNode value = children.getFirst();
+                consume(TokenType.RPAREN, "ERROR: EXPECTED ) AFTER SETQ ASSIGNMENT at line: " + line);
+                ASTNode assignmentnode = factory.createAssignmentNode(variable, value, line);
+                assignmentnode.setType(ASTNode.NodeType.ASSIGNMENT);
+                return assignmentnode;
+            }
+        };
     }
 
-    private ASTNode parseCOND() throws Exception {
-        Token op = advance();
-        List<ConditionBranch> branches = new ArrayList<>();
+    private Frame parseCOND() throws Exception {
+        int line = advance();
 
         if (isAtEnd())
-            throw new Exception("ERROR: UNEXPECTED END OF INPUT WHILE PARSING CONDITION-ACTION PAIRS at line: " + op.getLine());
-        ASTNode condition = parseExpr();
-
-        if (isAtEnd()) throw new Exception("ERROR: EXPECTED ACTION AFTER CONDITION at line: " + op.getLine());
-        ASTNode action = parseExpr();
-        branches.add(factory.createConditionBranch(condition, action));
+            throw new Exception("ERROR: UNEXPECTED END OF INPUT WHILE PARSING CONDITION-ACTION PAIRS at line: " + line);
+        //condition, action and an optional parenthesized default
+        return new Frame() {
+            @Override
+            boolean more() throws Exception {
+                if (children.isEmpty()) {
+                    return true;
+                } else if (children.size() == 1) {
+                    if (isAtEnd()) throw new Exception("ERROR: EXPECTED ACTION AFTER CONDITION at line: " + line);
+                    return true;
+                }
+                return children.size() == 2 && check(TokenType.LPAREN);
+            }
 
-        //default case
-        ASTNode defaultAction = null;
-        if (check(TokenType.LPAREN)) {
-            defaultAction = parseExpr();
-        }
-        Token clo = consume(TokenType.RPAREN, "ERROR: MISSING ) AFTER COND EXPR at line: " + op.getLine());
-        ASTNode condnode = factory.createConditionNode(branches, defaultAction, op.line, clo.line);
-        condnode.addChild(condition);
-        condnode.addChild(action);
-        condnode.setType(ASTNode.NodeType.COND);
-        return condnode;
+            @Override
+            ASTNode finish() throws Exception {
+                List<ConditionBranch> branches = new ArrayList<>();
+                ASTNode condition = children.get(0);
+                ASTNode action = children.get(1);
+                branches.add(factory.createConditionBranch(condition, action));
+
+                //default case
+                ASTNode defaultAction = children.size() > 2 ? children.get(2) : null;
+                int clo = consume(TokenType.RPAREN, "ERROR: MISSING ) AFTER COND EXPR at line: " + line);
+                ASTNode condnode = factory.createConditionNode(branches, defaultAction, line, clo);
+                condnode.setType(ASTNode.NodeType.COND);
+                return condnode;
+            }
+        };
     }
 }
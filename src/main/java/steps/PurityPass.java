@@ -0,0 +1,190 @@
+package steps;
+
+import ast.nodes.*;
+import visitors.ASTTransformer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//marks the funcs whose calls the interpreter may memoize: what a call returns depends on its arguments and
+//nothing else. names resolve dynamically, so a body may only read its parameters and names it set itself
+//before the read; a setq in a body always lands in the call's own scope. every func it calls has to be pure
+//too and has to be the same func wherever the call runs from, one func at the top of the program whose name
+//is never set or bound. quote, eval and lambdas are not followed. the tree is not changed, only marked
+public class PurityPass extends ASTTransformer {
+	private Map<Integer, FunctionNode> topLevel;
+	private Set<FunctionNode> pure;
+
+	public PurityPass() {
+		super("purity");
+	}
+
+	@Override
+	protected ASTNode rewrite(ASTNode root) {
+		UseDefInfo info = UseDefInfo.of(root);
+		List<FunctionNode> functions = new ArrayList<>();
+		new Collect(functions).transform(root);
+
+		topLevel = new HashMap<>();
+		if (root instanceof ProgNode program) {
+			for (ASTNode statement : program.getStatements()) {
+				if (statement instanceof FunctionNode function && info.functions(function.getSymbol()) == 1
+						&& info.assignments(function.getSymbol()) == 0 && !info.isParameter(function.getSymbol())) {
+					topLevel.put(function.getSymbol(), function);
+				}
+			}
+		}
+
+		//everything starts out pure so that recursive funcs can stay pure, then what fails is dropped until
+		//nothing more does
+		pure = Collections.newSetFromMap(new IdentityHashMap<>());
+		pure.addAll(functions);
+		boolean changed = true;
+		while (changed) {
+			List<FunctionNode> impure = new ArrayList<>();
+			for (FunctionNode function : pure) {
+				if (!new Check(function).isPure()) {
+					impure.add(function);
+				}
+			}
+			changed = pure.removeAll(impure);
+		}
+
+		for (FunctionNode function : functions) {
+			function.setPure(pure.contains(function));
+			if (function.isPure()) {
+				count("pure");
+			}
+		}
+		return root;
+	}
+
+	private static class Collect extends ASTTransformer {
+		private final List<FunctionNode> functions;
+
+		Collect(List<FunctionNode> functions) {
+			super("purity");
+			this.functions = functions;
+		}
+
+		@Override
+		public ASTNode visitFunctionNode(FunctionNode node) {
+			functions.add(node);
+			return super.visitFunctionNode(node);
+		}
+	}
+
+	//walks a body in the order it runs. names set inside a loop body or a cond branch only count as set
+	//within it, it may not run at all
+	private class Check extends ASTTransformer {
+		private final Set<Integer> parameters = new HashSet<>();
+		private Set<Integer> defined = new HashSet<>();
+		private boolean pure = true;
+
+		Check(FunctionNode function) {
+			super("purity");
+			for (int parameter : function.getParameterSymbols()) {
+				parameters.add(parameter);
+			}
+			transform(function.getBody());
+		}
+
+		boolean isPure() {
+			return pure;
+		}
+
+		private void conditionally(ASTNode node) {
+			Set<Integer> outer = defined;
+			defined = new HashSet<>(outer);
+			transformNode(node);
+			defined = outer;
+		}
+
+		private ASTNode impure(ASTNode node) {
+			pure = false;
+			return node;
+		}
+
+		@Override
+		public ASTNode visitAtomNode(AtomNode node) {
+			if (!parameters.contains(node.getSymbol()) && !defined.contains(node.getSymbol())) {
+				pure = false;
+			}
+			return node;
+		}
+
+		@Override
+		public ASTNode visitAssignmentNode(AssignmentNode node) {
+			super.visitAssignmentNode(node);
+			defined.add(node.getSymbol());
+			return node;
+		}
+
+		@Override
+		public ASTNode visitFunctionCallNode(FunctionCallNode node) {
+			super.visitFunctionCallNode(node);
+			FunctionNode callee = topLevel.get(node.getSymbol());
+			if (callee == null || !PurityPass.this.pure.contains(callee)) {
+				pure = false;
+			}
+			return node;
+		}
+
+		@Override
+		public ASTNode visitConditionNode(ConditionNode node) {
+			List<ConditionBranch> branches = node.getBranches();
+			for (int i = 0; i < branches.size(); i++) {
+				//the first condition is always evaluated
+				if (i == 0) {
+					transformNode(branches.get(i).getCondition());
+				} else {
+					conditionally(branches.get(i).getCondition());
+				}
+				conditionally(branches.get(i).getAction());
+			}
+			conditionally(node.getDefaultAction());
+			return node;
+		}
+
+		@Override
+		public ASTNode visitWhileNode(WhileNode node) {
+			transformNode(node.getCondition());
+			Set<Integer> outer = defined;
+			defined = new HashSet<>(outer);
+			transformAll(node.getBody());
+			defined = outer;
+			return node;
+		}
+
+		@Override
+		public ASTNode visitFunctionNode(FunctionNode node) {
+			return impure(node);
+		}
+
+		@Override
+		public ASTNode visitLambdaNode(LambdaNode node) {
+			return impure(node);
+		}
+
+		@Override
+		public ASTNode visitLambdaCallNode(LambdaCallNode node) {
+			return impure(node);
+		}
+
+		@Override
+		public ASTNode visitQuoteNode(QuoteNode node) {
+			return impure(node);
+		}
+
+		@Override
+		public ASTNode visitEvalNode(EvalNode node) {
+			return impure(node);
+		}
+	}
+}
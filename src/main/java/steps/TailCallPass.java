@@ -0,0 +1,58 @@
+package steps;
+
+import ast.nodes.*;
+import visitors.ASTTransformer;
+
+import java.util.List;
+
+//marks the calls whose value is the value of the func body they are in: the last statement of the body,
+//through nested progs, the actions of a cond and return. the interpreter runs those without recursing.
+//a call shared between several places is only marked when it is in tail position in all of them. lambda
+//bodies and quoted code are left alone. the marks go to the annotations, the tree is not changed
+public class TailCallPass extends ASTTransformer {
+
+	public TailCallPass() {
+		super("tail-call");
+	}
+
+	@Override
+	protected ASTNode rewrite(ASTNode root) {
+		annotations().clearTails();
+		transformNode(root);
+		return root;
+	}
+
+	private void tail(ASTNode node) {
+		if (node instanceof FunctionCallNode call) {
+			annotations().markTail(call, true);
+			count("tail");
+			transformAll(call.getParameters());
+		} else if (node instanceof ProgNode prog && !prog.getStatements().isEmpty()) {
+			List<ASTNode> statements = prog.getStatements();
+			transformAll(statements.subList(0, statements.size() - 1));
+			tail(statements.getLast());
+		} else if (node instanceof ConditionNode cond) {
+			for (ConditionBranch branch : cond.getBranches()) {
+				transformNode(branch.getCondition());
+				tail(branch.getAction());
+			}
+			tail(cond.getDefaultAction());
+		} else if (node instanceof ReturnNode ret) {
+			tail(ret.getReturnValue());
+		} else {
+			transformNode(node);
+		}
+	}
+
+	@Override
+	public ASTNode visitFunctionCallNode(FunctionCallNode node) {
+		annotations().markTail(node, false);
+		return super.visitFunctionCallNode(node);
+	}
+
+	@Override
+	public ASTNode visitFunctionNode(FunctionNode node) {
+		tail(node.getBody());
+		return node;
+	}
+}
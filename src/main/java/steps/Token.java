@@ -1,26 +1,81 @@
 package steps;
 
+import things.Symbols;
+
 public class Token {
 	TokenType type;
 	String value;
 	int line;
+	int symbol;
+	long integer;
+	double real;
+	//where an INTEGER or REAL token was written, its text is only cut out when asked for
+	CharSequence source;
+	int start;
+	int end;
 
 	Token(TokenType type, String value, int line) {
+		this(type, value, line, Symbols.NONE);
+	}
+
+	Token(TokenType type, String value, int line, int symbol) {
 		this.type = type;
 		this.value = value;
 		this.line = line;
+		this.symbol = symbol;
 	}
 
 	public TokenType getType() {
 		return type;
 	}
 
+	//INTEGER and REAL tokens carry their decoded value and where in the source they were written
+	static Token ofInteger(long value, CharSequence source, int start, int end, int line) {
+		Token token = new Token(TokenType.INTEGER, null, line);
+		token.integer = value;
+		token.spelledAt(source, start, end);
+		return token;
+	}
+
+	static Token ofReal(double value, CharSequence source, int start, int end, int line) {
+		Token token = new Token(TokenType.REAL, null, line);
+		token.real = value;
+		token.spelledAt(source, start, end);
+		return token;
+	}
+
+	private void spelledAt(CharSequence source, int start, int end) {
+		this.source = source;
+		this.start = start;
+		this.end = end;
+	}
+
+	//numbers as they were written, so printing them gives the source back
+	public String getValue() {
+		if (value == null && source != null) {
+			value = source.subSequence(start, end).toString();
+		}
+		return value;
+	}
+
 	public int getLine() {
 		return line;
 	}
 
+	public int getSymbol() {
+		return symbol;
+	}
+
+	public long getInteger() {
+		return integer;
+	}
+
+	public double getReal() {
+		return real;
+	}
+
 	@Override
 	public String toString() {
-		return "Token{" + "type=" + type + ", value='" + value + '\'' + '}';
+		return "Token{" + "type=" + type + ", value='" + getValue() + '\'' + '}';
 	}
 }
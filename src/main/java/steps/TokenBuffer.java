@@ -0,0 +1,233 @@
+package steps;
+
+import things.Symbols;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+//struct-of-arrays token storage: one entry per token, values are slices of the source
+public class TokenBuffer {
+	private static final TokenType[] TYPES = TokenType.values();
+
+	private final CharSequence source;
+	private byte[] kinds;
+	private int[] starts;
+	private int[] lengths;
+	private int[] lines;
+	private long[] payloads;
+	private int size;
+
+	public TokenBuffer(CharSequence source, int capacity) {
+		this.source = source;
+		this.kinds = new byte[capacity];
+		this.starts = new int[capacity];
+		this.lengths = new int[capacity];
+		this.lines = new int[capacity];
+		this.payloads = new long[capacity];
+		this.size = 0;
+	}
+
+	void add(TokenType type, int start, int length, int line, long payload) {
+		if (size == kinds.length) {
+			grow(Math.max(16, size * 2));
+		}
+		kinds[size] = (byte) type.ordinal();
+		starts[size] = start;
+		lengths[size] = length;
+		lines[size] = line;
+		payloads[size] = payload;
+		size++;
+	}
+
+	//copies tokens [from, to) of a buffer lexed from the same text, moving them by shift chars and lineShift lines
+	void append(TokenBuffer other, int from, int to, int shift, int lineShift) {
+		int count = to - from;
+		if (size + count > kinds.length) {
+			grow(Math.max(size + count, size * 2));
+		}
+		System.arraycopy(other.kinds, from, kinds, size, count);
+		System.arraycopy(other.starts, from, starts, size, count);
+		System.arraycopy(other.lengths, from, lengths, size, count);
+		System.arraycopy(other.lines, from, lines, size, count);
+		System.arraycopy(other.payloads, from, payloads, size, count);
+		if (shift != 0 || lineShift != 0) {
+			for (int i = size; i < size + count; i++) {
+				starts[i] += shift;
+				lines[i] += lineShift;
+			}
+		}
+		size += count;
+	}
+
+	private void grow(int capacity) {
+		kinds = Arrays.copyOf(kinds, capacity);
+		starts = Arrays.copyOf(starts, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		lines = Arrays.copyOf(lines, capacity);
+		payloads = Arrays.copyOf(payloads, capacity);
+	}
+
+	public CharSequence getSource() {
+		return source;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public TokenType type(int index) {
+		return TYPES[kinds[index]];
+	}
+
+	public int start(int index) {
+		return starts[index];
+	}
+
+	public int length(int index) {
+		return lengths[index];
+	}
+
+	public int line(int index) {
+		return lines[index];
+	}
+
+	//interned id of an ATOM token
+	public int symbol(int index) {
+		return type(index) == TokenType.ATOM ? (int) payloads[index] : Symbols.NONE;
+	}
+
+	//symbol id, integer value or raw double bits, 0 for the other kinds
+	long payload(int index) {
+		return payloads[index];
+	}
+
+	public CharSequence value(int index) {
+		return CharBuffer.wrap(source, starts[index], starts[index] + lengths[index]);
+	}
+
+	//builds the Token the list-based lexer would have produced at this index
+	public Token get(int index) {
+		TokenType type = type(index);
+		switch (type) {
+			case ATOM -> {
+				int symbol = (int) payloads[index];
+				return new Token(type, Symbols.name(symbol), lines[index], symbol);
+			}
+			case INTEGER -> {
+				return Token.ofInteger(payloads[index], source, starts[index], starts[index] + lengths[index], lines[index]);
+			}
+			case REAL -> {
+				return Token.ofReal(Double.longBitsToDouble(payloads[index]), source, starts[index],
+						starts[index] + lengths[index], lines[index]);
+			}
+		}
+		return new Token(type, Flexer.text(type, source, starts[index], starts[index] + lengths[index]), lines[index]);
+	}
+
+	public TokenStream stream() {
+		return new Cursor(0);
+	}
+
+	Cursor stream(int from) {
+		return new Cursor(from);
+	}
+
+	class Cursor implements TokenStream {
+		private int index;
+		private Token current;
+
+		private Cursor(int index) {
+			this.index = index;
+		}
+
+		int index() {
+			return index;
+		}
+
+		@Override
+		public Token peek() {
+			if (index >= size) {
+				throw new NoSuchElementException("ERROR: TOKEN BUFFER IS EXHAUSTED");
+			}
+			if (current == null) {
+				current = get(index);
+			}
+			return current;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return index < size;
+		}
+
+		@Override
+		public Token next() {
+			Token token = peek();
+			skip();
+			return token;
+		}
+
+		//the current token is read straight from the arrays
+		private int at() {
+			if (index >= size) {
+				throw new NoSuchElementException("ERROR: TOKEN BUFFER IS EXHAUSTED");
+			}
+			return index;
+		}
+
+		@Override
+		public TokenType type() {
+			return TYPES[kinds[at()]];
+		}
+
+		@Override
+		public int line() {
+			return lines[at()];
+		}
+
+		@Override
+		public int symbol() {
+			return TokenBuffer.this.symbol(at());
+		}
+
+		@Override
+		public String text() {
+			int i = at();
+			TokenType type = TYPES[kinds[i]];
+			return type == TokenType.ATOM ? Symbols.name((int) payloads[i]) : Flexer.text(type, source, starts[i], starts[i] + lengths[i]);
+		}
+
+		@Override
+		public long integer() {
+			return payloads[at()];
+		}
+
+		@Override
+		public double real() {
+			return Double.longBitsToDouble(payloads[at()]);
+		}
+
+		@Override
+		public CharSequence source() {
+			return source;
+		}
+
+		@Override
+		public int start() {
+			return starts[at()];
+		}
+
+		@Override
+		public int end() {
+			int i = at();
+			return starts[i] + lengths[i];
+		}
+
+		@Override
+		public void skip() {
+			current = null;
+			index++;
+		}
+	}
+}
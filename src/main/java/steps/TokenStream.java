@@ -0,0 +1,52 @@
+package steps;
+
+import java.util.Iterator;
+
+//pull-based token source consumed by the parser
+public interface TokenStream extends Iterator<Token> {
+	Token peek();
+
+	//fields of the current token. the parser reads these instead of peek(), so a stream that keeps its
+	//tokens in arrays can answer without building a Token
+	default TokenType type() {
+		return peek().type;
+	}
+
+	default int line() {
+		return peek().line;
+	}
+
+	default int symbol() {
+		return peek().symbol;
+	}
+
+	default String text() {
+		return peek().getValue();
+	}
+
+	default long integer() {
+		return peek().integer;
+	}
+
+	default double real() {
+		return peek().real;
+	}
+
+	//where a number was written: source, start and end
+	default CharSequence source() {
+		return peek().source;
+	}
+
+	default int start() {
+		return peek().start;
+	}
+
+	default int end() {
+		return peek().end;
+	}
+
+	//moves past the current token
+	default void skip() {
+		next();
+	}
+}
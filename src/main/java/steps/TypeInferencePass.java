@@ -0,0 +1,338 @@
+package steps;
+
+import ast.Annotations;
+import ast.nodes.*;
+import ast.nodes.ASTNode.ValueType;
+import visitors.ASTVisitor;
+import visitors.ASTWalker;
+import visitors.SemanticPass;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//finds the type of the value every node evaluates to and keeps it in the program's Annotations. names are
+//looked up dynamically at run time, so a symbol's type is the join of everything the program ever binds
+//to it (setq values, arguments of the functions it is a parameter of) and a call's type is the join of the
+//bodies of every func with that name. the tree is walked again until those joins stop growing. arithmetic
+//is only INT when every operand is, since the interpreter turns any integral result into an int and
+//anything else into a real
+public class TypeInferencePass extends SemanticPass {
+    private final Map<Integer, ValueType> variables = new HashMap<>();
+    private final Map<Integer, ValueType> returns = new HashMap<>();
+    private final Map<Integer, List<FunctionNode>> functions = new HashMap<>();
+    private final Infer infer = new Infer();
+    private Map<ASTNode, ValueType> inferred; //per walk, nodes can be shared
+    private boolean changed;
+
+    public TypeInferencePass() {
+        super("type-inference");
+    }
+
+    @Override
+    public void end(ASTNode root) {
+        variables.clear();
+        returns.clear();
+        functions.clear();
+        do {
+            changed = false;
+            inferred = new IdentityHashMap<>();
+            walk(root);
+        } while (changed);
+
+        Annotations annotations = Annotations.of(root);
+        for (Map.Entry<ASTNode, ValueType> entry : inferred.entrySet()) {
+            annotations.setValueType(entry.getKey(), entry.getValue() == null ? ValueType.UNKNOWN : entry.getValue());
+        }
+        inferred = null;
+    }
+
+    //what infer(root) would do, without recursing: every node's parts are inferred before the node, which
+    //then finds them in inferred. funcs and lambdas bind on the way down, as their visits do before the body.
+    //a node inferred already is not walked into again
+    private void walk(ASTNode root) {
+        ASTWalker.postOrder(root, node -> inferred.containsKey(node) ? List.of() : ASTWalker.parts(node),
+                (node, depth) -> {
+                    if (inferred.containsKey(node)) {
+                        return;
+                    }
+                    if (node instanceof FunctionNode function) {
+                        define(function);
+                    } else if (node instanceof LambdaNode lambda) {
+                        for (int parameter : lambda.getParameterSymbols()) {
+                            bind(parameter, ValueType.UNKNOWN);
+                        }
+                    }
+                },
+                (node, depth) -> infer(node));
+    }
+
+    //null is the bottom: nothing is known to flow there yet
+    private static ValueType join(ValueType a, ValueType b) {
+        if (a == null) return b;
+        if (b == null || a == b) return a;
+        return ValueType.UNKNOWN;
+    }
+
+    private ValueType infer(ASTNode node) {
+        if (node == null) {
+            return ValueType.UNKNOWN;
+        }
+        if (inferred.containsKey(node)) {
+            return inferred.get(node);
+        }
+        inferred.put(node, null);
+        ValueType type = node.accept(infer);
+        inferred.put(node, type);
+        return type;
+    }
+
+    //bound values go through InterpreterVisitor.literalOf, only numbers keep their type
+    private void bindValue(int symbol, ValueType value) {
+        bind(symbol, value == null || value == ValueType.INT || value == ValueType.REAL ? value : ValueType.UNKNOWN);
+    }
+
+    private void bind(int symbol, ValueType type) {
+        ValueType joined = join(variables.get(symbol), type);
+        if (joined != variables.get(symbol)) {
+            variables.put(symbol, joined);
+            changed = true;
+        }
+    }
+
+    private void returnsFrom(int symbol, ValueType type) {
+        ValueType joined = join(returns.get(symbol), type);
+        if (joined != returns.get(symbol)) {
+            returns.put(symbol, joined);
+            changed = true;
+        }
+    }
+
+    private void define(FunctionNode function) {
+        List<FunctionNode> definitions = functions.computeIfAbsent(function.getSymbol(), symbol -> new ArrayList<>());
+        for (FunctionNode definition : definitions) {
+            if (definition == function) {
+                return;
+            }
+        }
+        definitions.add(function);
+        changed = true;
+    }
+
+    private class Infer implements ASTVisitor<ValueType> {
+        @Override
+        public ValueType visitAssignmentNode(AssignmentNode node) {
+            ValueType value = infer(node.getValue());
+            if (node.getValue() instanceof QuoteNode || node.getValue() instanceof LambdaNode) {
+                bind(node.getSymbol(), ValueType.UNKNOWN);
+            } else {
+                bindValue(node.getSymbol(), value);
+            }
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitAtomNode(AtomNode node) {
+            ValueType type = variables.get(node.getSymbol());
+            //a func name evaluates to nothing
+            return functions.containsKey(node.getSymbol()) ? join(type, ValueType.UNKNOWN) : type;
+        }
+
+        @Override
+        public ValueType visitBreakNode(BreakNode node) {
+            return ValueType.BOOL;
+        }
+
+        @Override
+        public ValueType visitComparisonNode(ComparisonNode node) {
+            infer(node.getLeftElement());
+            infer(node.getRightElement());
+            return ValueType.BOOL;
+        }
+
+        @Override
+        public ValueType visitConditionNode(ConditionNode node) {
+            ValueType type = null;
+            for (ConditionBranch branch : node.getBranches()) {
+                infer(branch.getCondition());
+                type = join(type, infer(branch.getAction()));
+            }
+            //without a default a false condition yields nothing
+            return join(type, infer(node.getDefaultAction()));
+        }
+
+        @Override
+        public ValueType visitConsNode(ConsNode node) {
+            infer(node.getHead());
+            infer(node.getTail());
+            return ValueType.LIST;
+        }
+
+        @Override
+        public ValueType visitFunctionNode(FunctionNode node) {
+            define(node);
+            returnsFrom(node.getSymbol(), infer(node.getBody()));
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitFunctionCallNode(FunctionCallNode node) {
+            List<ASTNode> arguments = node.getParameters();
+            ValueType[] types = new ValueType[arguments.size()];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = infer(arguments.get(i));
+            }
+            List<FunctionNode> definitions = functions.get(node.getSymbol());
+            if (definitions == null) {
+                return ValueType.UNKNOWN;
+            }
+            for (FunctionNode definition : definitions) {
+                int[] parameters = definition.getParameterSymbols();
+                for (int i = 0; i < parameters.length && i < types.length; i++) {
+                    bindValue(parameters[i], types[i]);
+                }
+            }
+            //the name may also hold a lambda
+            return variables.containsKey(node.getSymbol()) ? ValueType.UNKNOWN : returns.get(node.getSymbol());
+        }
+
+        @Override
+        public ValueType visitHeadNode(HeadNode node) {
+            infer(node.getHead());
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitLambdaNode(LambdaNode node) {
+            //lambda arguments are bound shifted by the lambda name, nothing is known about them
+            for (int parameter : node.getParameterSymbols()) {
+                bind(parameter, ValueType.UNKNOWN);
+            }
+            infer(node.getBody());
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitListNode(ListNode node) {
+            for (ASTNode element : node.getElements()) {
+                infer(element);
+            }
+            return ValueType.LIST;
+        }
+
+        @Override
+        public ValueType visitLiteralNode(LiteralNode node) {
+            if (node.isInteger()) {
+                return ValueType.INT;
+            } else if (node.isReal()) {
+                return ValueType.REAL;
+            }
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitLogicalOperationNode(LogicalOperationNode node) {
+            infer(node.getLeftElement());
+            infer(node.getRightElement());
+            return ValueType.BOOL;
+        }
+
+        @Override
+        public ValueType visitNotNode(NotNode node) {
+            infer(node.getElement());
+            return ValueType.BOOL;
+        }
+
+        @Override
+        public ValueType visitOperationNode(OperationNode node) {
+            boolean integral = node.getOpcode() != Opcode.DIVIDE;
+            boolean pending = false;
+            for (ASTNode operand : node.getOperands()) {
+                ValueType type = infer(operand);
+                if (type == null) {
+                    pending = true;
+                } else if (type != ValueType.INT) {
+                    integral = false;
+                }
+            }
+            if (!integral) {
+                return ValueType.UNKNOWN;
+            }
+            return pending ? null : ValueType.INT;
+        }
+
+        @Override
+        public ValueType visitPredicateNode(PredicateNode node) {
+            infer(node.getElement());
+            return ValueType.BOOL;
+        }
+
+        @Override
+        public ValueType visitProgNode(ProgNode node) {
+            ValueType type = ValueType.UNKNOWN;
+            for (ASTNode statement : node.getStatements()) {
+                type = infer(statement);
+            }
+            return type;
+        }
+
+        @Override
+        public ValueType visitReturnNode(ReturnNode node) {
+            return infer(node.getReturnValue());
+        }
+
+        @Override
+        public ValueType visitTailNode(TailNode node) {
+            infer(node.getTail());
+            return ValueType.LIST;
+        }
+
+        @Override
+        public ValueType visitWhileNode(WhileNode node) {
+            infer(node.getCondition());
+            for (ASTNode statement : node.getBody()) {
+                infer(statement);
+            }
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitConditionBranch(ConditionBranch branch) {
+            infer(branch.getCondition());
+            return infer(branch.getAction());
+        }
+
+        @Override
+        public ValueType visitQuoteNode(QuoteNode node) {
+            //quoted code can still run through eval
+            infer(node.getQuotedExpr());
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitLambdaCallNode(LambdaCallNode node) {
+            for (ASTNode parameter : node.getParameters()) {
+                infer(parameter);
+            }
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitEvalNode(EvalNode node) {
+            infer(node.getNode());
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitNullNode(NullNode nullNode) {
+            return ValueType.UNKNOWN;
+        }
+
+        @Override
+        public ValueType visitBoolNode(BooleanNode booleanNode) {
+            return ValueType.BOOL;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package steps;
+
+import ast.nodes.*;
+import visitors.ASTTransformer;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+//where each name is defined and used over a whole program. names are resolved dynamically, so this is
+//kept per name, not per scope: every setq of a name is one definition, every atom or call naming it one
+//use. quoted code counts as well, eval can still run it. a function's references to its own name from
+//inside its body are not uses, they only run once something else calls it
+public class UseDefInfo {
+	private final Map<Integer, Integer> assignments = new HashMap<>();
+	private final Map<Integer, Integer> uses = new HashMap<>();
+	private final Map<Integer, Integer> functions = new HashMap<>();
+	private final Set<Integer> parameters = new HashSet<>();
+
+	private UseDefInfo() {
+	}
+
+	public static UseDefInfo of(ASTNode root) {
+		UseDefInfo info = new UseDefInfo();
+		info.new Collect().transform(root);
+		return info;
+	}
+
+	public int assignments(int symbol) {
+		return assignments.getOrDefault(symbol, 0);
+	}
+
+	public int uses(int symbol) {
+		return uses.getOrDefault(symbol, 0);
+	}
+
+	//number of funcs defined under the name
+	public int functions(int symbol) {
+		return functions.getOrDefault(symbol, 0);
+	}
+
+	public boolean isParameter(int symbol) {
+		return parameters.contains(symbol);
+	}
+
+	//a parameter or function name, something a call binds
+	public boolean isBound(int symbol) {
+		return functions.containsKey(symbol) || parameters.contains(symbol);
+	}
+
+	//assigned by exactly one setq and bound nowhere else
+	public boolean isSingleAssignment(int symbol) {
+		return assignments(symbol) == 1 && !isBound(symbol);
+	}
+
+	private class Collect extends ASTTransformer {
+		private final Deque<Integer> enclosing = new ArrayDeque<>();
+
+		Collect() {
+			super("use-def");
+		}
+
+		private void use(int symbol) {
+			if (!enclosing.contains(symbol)) {
+				uses.merge(symbol, 1, Integer::sum);
+			}
+		}
+
+		@Override
+		public ASTNode visitAssignmentNode(AssignmentNode node) {
+			assignments.merge(node.getSymbol(), 1, Integer::sum);
+			return super.visitAssignmentNode(node);
+		}
+
+		@Override
+		public ASTNode visitAtomNode(AtomNode node) {
+			use(node.getSymbol());
+			return node;
+		}
+
+		@Override
+		public ASTNode visitFunctionCallNode(FunctionCallNode node) {
+			use(node.getSymbol());
+			return super.visitFunctionCallNode(node);
+		}
+
+		@Override
+		public ASTNode visitFunctionNode(FunctionNode node) {
+			functions.merge(node.getSymbol(), 1, Integer::sum);
+			for (int parameter : node.getParameterSymbols()) {
+				parameters.add(parameter);
+			}
+			enclosing.push(node.getSymbol());
+			try {
+				return super.visitFunctionNode(node);
+			} finally {
+				enclosing.pop();
+			}
+		}
+
+		@Override
+		public ASTNode visitLambdaNode(LambdaNode node) {
+			for (int parameter : node.getParameterSymbols()) {
+				parameters.add(parameter);
+			}
+			return super.visitLambdaNode(node);
+		}
+	}
+}
@@ -1,21 +1,27 @@
 package things;
 
 import ast.nodes.ASTNode;
+import visitors.ASTWalker;
 import visitors.PrettyVisitor;
 
 import java.io.IOException;
 import java.io.Writer;
 
 public class ASTPrinter {
+	//one line per node, indented by its depth under the root; walked over an explicit stack. the texts are
+	//built once for the whole print and each line reuses its node's
 	public static void printAST(Writer writer, ASTNode node, PrettyVisitor visitor, int depth) throws IOException {
-		for (int i = 0; i < depth; i++) {
-			writer.write("  ");
-		}
-
-		writer.write(node.accept(visitor) + "\n");
+		visitor.beginPrint(node);
+		try {
+			ASTWalker.preOrder(node, (current, below) -> {
+				for (int i = 0; i < depth + below; i++) {
+					writer.write("  ");
+				}
 
-		for (ASTNode child : node.getChildren()) {
-			printAST(writer, child, visitor, depth + 1);
+				writer.write(visitor.text(current) + "\n");
+			});
+		} finally {
+			visitor.endPrint();
 		}
 	}
 }
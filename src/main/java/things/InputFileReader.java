@@ -3,6 +3,10 @@ package things;
 import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 public class InputFileReader {
 	public static String readInputFromFile(String filePath) throws IOException {
@@ -15,4 +19,15 @@ public class InputFileReader {
 		}
 		return input.toString();
 	}
+
+	//the mapping stays valid after the channel is closed
+	public static MappedByteBuffer mapInputFromFile(String filePath) throws IOException {
+		try (FileChannel channel = FileChannel.open(Path.of(filePath), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new IOException("ERROR: FILE TOO LARGE TO MAP: " + filePath);
+			}
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+		}
+	}
 }
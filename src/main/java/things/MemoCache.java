@@ -0,0 +1,69 @@
+package things;
+
+import ast.nodes.FunctionNode;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+//results of calls to pure funcs, keyed by the func and the argument values its body sees. bounded, the
+//least recently used result goes first. failed calls are not kept, they fail again the same way
+public class MemoCache {
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private final Map<Key, Object> results;
+	private long hits;
+	private long misses;
+
+	public MemoCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public MemoCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("ERROR: MEMO CACHE CAPACITY MUST BE POSITIVE: " + capacity);
+		}
+		this.results = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	//not computeIfAbsent: the call may recurse into the cache before its own result is in
+	public Object get(FunctionNode function, List<Object> arguments, Supplier<Object> call) {
+		Key key = new Key(function, arguments);
+		if (results.containsKey(key)) {
+			hits++;
+			return results.get(key);
+		}
+		misses++;
+		Object result = call.get();
+		results.put(key, result);
+		return result;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	public void clear() {
+		results.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	//funcs compare by identity, a redefinition under the same name is another func
+	private record Key(FunctionNode function, List<Object> arguments) {
+	}
+}
@@ -1,34 +1,105 @@
 package things;
 
-import ast.nodes.ASTNode;
-
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+//scope keyed by interned symbol ids, see Symbols. the parser binds names to the nodes that define them,
+//the interpreter to runtime values, which are stored and read back as they are
 public class SymbolTable {
 	private final SymbolTable parent;
-	Map<String, ASTNode> symbols;
+	private int[] keys; //symbol + 1, 0 marks an empty slot
+	private Object[] values;
+	private int size;
 
 	public SymbolTable(SymbolTable parent) {
 		this.parent = parent;
-		this.symbols = new HashMap<>();
+		this.keys = new int[8];
+		this.values = new Object[8];
+	}
+
+	public SymbolTable getParent() {
+		return parent;
 	}
 
-	public void define(String name, ASTNode value) {
-		symbols.put(name, value);
+	public void define(String name, Object value) {
+		define(Symbols.intern(name), value);
 	}
 
-	public ASTNode lookup(String name) throws Exception {
-		if (symbols.containsKey(name)) {
-			return symbols.get(name);
-		} else if (parent != null) {
-			return parent.lookup(name);
-		} else {
-			throw new Exception("ERROR: UNDEFINED VARIABLE: " + name);
+	public void define(int symbol, Object value) {
+		int index = indexOf(symbol);
+		if (keys[index] == 0) {
+			keys[index] = symbol + 1;
+			if (++size * 2 > keys.length) {
+				values[index] = value;
+				grow();
+				return;
+			}
 		}
+		values[index] = value;
+	}
+
+	public Object lookup(String name) throws Exception {
+		return lookup(Symbols.intern(name));
+	}
+
+	public Object lookup(int symbol) throws Exception {
+		for (SymbolTable table = this; table != null; table = table.parent) {
+			int index = table.indexOf(symbol);
+			if (table.keys[index] != 0) {
+				return table.values[index];
+			}
+		}
+		throw new Exception("ERROR: UNDEFINED VARIABLE: " + Symbols.name(symbol));
 	}
 
 	public boolean isDefined(String name) {
-		return symbols.containsKey(name) || (parent != null && parent.isDefined(name));
+		return isDefined(Symbols.intern(name));
+	}
+
+	public boolean isDefined(int symbol) {
+		for (SymbolTable table = this; table != null; table = table.parent) {
+			if (table.keys[table.indexOf(symbol)] != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//same definitions and parent, later changes to either table do not affect the other
+	public SymbolTable copy() {
+		SymbolTable copy = new SymbolTable(parent);
+		copy.keys = keys.clone();
+		copy.values = values.clone();
+		copy.size = size;
+		return copy;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(values, null);
+		size = 0;
+	}
+
+	//slot holding the symbol, or the empty slot where it would go
+	private int indexOf(int symbol) {
+		int mask = keys.length - 1;
+		int index = symbol & mask;
+		while (keys[index] != 0 && keys[index] != symbol + 1) {
+			index = (index + 1) & mask;
+		}
+		return index;
+	}
+
+	private void grow() {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[oldKeys.length * 2];
+		values = new Object[oldKeys.length * 2];
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int index = indexOf(oldKeys[i] - 1);
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
 	}
 }
@@ -0,0 +1,89 @@
+package things;
+
+import java.util.Arrays;
+
+//process-wide identifier table: every distinct name gets a dense id the first time the lexer sees it.
+//adding takes the lock, reading a name does not: the names array is republished through a volatile write
+//after each add, so whoever got an id from intern sees its name
+public final class Symbols {
+	public static final int NONE = -1;
+
+	private static int[] slots = new int[1024]; //id + 1, 0 marks an empty slot
+	private static volatile String[] names = new String[512];
+	private static volatile int count;
+
+	private Symbols() {
+	}
+
+	public static int intern(String name) {
+		return intern(name, 0, name.length());
+	}
+
+	//looks the name up in place, a String is only built for names seen for the first time
+	public static synchronized int intern(CharSequence source, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + source.charAt(i);
+		}
+		int mask = slots.length - 1;
+		int index = spread(hash) & mask;
+		while (slots[index] != 0) {
+			int symbol = slots[index] - 1;
+			if (matches(names[symbol], source, start, end)) {
+				return symbol;
+			}
+			index = (index + 1) & mask;
+		}
+		return add(source.subSequence(start, end).toString(), index);
+	}
+
+	public static String name(int symbol) {
+		return names[symbol];
+	}
+
+	public static int size() {
+		return count;
+	}
+
+	private static int add(String name, int index) {
+		String[] published = names;
+		if (count == published.length) {
+			published = Arrays.copyOf(published, count * 2);
+		}
+		published[count] = name;
+		names = published;
+		slots[index] = ++count;
+		if (count * 2 > slots.length) {
+			rehash();
+		}
+		return count - 1;
+	}
+
+	private static void rehash() {
+		slots = new int[slots.length * 2];
+		int mask = slots.length - 1;
+		for (int symbol = 0; symbol < count; symbol++) {
+			int index = spread(names[symbol].hashCode()) & mask;
+			while (slots[index] != 0) {
+				index = (index + 1) & mask;
+			}
+			slots[index] = symbol + 1;
+		}
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean matches(String name, CharSequence source, int start, int end) {
+		if (name.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			if (name.charAt(i) != source.charAt(start + i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
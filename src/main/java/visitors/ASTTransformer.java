@@ -0,0 +1,339 @@
+package visitors;
+
+import ast.ASTNodeFactory;
+import ast.Annotations;
+import ast.nodes.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//rewrites a tree without touching it: every visit returns the node to use in its place, and a node is
+//only rebuilt through the factory when one of its parts changed, so untouched subtrees stay shared
+//with the input. subclasses override the visits they rewrite and call super for the rest. the types of a
+//program are in the annotations of its root: a transform works on a copy of them, which the program it
+//returns gets, so the input keeps its own
+public abstract class ASTTransformer implements ASTVisitor<ASTNode> {
+	protected final ASTNodeFactory factory;
+	private final String name;
+	private final Map<String, Integer> counts = new LinkedHashMap<>();
+	private final ASTTransformer outer;
+	private Annotations annotations;
+
+	protected ASTTransformer(String name) {
+		this(name, new ASTNodeFactory());
+	}
+
+	protected ASTTransformer(String name, ASTNodeFactory factory) {
+		this.name = name;
+		this.factory = factory;
+		this.outer = null;
+	}
+
+	//a helper rewriting parts of the tree another transformer is rewriting, with its factory and annotations
+	protected ASTTransformer(String name, ASTTransformer outer) {
+		this.name = name;
+		this.factory = outer.factory;
+		this.outer = outer;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public ASTNode transform(ASTNode root) {
+		counts.clear();
+		if (outer != null) {
+			return rewrite(root);
+		}
+		Annotations input = root instanceof ProgNode program ? program.getAnnotations() : null;
+		annotations = input == null ? new Annotations() : input.copy();
+		ASTNode result = rewrite(root);
+		if (result instanceof ProgNode program && root instanceof ProgNode) {
+			if (program == root) {
+				program = typedLike(factory.createProgNode(program.getStatements(), program.getLineOp(), program.getLineClo()), root);
+				result = program;
+			}
+			program.setAnnotations(annotations);
+		}
+		annotations = null;
+		return result;
+	}
+
+	//what the passes found out about the tree being rewritten
+	protected Annotations annotations() {
+		return outer != null ? outer.annotations() : annotations;
+	}
+
+	protected ASTNode rewrite(ASTNode root) {
+		return transformNode(root);
+	}
+
+	//what the last transform changed, by kind of change
+	public Map<String, Integer> getCounts() {
+		return Collections.unmodifiableMap(counts);
+	}
+
+	protected void count(String change) {
+		counts.merge(change, 1, Integer::sum);
+	}
+
+	protected ASTNode transformNode(ASTNode node) {
+		return node == null ? null : node.accept(this);
+	}
+
+	//null when no element changed
+	protected List<ASTNode> transformAll(List<ASTNode> nodes) {
+		List<ASTNode> result = null;
+		for (int i = 0; i < nodes.size(); i++) {
+			ASTNode transformed = transformNode(nodes.get(i));
+			if (result == null && transformed != nodes.get(i)) {
+				result = new ArrayList<>(nodes.subList(0, i));
+			}
+			if (result != null) {
+				result.add(transformed);
+			}
+		}
+		return result;
+	}
+
+	//the replacement keeps the types of the node it stands for
+	protected <T extends ASTNode> T typedLike(T replacement, ASTNode original) {
+		replacement.setType(original.getType());
+		ASTNode.ValueType valueType = annotations().valueType(original);
+		if (valueType != null) {
+			annotations().setValueType(replacement, valueType);
+		}
+		return replacement;
+	}
+
+	@Override
+	public ASTNode visitAssignmentNode(AssignmentNode node) {
+		ASTNode value = transformNode(node.getValue());
+		if (value == node.getValue()) {
+			return node;
+		}
+		return typedLike(factory.createAssignmentNode(node.getVariable(), value, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitAtomNode(AtomNode node) {
+		return node;
+	}
+
+	@Override
+	public ASTNode visitBreakNode(BreakNode node) {
+		return node;
+	}
+
+	@Override
+	public ASTNode visitComparisonNode(ComparisonNode node) {
+		ASTNode left = transformNode(node.getLeftElement());
+		ASTNode right = transformNode(node.getRightElement());
+		if (left == node.getLeftElement() && right == node.getRightElement()) {
+			return node;
+		}
+		return typedLike(factory.createComparisonNode(node.getOpcode(), left, right, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitConditionNode(ConditionNode node) {
+		boolean changed = false;
+		List<ConditionBranch> branches = new ArrayList<>();
+		for (ConditionBranch branch : node.getBranches()) {
+			ASTNode condition = transformNode(branch.getCondition());
+			ASTNode action = transformNode(branch.getAction());
+			if (condition != branch.getCondition() || action != branch.getAction()) {
+				changed = true;
+				branches.add(factory.createConditionBranch(condition, action));
+			} else {
+				branches.add(branch);
+			}
+		}
+		ASTNode defaultAction = transformNode(node.getDefaultAction());
+		if (!changed && defaultAction == node.getDefaultAction()) {
+			return node;
+		}
+		return typedLike(factory.createConditionNode(branches, defaultAction, node.getLineOp(), node.getLineClo()), node);
+	}
+
+	@Override
+	public ASTNode visitConsNode(ConsNode node) {
+		ASTNode head = transformNode(node.getHead());
+		ASTNode tail = transformNode(node.getTail());
+		if (head == node.getHead() && tail == node.getTail()) {
+			return node;
+		}
+		return typedLike(factory.createConsNode(head, tail, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitFunctionNode(FunctionNode node) {
+		ASTNode body = transformNode(node.getBody());
+		if (body == node.getBody()) {
+			return node;
+		}
+		return typedLike(factory.createFunctionNode(node.getFunctionName(), node.getParameters(), body,
+				node.getLineOp(), node.getLineClo()), node);
+	}
+
+	@Override
+	public ASTNode visitFunctionCallNode(FunctionCallNode node) {
+		List<ASTNode> parameters = transformAll(node.getParameters());
+		if (parameters == null) {
+			return node;
+		}
+		return typedLike(new FunctionCallNode(node.getFunctionName(), parameters, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitHeadNode(HeadNode node) {
+		ASTNode list = transformNode(node.getHead());
+		if (list == node.getHead()) {
+			return node;
+		}
+		return typedLike(factory.createHeadNode(list, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitLambdaNode(LambdaNode node) {
+		ASTNode body = transformNode(node.getBody());
+		if (body == node.getBody()) {
+			return node;
+		}
+		return typedLike(factory.createLambdaNode(node.getParameters(), body, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitListNode(ListNode node) {
+		List<ASTNode> elements = transformAll(node.getElements());
+		if (elements == null) {
+			return node;
+		}
+		return typedLike(factory.createListNode(elements, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitLiteralNode(LiteralNode node) {
+		return node;
+	}
+
+	@Override
+	public ASTNode visitLogicalOperationNode(LogicalOperationNode node) {
+		ASTNode left = transformNode(node.getLeftElement());
+		ASTNode right = transformNode(node.getRightElement());
+		if (left == node.getLeftElement() && right == node.getRightElement()) {
+			return node;
+		}
+		return typedLike(factory.createLogicalOperationNode(node.getOpcode(), left, right, node.getLineOp(), node.getLineClo()), node);
+	}
+
+	@Override
+	public ASTNode visitNotNode(NotNode node) {
+		ASTNode element = transformNode(node.getElement());
+		if (element == node.getElement()) {
+			return node;
+		}
+		return typedLike(factory.createNotNode(element, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitOperationNode(OperationNode node) {
+		List<ASTNode> operands = transformAll(node.getOperands());
+		if (operands == null) {
+			return node;
+		}
+		return typedLike(factory.createOperationNode(node.getOpcode(), operands, false, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitPredicateNode(PredicateNode node) {
+		ASTNode element = transformNode(node.getElement());
+		if (element == node.getElement()) {
+			return node;
+		}
+		return typedLike(factory.createPredicateNode(node.getOpcode(), element, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitProgNode(ProgNode node) {
+		List<ASTNode> statements = transformAll(node.getStatements());
+		if (statements == null) {
+			return node;
+		}
+		return typedLike(factory.createProgNode(statements, node.getLineOp(), node.getLineClo()), node);
+	}
+
+	@Override
+	public ASTNode visitReturnNode(ReturnNode node) {
+		ASTNode value = transformNode(node.getReturnValue());
+		if (value == node.getReturnValue()) {
+			return node;
+		}
+		return typedLike(factory.createReturnNode(value, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitTailNode(TailNode node) {
+		ASTNode list = transformNode(node.getTail());
+		if (list == node.getTail()) {
+			return node;
+		}
+		return typedLike(factory.createTailNode(list, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitWhileNode(WhileNode node) {
+		ASTNode condition = transformNode(node.getCondition());
+		List<ASTNode> body = transformAll(node.getBody());
+		if (condition == node.getCondition() && body == null) {
+			return node;
+		}
+		return typedLike(factory.createWhileNode(condition, body == null ? node.getBody() : body,
+				node.getLineOp(), node.getLineClo()), node);
+	}
+
+	@Override
+	public ASTNode visitConditionBranch(ConditionBranch branch) {
+		throw new UnsupportedOperationException("ERROR: CONDITION BRANCHES ARE REWRITTEN WITH THEIR CONDITION");
+	}
+
+	@Override
+	public ASTNode visitQuoteNode(QuoteNode node) {
+		ASTNode quoted = transformNode(node.getQuotedExpr());
+		if (quoted == node.getQuotedExpr()) {
+			return node;
+		}
+		return typedLike(factory.createQuoteNode(quoted, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitLambdaCallNode(LambdaCallNode node) {
+		List<ASTNode> parameters = transformAll(node.getParameters());
+		if (parameters == null) {
+			return node;
+		}
+		return typedLike(new LambdaCallNode(node.getLambdaName(), parameters, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitEvalNode(EvalNode node) {
+		ASTNode code = transformNode(node.getNode());
+		if (code == node.getNode()) {
+			return node;
+		}
+		return typedLike(factory.createEvalNode(code, node.getLine()), node);
+	}
+
+	@Override
+	public ASTNode visitNullNode(NullNode nullNode) {
+		return nullNode;
+	}
+
+	@Override
+	public ASTNode visitBoolNode(BooleanNode booleanNode) {
+		return booleanNode;
+	}
+}
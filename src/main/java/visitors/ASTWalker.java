@@ -0,0 +1,122 @@
+package visitors;
+
+import ast.nodes.*;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+
+//walks a tree over a work stack of its own instead of the java call stack, so a tree of any depth is
+//walked in constant java stack and in time linear in its size. null nodes are skipped
+public final class ASTWalker {
+
+	private ASTWalker() {
+	}
+
+	@FunctionalInterface
+	public interface Visit<X extends Exception> {
+		void visit(ASTNode node, int depth) throws X;
+	}
+
+	private record Frame(ASTNode node, int depth, boolean expanded) {
+	}
+
+	//a node, then its getChildren in order, the root at depth 0
+	public static <X extends Exception> void preOrder(ASTNode root, Visit<X> visit) throws X {
+		Deque<Frame> stack = new ArrayDeque<>();
+		push(stack, root, 0, false);
+		while (!stack.isEmpty()) {
+			Frame frame = stack.pop();
+			visit.visit(frame.node(), frame.depth());
+			List<ASTNode> children = frame.node().getChildren();
+			for (int i = children.size() - 1; i >= 0; i--) {
+				push(stack, children.get(i), frame.depth() + 1, false);
+			}
+		}
+	}
+
+	//the children in order, then the node. a visit that computes something from its children finds them done
+	public static <X extends Exception> void postOrder(ASTNode root, Function<ASTNode, List<ASTNode>> children,
+													   Visit<X> visit) throws X {
+		postOrder(root, children, null, visit);
+	}
+
+	//enter sees a node before its children, for what a recursive walk would do on the way down
+	public static <X extends Exception> void postOrder(ASTNode root, Function<ASTNode, List<ASTNode>> children,
+													   Visit<X> enter, Visit<X> exit) throws X {
+		Deque<Frame> stack = new ArrayDeque<>();
+		push(stack, root, 0, false);
+		while (!stack.isEmpty()) {
+			Frame frame = stack.pop();
+			if (frame.expanded()) {
+				exit.visit(frame.node(), frame.depth());
+				continue;
+			}
+			if (enter != null) {
+				enter.visit(frame.node(), frame.depth());
+			}
+			push(stack, frame.node(), frame.depth(), true);
+			List<ASTNode> parts = children.apply(frame.node());
+			for (int i = parts.size() - 1; i >= 0; i--) {
+				push(stack, parts.get(i), frame.depth() + 1, false);
+			}
+		}
+	}
+
+	private static void push(Deque<Frame> stack, ASTNode node, int depth, boolean expanded) {
+		if (node != null) {
+			stack.push(new Frame(node, depth, expanded));
+		}
+	}
+
+	//every node a node is built from, as its getters return them. getChildren only holds part of them for
+	//some kinds: a func's children are its body's statements, a cond's the first branch without the default
+	public static List<ASTNode> parts(ASTNode node) {
+		List<ASTNode> parts = new ArrayList<>();
+		switch (node) {
+			case AssignmentNode n -> parts.add(n.getValue());
+			case ComparisonNode n -> {
+				parts.add(n.getLeftElement());
+				parts.add(n.getRightElement());
+			}
+			case ConditionNode n -> {
+				for (ConditionBranch branch : n.getBranches()) {
+					parts.add(branch.getCondition());
+					parts.add(branch.getAction());
+				}
+				parts.add(n.getDefaultAction());
+			}
+			case ConsNode n -> {
+				parts.add(n.getHead());
+				parts.add(n.getTail());
+			}
+			case FunctionNode n -> parts.add(n.getBody());
+			case FunctionCallNode n -> parts.addAll(n.getParameters());
+			case HeadNode n -> parts.add(n.getHead());
+			case LambdaNode n -> parts.add(n.getBody());
+			case LambdaCallNode n -> parts.addAll(n.getParameters());
+			case ListNode n -> parts.addAll(n.getElements());
+			case LogicalOperationNode n -> {
+				parts.add(n.getLeftElement());
+				parts.add(n.getRightElement());
+			}
+			case NotNode n -> parts.add(n.getElement());
+			case OperationNode n -> parts.addAll(n.getOperands());
+			case PredicateNode n -> parts.add(n.getElement());
+			case ProgNode n -> parts.addAll(n.getStatements());
+			case QuoteNode n -> parts.add(n.getQuotedExpr());
+			case ReturnNode n -> parts.add(n.getReturnValue());
+			case TailNode n -> parts.add(n.getTail());
+			case WhileNode n -> {
+				parts.add(n.getCondition());
+				parts.addAll(n.getBody());
+			}
+			case EvalNode n -> parts.add(n.getNode());
+			default -> {
+			}
+		}
+		return parts;
+	}
+}
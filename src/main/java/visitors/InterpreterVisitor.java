@@ -1,32 +1,61 @@
 package visitors;
 
+import ast.Annotations;
 import ast.nodes.*;
+import things.MemoCache;
 import things.SymbolTable;
 
 import java.util.ArrayList;
 import java.util.List;
 
+//runtime values are plain objects: Integer (Long when it does not fit) for ints, Double for reals, Boolean,
+//null, List<Object> for lists, and the nodes themselves for funcs, lambdas and quoted code. a scope holds
+//them as they are, so reading a variable is a lookup with nothing to convert. a node shared by several
+//places has no line, an error in it is reported at the line of the closest node around it that has one
 public class InterpreterVisitor implements ASTVisitor<Object> {
 	private final SymbolTable symbolTable;
 	private final boolean globalScope; // Flag to track whether in global scope
+	private final MemoCache memo; //shared by every visitor of one run
+	private Annotations annotations; //of the program run, null until one is
+	private int line; //of the innermost node being run that has one
 
 
 	public InterpreterVisitor(SymbolTable symbolTable, boolean globalScope) {
+		this(symbolTable, globalScope, new MemoCache());
+	}
+
+	public InterpreterVisitor(SymbolTable symbolTable, boolean globalScope, MemoCache memo) {
+		this(symbolTable, globalScope, memo, null, ASTNode.NO_LINE);
+	}
+
+	//runs a part of the program the given visitor is running
+	private InterpreterVisitor(SymbolTable symbolTable, InterpreterVisitor outer, int line) {
+		this(symbolTable, false, outer.memo, outer.annotations, line);
+	}
+
+	private InterpreterVisitor(SymbolTable symbolTable, boolean globalScope, MemoCache memo, Annotations annotations, int line) {
 		this.symbolTable = symbolTable;
 		this.globalScope = globalScope;
+		this.memo = memo;
+		this.annotations = annotations;
+		this.line = line;
+	}
+
+	public MemoCache getMemo() {
+		return memo;
 	}
 
 	@Override
 	public Object visitAssignmentNode(AssignmentNode node) {
 		ASTNode action = node.getChildren().getFirst();
-		Object value = visit(action);
+		Object value = visitAt(action, node);
 		if (action instanceof QuoteNode) {
-			symbolTable.define(node.getVariable(), new QuoteNode((ASTNode) value, ((QuoteNode) action).getLine()));
+			symbolTable.define(node.getSymbol(), new QuoteNode((ASTNode) value, ((QuoteNode) action).getLine()));
 		} else if (action instanceof LambdaNode) {
-			symbolTable.define(node.getVariable(), new LambdaNode(((LambdaNode) action).getParameters(),
+			symbolTable.define(node.getSymbol(), new LambdaNode(((LambdaNode) action).getParameters(),
 					((LambdaNode) action).getBody(), ((LambdaNode) action).getLine()));
 		} else {
-			symbolTable.define(node.getVariable(), new LiteralNode(value.toString()));
+			symbolTable.define(node.getSymbol(), bound(value, node.getLine()));
 		}
 		return null;
 	}
@@ -34,29 +63,69 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 	@Override
 	public Object visitAtomNode(AtomNode node) {
 		try {
-			return visit(symbolTable.lookup(node.getValue()));
+			return read(symbolTable.lookup(node.getSymbol()));
 		} catch (Exception e) {
-			throw new RuntimeException("ERROR: " + e.getMessage() + " at line: " + node.getLine());
+			throw new RuntimeException("ERROR: " + e.getMessage() + " at line: " + lineOf(node));
 		}
 	}
 
 	@Override
 	public Object visitLiteralNode(LiteralNode node) {
-		String value = node.getValue();
+		if (node.isInteger()) {
+			long value = node.getIntegerValue();
+			return value == (int) value ? (Object) (int) value : (Object) value;
+		} else if (node.isReal()) {
+			return node.getRealValue();
+		}
+		return node.getValue();
+	}
+
+	//what a name is bound to for a value. code a name holds stays quoted, reading the name must not run it;
+	//a long that fits is an Integer, as reading the literal would give
+	private static Object bound(Object value, int line) {
+		if (value instanceof ASTNode code) {
+			return new QuoteNode(code, line);
+		} else if (value instanceof Long integer && integer == integer.intValue()) {
+			return integer.intValue();
+		}
+		return value;
+	}
+
+	//the value of a name bound to what bound gave
+	private Object read(Object bound) {
+		return bound instanceof ASTNode node ? visit(node) : bound;
+	}
+
+	//the line of a node, or the one it is run at when it has none
+	private int lineOf(ASTNode node) {
+		return node.getLine() == ASTNode.NO_LINE ? line : node.getLine();
+	}
+
+	//visits a part of a node that has a line of its own
+	private Object visitAt(ASTNode part, ASTNode node) {
+		int enclosing = line;
+		line = lineOf(node);
 		try {
-			if (value.contains(".")) {
-				return Double.parseDouble(value);
-			} else {
-				return Integer.parseInt(value);
-			}
-		} catch (NumberFormatException e) {
-			return value;
+			return visit(part);
+		} finally {
+			line = enclosing;
 		}
 	}
 
+	private ASTNode.ValueType valueType(ASTNode node) {
+		return annotations == null ? null : annotations.valueType(node);
+	}
+
+	private boolean isTail(FunctionCallNode call) {
+		return annotations != null && annotations.isTail(call);
+	}
+
 	@Override
 	public Object visitOperationNode(OperationNode node) {
-		String operator = node.getOperator();
+		Opcode operator = node.getOpcode();
+		if (valueType(node) == ASTNode.ValueType.INT) {
+			return evalIntOperation(operator, node.getOperands());
+		}
 		List<Object> evaluatedOperands = new ArrayList<>();
 		for (ASTNode operand : node.getOperands()) {
 			evaluatedOperands.add(visit(operand));
@@ -67,29 +136,29 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 
 	@Override
 	public Object visitPredicateNode(PredicateNode node) {
-		switch (node.getPredicate()) {
-			case "isint" -> {
+		switch (node.getOpcode()) {
+			case ISINT -> {
 				if (node.getElement().accept(this) instanceof Integer) {
 					return true;
 				} else return false;
 			}
-			case "isreal" -> {
+			case ISREAL -> {
 				if (node.getElement().accept(this) instanceof Double ||
 						node.getElement().accept(this) instanceof Integer) {
 					return true;
 				} else return false;
 			}
-			case "isbool" -> {
+			case ISBOOL -> {
 				if (node.getElement().accept(this) instanceof Boolean) {
 					return true;
 				} else return false;
 			}
-			case "isnull" -> {
+			case ISNULL -> {
 				if (node.getElement() instanceof NullNode) {
 					return true;
 				} else return false;
 			}
-			case "islist" -> {
+			case ISLIST -> {
 				if (node.getElement() instanceof ConsNode) {
 					return true;
 				} else return false;
@@ -103,19 +172,74 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 		return value == Math.floor(value);
 	}
 
-	private Number evalOperation(String operator, List<Object> operands) {
+	//doubles hold every integer up to 2^53 exactly
+	private static final long EXACT = 1L << 53;
+
+	private static boolean exact(long value) {
+		return value >= -EXACT && value <= EXACT;
+	}
+
+	//operands proven to be ints are summed or multiplied into a long as they are visited, nothing is boxed.
+	//long arithmetic gives what the double path gives as long as every value on the way is exact as a
+	//double; otherwise, or when a shared node's type went stale, the double path takes over from the
+	//result so far, which is exact, and the operands not yet used
+	private Number evalIntOperation(Opcode operator, List<ASTNode> operands) {
+		if (operands.isEmpty() || operator == Opcode.DIVIDE) {
+			return evalOperation(operator, visitAll(operands, 0, new ArrayList<>(operands.size())));
+		}
+		boolean minus = operator == Opcode.MINUS;
+		long result = operator == Opcode.TIMES ? 1 : 0;
+		for (int i = 0; i < operands.size(); i++) {
+			Object value = visit(operands.get(i));
+			boolean first = minus && i == 0; //what the others are subtracted from
+			boolean fits = (value instanceof Integer || value instanceof Long) && exact(((Number) value).longValue());
+			long next = result;
+			if (fits) {
+				long number = ((Number) value).longValue();
+				switch (operator) {
+					case PLUS -> next = result + number;
+					case MINUS -> next = first ? number : result - number;
+					case TIMES -> {
+						fits = Math.abs(result) <= EXACT / Math.max(1, Math.abs(number));
+						next = result * number;
+					}
+				}
+				fits &= exact(next);
+			}
+			if (!fits) {
+				List<Object> values = new ArrayList<>(operands.size() - i + 1);
+				if (!first) {
+					values.add(result);
+				}
+				values.add(value);
+				return evalOperation(operator, visitAll(operands, i + 1, values));
+			}
+			result = next;
+		}
+		//narrowed the way the double path narrows, out of range results saturate
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, result));
+	}
+
+	private List<Object> visitAll(List<ASTNode> operands, int from, List<Object> values) {
+		for (int i = from; i < operands.size(); i++) {
+			values.add(visit(operands.get(i)));
+		}
+		return values;
+	}
+
+	private Number evalOperation(Opcode operator, List<Object> operands) {
 		List<Double> numericOperands = operands.stream()
 				.map(o -> ((Number) o).doubleValue()) // Ensure all are Numbers
 				.toList();
 
 		switch (operator) {
-			case "plus" -> {
+			case PLUS -> {
 				double result = numericOperands.stream().mapToDouble(Double::doubleValue).sum();
 				if (isInteger(result)) {
 					return (int) result;
 				} else return result;
 			}
-			case "minus" -> {
+			case MINUS -> {
 				double result = numericOperands.get(0);
 				for (int i = 1; i < numericOperands.size(); i++) {
 					result -= numericOperands.get(i);
@@ -124,7 +248,7 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 					return (int) result;
 				} else return result;
 			}
-			case "times" -> {
+			case TIMES -> {
 				double result = 1.0;
 				for (Double operand : numericOperands) {
 					result *= operand;
@@ -133,7 +257,7 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 					return (int) result;
 				} else return result;
 			}
-			case "divide" -> {
+			case DIVIDE -> {
 				double result = numericOperands.get(0);
 				for (int i = 1; i < numericOperands.size(); i++) {
 					double divisor = numericOperands.get(i);
@@ -153,29 +277,37 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 
 	@Override
 	public Object visitProgNode(ProgNode node) {
-		Object result = null;
-		for (ASTNode statement : node.getStatements()) {
-			if (statement instanceof ProgNode) {
-				InterpreterVisitor localVisitor = new InterpreterVisitor(symbolTable, false);
-				result = localVisitor.visit(statement);
-			} else {
-				result = visit(statement);
-			}
-			if (globalScope && result != null) { // Only print in global scope
-				System.out.println(result);
+		Annotations outer = annotations;
+		if (annotations == null) {
+			annotations = node.getAnnotations();
+		}
+		try {
+			Object result = null;
+			for (ASTNode statement : node.getStatements()) {
+				if (statement instanceof ProgNode) {
+					InterpreterVisitor localVisitor = new InterpreterVisitor(symbolTable, this, lineOf(statement));
+					result = localVisitor.visit(statement);
+				} else {
+					result = visitAt(statement, statement);
+				}
+				if (globalScope && result != null) { // Only print in global scope
+					System.out.println(result);
+				}
 			}
+			return result;
+		} finally {
+			annotations = outer;
 		}
-		return result;
 	}
 
 	@Override
 	public Object visitConditionNode(ConditionNode node) {
 		List<ConditionBranch> branches = node.getBranches();
 
-		if ((boolean) branches.get(0).getCondition().accept(this)) {
-			return branches.get(0).getAction().accept(this);
+		if ((boolean) visitAt(branches.get(0).getCondition(), node)) {
+			return visitAt(branches.get(0).getAction(), node);
 		} else try {
-			return node.getDefaultAction().accept(this);
+			return visitAt(node.getDefaultAction(), node);
 		} catch (NullPointerException e) {
 			return null;
 		}
@@ -184,10 +316,10 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 	@Override
 	public Object visitWhileNode(WhileNode node) {
 		boolean breakflag = false;
-		while ((Boolean) visit(node.getCondition())) {
+		while ((Boolean) visitAt(node.getCondition(), node)) {
 			if (breakflag) break;
 			for (ASTNode stmt : node.getBody()) {
-				visit(stmt);
+				visitAt(stmt, stmt);
 				if (stmt instanceof BreakNode) {
 					breakflag = true;
 					break;
@@ -199,7 +331,7 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 
 	@Override
 	public Object visitFunctionNode(FunctionNode node) {
-		symbolTable.define(node.getFunctionName(), node);
+		symbolTable.define(node.getSymbol(), node);
 		return null;
 	}
 
@@ -207,36 +339,92 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 	public Object visitFunctionCallNode(FunctionCallNode node) {
 		try {
 
-			Object function = symbolTable.lookup(node.getFunctionName());
+			Object function = symbolTable.lookup(node.getSymbol());
 			SymbolTable functionScope = new SymbolTable(symbolTable);
 
 			if (function instanceof LambdaNode) {
 				LambdaNode f = (LambdaNode) function;
 				for (int i = 0; i < f.getParameters().size(); i++) {
-					String param = f.getParameters().get(i);
+					int param = f.getParameterSymbols()[i];
 					Object argValue = visit(node.getParameters().get(i + 1));
-					functionScope.define(param, new LiteralNode(argValue.toString()));
+					functionScope.define(param, bound(argValue, lineOf(node)));
 				}
 
-				InterpreterVisitor functionInterpreter = new InterpreterVisitor(functionScope, false);
+				InterpreterVisitor functionInterpreter = new InterpreterVisitor(functionScope, this, f.getLine());
 				return functionInterpreter.visit(f.getBody());
 			} else if (function instanceof FunctionNode) {
 				FunctionNode f = (FunctionNode) function;
-				for (int i = 0; i < f.getParameters().size(); i++) {
-					String param = f.getParameters().get(i);
-					Object argValue = visit(node.getParameters().get(i));
-					functionScope.define(param, new LiteralNode(argValue.toString()));
+				Object[] values = new Object[f.getParameters().size()];
+				for (int i = 0; i < values.length; i++) {
+					values[i] = bound(visit(node.getParameters().get(i)), lineOf(node));
+				}
+				SymbolTable scope = functionScope;
+				//the frame making a tail call is never read again, the callee's frame takes its place under the
+				//same parent. a pure callee reads only its parameters, any other callee may still read what that
+				//frame holds, so it starts from a copy of it
+				boolean tail = isTail(node);
+				if (tail && symbolTable.getParent() != null) {
+					scope = f.isPure() ? new SymbolTable(symbolTable.getParent()) : symbolTable.copy();
+				}
+				List<Object> arguments = f.isPure() && !tail ? new ArrayList<>(values.length) : null;
+				for (int i = 0; i < values.length; i++) {
+					scope.define(f.getParameterSymbols()[i], values[i]);
+					if (arguments != null) {
+						//the value the body reads back, not the one passed in
+						arguments.add(read(values[i]));
+					}
 				}
 
-				InterpreterVisitor functionInterpreter = new InterpreterVisitor(functionScope, false);
-				return functionInterpreter.visit(f.getBody());
+				if (tail) {
+					return new TailCall(f, scope, lineOf(node));
+				}
+				SymbolTable bodyScope = scope;
+				if (arguments != null) {
+					return memo.get(f, arguments, () -> run(f, bodyScope));
+				}
+				return run(f, bodyScope);
 			}
 		} catch (Exception e) {
-			throw new RuntimeException("ERROR: IN FUNCTION CALL " + e.getMessage() + " at line: " + node.getLine());
+			throw new RuntimeException("ERROR: IN FUNCTION CALL " + e.getMessage() + " at line: " + lineOf(node));
 		}
 		return null;
 	}
 
+	//a call in tail position, handed back to the call running the body it ends instead of run on top of it
+	private record TailCall(FunctionNode function, SymbolTable scope, int line) {
+	}
+
+	//runs a func body and then, one after another, the tail calls it hands back, so a tail recursive func
+	//runs in constant stack. each of those calls would have wrapped a failure in its own IN FUNCTION CALL
+	private Object run(FunctionNode f, SymbolTable scope) {
+		Object result = new InterpreterVisitor(scope, this, f.getLine()).visit(f.getBody());
+		if (!(result instanceof TailCall)) {
+			return result;
+		}
+		List<int[]> calls = new ArrayList<>(); //line of the call and how many times in a row it was made
+		try {
+			while (result instanceof TailCall call) {
+				if (!calls.isEmpty() && calls.getLast()[0] == call.line()) {
+					calls.getLast()[1]++;
+				} else {
+					calls.add(new int[]{call.line(), 1});
+				}
+				result = new InterpreterVisitor(call.scope(), this, call.function().getLine()).visit(call.function().getBody());
+			}
+		} catch (Exception e) {
+			StringBuilder message = new StringBuilder();
+			for (int[] made : calls) {
+				message.append("ERROR: IN FUNCTION CALL ".repeat(made[1]));
+			}
+			message.append(e.getMessage());
+			for (int i = calls.size() - 1; i >= 0; i--) {
+				message.append((" at line: " + calls.get(i)[0]).repeat(calls.get(i)[1]));
+			}
+			throw new RuntimeException(message.toString());
+		}
+		return result;
+	}
+
 	@Override
 	public Object visitNullNode(NullNode node) {
 		return null;
@@ -253,21 +441,49 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 		if (value instanceof Boolean) {
 			return !(Boolean) value;
 		}
-		throw new RuntimeException("ERROR: EXPECTED BOOLEAN FOR NOT at line: " + node.getLine());
+		throw new RuntimeException("ERROR: EXPECTED BOOLEAN FOR NOT at line: " + lineOf(node));
 	}
 
 	@Override
 	public Object visitComparisonNode(ComparisonNode node) {
+		if (valueType(node.getLeftElement()) == ASTNode.ValueType.INT
+				&& valueType(node.getRightElement()) == ASTNode.ValueType.INT) {
+			Object leftValue = visit(node.getLeftElement());
+			Object rightValue = visit(node.getRightElement());
+			if ((leftValue instanceof Integer || leftValue instanceof Long) && (rightValue instanceof Integer || rightValue instanceof Long)) {
+				long left = ((Number) leftValue).longValue();
+				long right = ((Number) rightValue).longValue();
+				if (exact(left) && exact(right)) {
+					return compare(node, Long.compare(left, right));
+				}
+			}
+			return compare(node, ((Number) leftValue).doubleValue(), ((Number) rightValue).doubleValue());
+		}
 		double left = ((Number) visit(node.getLeftElement())).doubleValue();
 		double right = ((Number) visit(node.getRightElement())).doubleValue();
+		return compare(node, left, right);
+	}
+
+	private static boolean compare(ComparisonNode node, double left, double right) {
+		return switch (node.getOpcode()) {
+			case EQUAL -> left == right;
+			case NONEQUAL -> left != right;
+			case LESS -> left < right;
+			case LESSEQ -> left <= right;
+			case GREATER -> left > right;
+			case GREATEREQ -> left >= right;
+			default -> throw new RuntimeException("ERROR: UNKNOWN COMPARISON OPERATOR at line: " + node.getLine());
+		};
+	}
 
-		return switch (node.getComparison()) {
-			case "equal" -> left == right;
-			case "nonequal" -> left != right;
-			case "less" -> left < right;
-			case "lesseq" -> left <= right;
-			case "greater" -> left > right;
-			case "greatereq" -> left >= right;
+	private static boolean compare(ComparisonNode node, int order) {
+		return switch (node.getOpcode()) {
+			case EQUAL -> order == 0;
+			case NONEQUAL -> order != 0;
+			case LESS -> order < 0;
+			case LESSEQ -> order <= 0;
+			case GREATER -> order > 0;
+			case GREATEREQ -> order >= 0;
 			default -> throw new RuntimeException("ERROR: UNKNOWN COMPARISON OPERATOR at line: " + node.getLine());
 		};
 	}
@@ -277,23 +493,23 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 	public Object visitLogicalOperationNode(LogicalOperationNode node) {
 		Object left = visit(node.getChildren().get(0));
 		Object right = visit(node.getChildren().get(1));
-		String operator = node.getOperator();
+		Opcode operator = node.getOpcode();
 
 		if (left instanceof Boolean && right instanceof Boolean) {
 			boolean l = (Boolean) left;
 			boolean r = (Boolean) right;
 			return switch (operator) {
-				case "and" -> l && r;
-				case "or" -> l || r;
-				case "xor" -> (l || r) && !(l && r);
-				case "nor" -> !(l || r);
-				case "nand" -> !(l && r);
-				case "xnor" -> !((l || r) && !(l && r));
+				case AND -> l && r;
+				case OR -> l || r;
+				case XOR -> (l || r) && !(l && r);
+				case NOR -> !(l || r);
+				case NAND -> !(l && r);
+				case XNOR -> !((l || r) && !(l && r));
 				default -> throw new RuntimeException("ERROR: UNKNOWN LOGICAL OPERATOR " + operator + " at line: " +
-						node.getLineOp());
+						lineOf(node));
 			};
 		}
-		throw new RuntimeException("ERROR: UNKNOWN LOGICAL OPERATOR " + operator + " at line: " + node.getLineOp());
+		throw new RuntimeException("ERROR: UNKNOWN LOGICAL OPERATOR " + operator + " at line: " + lineOf(node));
 	}
 
 	@Override
@@ -310,7 +526,7 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 	public Object visitHeadNode(HeadNode node) {
 		List<Object> list = (List<Object>) visit(node.getHead());
 		if (list.isEmpty()) {
-			throw new RuntimeException("ERROR: EMPTY LIST at line: " + node.getLine());
+			throw new RuntimeException("ERROR: EMPTY LIST at line: " + lineOf(node));
 		}
 		return list.getFirst();
 	}
@@ -319,7 +535,7 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 	public Object visitTailNode(TailNode node) {
 		List<Object> list = (List<Object>) visit(node.getTail());
 		if (list.isEmpty()) {
-			throw new RuntimeException("ERROR: EMPTY LIST at line: " + node.getLine());
+			throw new RuntimeException("ERROR: EMPTY LIST at line: " + lineOf(node));
 		}
 		return list.subList(1, list.size());
 	}
@@ -336,7 +552,7 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 
 	@Override
 	public Object visitReturnNode(ReturnNode node) {
-		return visit(node.getReturnValue());
+		return visitAt(node.getReturnValue(), node);
 	}
 
 	@Override
@@ -350,7 +566,7 @@ public class InterpreterVisitor implements ASTVisitor<Object> {
 		if (code instanceof ASTNode) {
 			return visit((ASTNode) code);
 		}
-		throw new RuntimeException("ERROR: UNEXPECTED ARGUMENT FOR EVAL at line: " + node.getLine());
+		throw new RuntimeException("ERROR: UNEXPECTED ARGUMENT FOR EVAL at line: " + lineOf(node));
 	}
 
 	@Override
@@ -0,0 +1,85 @@
+package visitors;
+
+import ast.nodes.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//operators must have their operands, and compared values must be of one type
+public class OperandCheckPass extends SemanticPass {
+	private ASTNode root;
+
+	public OperandCheckPass() {
+		super("operand-check");
+	}
+
+	@Override
+	public void begin(ASTNode root) {
+		this.root = root;
+	}
+
+	//a shared node has no line, it is reported at the line of the closest node around its first place that has one
+	private int lineOf(ASTNode node) {
+		if (node.getLine() != ASTNode.NO_LINE) {
+			return node.getLine();
+		}
+		List<Integer> lines = new ArrayList<>(); //by depth, the line around the node last visited there
+		int[] found = {ASTNode.NO_LINE};
+		ASTWalker.preOrder(root, (visited, depth) -> {
+			int enclosing = depth == 0 ? ASTNode.NO_LINE : lines.get(depth - 1);
+			int line = visited.getLine() == ASTNode.NO_LINE ? enclosing : visited.getLine();
+			if (depth < lines.size()) {
+				lines.set(depth, line);
+			} else {
+				lines.add(line);
+			}
+			if (visited == node && found[0] == ASTNode.NO_LINE) {
+				found[0] = line;
+			}
+		});
+		return found[0];
+	}
+
+	@Override
+	public Void visitOperationNode(OperationNode operation) {
+		String operator = operation.getOperator();
+		List<ASTNode> operands = operation.getOperands();
+
+		if (operands.isEmpty()) {
+			throw new RuntimeException("ERROR: ARITHMETIC OPERATION " + operator + " HAS NO OPERANDS" + " at line: " +
+					lineOf(operation));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitLogicalOperationNode(LogicalOperationNode operation) {
+		String operator = operation.getOperator();
+		ASTNode leftOperand = operation.getLeftElement();
+		ASTNode rightOperand = operation.getRightElement();
+
+		if (leftOperand == null || rightOperand == null) {
+			throw new RuntimeException("ERROR: LOGICAL OPERATION " + operator + " HAS NO OPERANDS at line: " +
+					lineOf(operation));
+		}
+		return null;
+	}
+
+	@Override
+	public Void visitComparisonNode(ComparisonNode operation) {
+		String comparison = operation.getComparison();
+		ASTNode leftOperand = operation.getLeftElement();
+		ASTNode rightOperand = operation.getRightElement();
+
+		if (leftOperand == null || rightOperand == null) {
+			throw new RuntimeException("ERROR: COMPARISON " + comparison + " HAS NO OPERANDS at line: " + lineOf(operation));
+		}
+
+		if (leftOperand.getType() != rightOperand.getType()) {
+			throw new RuntimeException("ERROR: " + leftOperand.getType()
+					+ " CANNOT BE COMPARED WITH " + rightOperand.getType()
+					+ " at line " + lineOf(operation));
+		}
+		return null;
+	}
+}
@@ -2,12 +2,56 @@ package visitors;
 
 import ast.nodes.*;
 
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class PrettyVisitor implements ASTVisitor<String> {
+	private Map<ASTNode, String> printed; //during a walk or a whole print, the text of every part already printed
+
+	//starts a print of the tree under root: every node's text is built once, bottom up over an explicit stack,
+	//and kept until endPrint, so a line per node costs no more than writing it
+	public void beginPrint(ASTNode root) {
+		printed = new IdentityHashMap<>();
+		ASTWalker.postOrder(root, part -> printed.containsKey(part) ? List.of() : ASTWalker.parts(part),
+				(part, depth) -> {
+					if (!printed.containsKey(part)) {
+						printed.put(part, part.accept(this));
+					}
+				});
+	}
+
+	public void endPrint() {
+		printed = null;
+	}
+
+	//a node's text is built from its parts' texts. outside a print they are printed bottom up over an explicit
+	//stack first, so a deep tree does not overflow the java stack
+	public String text(ASTNode node) {
+		if (printed != null && printed.containsKey(node)) {
+			return printed.get(node);
+		}
+		Map<ASTNode, String> outer = printed;
+		printed = new IdentityHashMap<>();
+		try {
+			ASTWalker.postOrder(node, part -> printed.containsKey(part) ? List.of() : ASTWalker.parts(part),
+					(part, depth) -> {
+						printed.put(part, part.accept(this));
+						//their text is part of this one now, a part shared with another node is printed again
+						for (ASTNode used : ASTWalker.parts(part)) {
+							printed.remove(used);
+						}
+					});
+			return printed.get(node);
+		} finally {
+			printed = outer;
+		}
+	}
+
 	@Override
 	public String visitAssignmentNode(AssignmentNode node) {
-		return "AssignmentNode(variable=" + node.getVariable() + ", value=" + node.getValue().accept(this) + ")";
+		return "AssignmentNode(variable=" + node.getVariable() + ", value=" + text(node.getValue()) + ")";
 	}
 
 	@Override
@@ -22,8 +66,8 @@ public class PrettyVisitor implements ASTVisitor<String> {
 
 	@Override
 	public String visitComparisonNode(ComparisonNode node) {
-		String left = node.getLeftElement().accept(this);
-		String right = node.getRightElement().accept(this);
+		String left = text(node.getLeftElement());
+		String right = text(node.getRightElement());
 
 		return "ComparisonNode(comparison=" + node.getComparison() +
 				", leftElement=" + left + ", rightElement=" + right + ")";
@@ -31,21 +75,21 @@ public class PrettyVisitor implements ASTVisitor<String> {
 
 	@Override
 	public String visitConditionBranch(ConditionBranch branch) {
-		String condition = branch.getCondition().accept(this);
-		String action = branch.getAction().accept(this);
+		String condition = text(branch.getCondition());
+		String action = text(branch.getAction());
 
 		return "ConditionBranch(condition=" + condition + ", action=" + action + ")";
 	}
 
 	@Override
 	public String visitQuoteNode(QuoteNode node) {
-		return "QuoteNode(QuotedExpr:" + node.getQuotedExpr().accept(this) + ")";
+		return "QuoteNode(QuotedExpr:" + text(node.getQuotedExpr()) + ")";
 	}
 
 	@Override
 	public String visitLambdaCallNode(LambdaCallNode node) {
 		String params = node.getParameters().stream()
-				.map(element -> element.accept(this))
+				.map(this::text)
 				.collect(Collectors.joining(", "));
 		return "FunctionCallNode(functionName=" + node.getLambdaName() +
 				", parameters=[" + params + "])";
@@ -58,7 +102,7 @@ public class PrettyVisitor implements ASTVisitor<String> {
 				.collect(Collectors.joining(",\n"));
 
 		String defaultActionStr = node.getDefaultAction() != null
-				? node.getDefaultAction().accept(this)
+				? text(node.getDefaultAction())
 				: "null";
 
 		return "ConditionNode(branches=[" + branchesStr + "], defaultAction=[" + defaultActionStr + "])";
@@ -66,15 +110,15 @@ public class PrettyVisitor implements ASTVisitor<String> {
 
 	@Override
 	public String visitConsNode(ConsNode node) {
-		String head = node.getHead().accept(this);
-		String tail = node.getTail().accept(this);
+		String head = text(node.getHead());
+		String tail = text(node.getTail());
 		return "ConsNode(head=" + head + ", tail=" + tail + ")";
 	}
 
 	@Override
 	public String visitFunctionNode(FunctionNode node) {
 		String params = String.join(", ", node.getParameters());
-		String body = node.getBody().accept(this);
+		String body = text(node.getBody());
 		return "FunctionNode(functionName=" + node.getFunctionName() +
 				", parameters=[" + params + "], body=" + body + ")";
 	}
@@ -82,7 +126,7 @@ public class PrettyVisitor implements ASTVisitor<String> {
 	@Override
 	public String visitFunctionCallNode(FunctionCallNode node) {
 		String params = node.getParameters().stream()
-				.map(element -> element.accept(this))
+				.map(this::text)
 				.collect(Collectors.joining(", "));
 		return "FunctionCallNode(functionName=" + node.getFunctionName() +
 				", parameters=[" + params + "])";
@@ -90,20 +134,20 @@ public class PrettyVisitor implements ASTVisitor<String> {
 
 	@Override
 	public String visitHeadNode(HeadNode node) {
-		String head = node.getHead().accept(this);
+		String head = text(node.getHead());
 		return "HeadNode(list=" + head + ")";
 	}
 
 	@Override
 	public String visitLambdaNode(LambdaNode node) {
-		String body = node.getBody().accept(this);
+		String body = text(node.getBody());
 		return "LambdaNode(parameters=" + node.getParameters() + ", body=" + body + ")";
 	}
 
 	@Override
 	public String visitListNode(ListNode node) {
 		String elementsStr = node.getElements().stream()
-				.map(element -> element.accept(this))
+				.map(this::text)
 				.collect(Collectors.joining(","));
 		return "ListNode(elements=[" + elementsStr + "])";
 	}
@@ -115,8 +159,8 @@ public class PrettyVisitor implements ASTVisitor<String> {
 
 	@Override
 	public String visitLogicalOperationNode(LogicalOperationNode node) {
-		String leftElement = node.getLeftElement().accept(this);
-		String rightElement = node.getRightElement().accept(this);
+		String leftElement = text(node.getLeftElement());
+		String rightElement = text(node.getRightElement());
 
 		return "LogicalOperationNode(operator=" + node.getOperator() + ", leftElement=" +
 				leftElement + ", rightElement=" + rightElement + ")";
@@ -124,56 +168,56 @@ public class PrettyVisitor implements ASTVisitor<String> {
 
 	@Override
 	public String visitNotNode(NotNode node) {
-		String element = node.getElement().accept(this);
+		String element = text(node.getElement());
 		return "NotNode(element=" + element + ")";
 	}
 
 	@Override
 	public String visitOperationNode(OperationNode node) {
 		String operandsStr = node.getOperands().stream()
-				.map(operand -> operand.accept(this))
+				.map(this::text)
 				.collect(Collectors.joining(", "));
 		return "OperationNode(operator=" + node.getOperator() + ", operands=[" + operandsStr + "])";
 	}
 
 	@Override
 	public String visitPredicateNode(PredicateNode node) {
-		String element = node.getElement().accept(this);
+		String element = text(node.getElement());
 		return "PredicateNode(predicate=" + node.getPredicate() + ", element=" + element + ")";
 	}
 
 	@Override
 	public String visitProgNode(ProgNode node) {
 		String statementsStr = node.getStatements().stream()
-				.map(statement -> statement.accept(this))
+				.map(this::text)
 				.collect(Collectors.joining(", "));
 		return "ProgNode(statements=[" + statementsStr + "]" + ")";
 	}
 
 	@Override
 	public String visitReturnNode(ReturnNode node) {
-		String returnValue = node.getReturnValue().accept(this);
+		String returnValue = text(node.getReturnValue());
 		return "ReturnNode(returnValue=" + returnValue + ")";
 	}
 
 	@Override
 	public String visitTailNode(TailNode node) {
-		String tail = node.getTail().accept(this);
+		String tail = text(node.getTail());
 		return "TailNode(list=" + tail + ')';
 	}
 
 	@Override
 	public String visitWhileNode(WhileNode node) {
-		String condition = node.getCondition().accept(this);
+		String condition = text(node.getCondition());
 		String body = node.getBody().stream()
-				.map(statement -> statement.accept(this))
+				.map(this::text)
 				.collect(Collectors.joining(",\n"));
 		return "WhileNode(condition=" + condition + ", body=" + body + ")";
 	}
 
 	@Override
 	public String visitEvalNode(EvalNode node) {
-		String subnode = node.getNode().accept(this);
+		String subnode = text(node.getNode());
 		return "EvalNode(node=" + subnode + ")";
 	}
 
@@ -0,0 +1,161 @@
+package visitors;
+
+import ast.nodes.*;
+
+import java.util.List;
+
+//an analysis run by FSemanter. the semanter calls accept on every node of the tree in pre-order, so a
+//pass only overrides the visits it cares about and never walks children itself. passes that do not
+//depend on each other share one traversal; begin and end run before and after that traversal
+public abstract class SemanticPass implements ASTVisitor<Void> {
+	private final String name;
+
+	protected SemanticPass(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	//passes whose results this pass reads, they run in an earlier traversal
+	public List<Class<? extends SemanticPass>> dependsOn() {
+		return List.of();
+	}
+
+	public void begin(ASTNode root) {
+	}
+
+	public void end(ASTNode root) {
+	}
+
+	@Override
+	public Void visitAssignmentNode(AssignmentNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitAtomNode(AtomNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitBreakNode(BreakNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitComparisonNode(ComparisonNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitConditionNode(ConditionNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitConsNode(ConsNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionNode(FunctionNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitFunctionCallNode(FunctionCallNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitHeadNode(HeadNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitLambdaNode(LambdaNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitListNode(ListNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitLiteralNode(LiteralNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitLogicalOperationNode(LogicalOperationNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitNotNode(NotNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitOperationNode(OperationNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitPredicateNode(PredicateNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitProgNode(ProgNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitReturnNode(ReturnNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitTailNode(TailNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitWhileNode(WhileNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitConditionBranch(ConditionBranch branch) {
+		return null;
+	}
+
+	@Override
+	public Void visitQuoteNode(QuoteNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitLambdaCallNode(LambdaCallNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitEvalNode(EvalNode node) {
+		return null;
+	}
+
+	@Override
+	public Void visitNullNode(NullNode nullNode) {
+		return null;
+	}
+
+	@Override
+	public Void visitBoolNode(BooleanNode booleanNode) {
+		return null;
+	}
+}
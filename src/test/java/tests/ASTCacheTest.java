@@ -0,0 +1,135 @@
+package tests;
+
+import ast.FlatAST;
+import ast.nodes.ASTNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import steps.ASTCache;
+import steps.FSemanter;
+import steps.Flexer;
+import steps.Parser;
+import things.ASTPrinter;
+import things.InputFileReader;
+import visitors.PrettyVisitor;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ASTCacheTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void serializedTreesPrintLikeTheOriginal() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i));
+			Flexer lexer = new Flexer();
+			lexer.setInput(input);
+			Parser parser = new Parser();
+			parser.setTokens(lexer.tokenizeToBuffer());
+			ASTNode ast = parser.parse();
+			new FSemanter().analyze(ast);
+
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			FlatAST flat = FlatAST.of(ast);
+			flat.write(new DataOutputStream(bytes));
+			FlatAST read = FlatAST.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+			assertThat(print(read.toTree())).isEqualTo(print(ast));
+			for (int row = 0; row < flat.size(); row++) {
+				assertThat(read.valueType(row)).isEqualTo(flat.valueType(row)).isNotNull();
+			}
+		}
+	}
+
+	@Test
+	void unchangedSourceHitsTheCache() throws Exception {
+		Path source = directory.resolve("program.txt");
+		Files.writeString(source, "(func inc (x) (plus x 1))\n(setq a (inc 41))\n(cond (less a 50) (times a 2) (minus a 1))\n");
+
+		String analyzed = print(ASTCache.analyze(source));
+		Path cache = ASTCache.cachePath(source);
+		assertThat(cache).exists();
+
+		byte[] hash = ASTCache.contentHash(InputFileReader.mapInputFromFile(source.toString()));
+		assertThat(ASTCache.read(cache, hash)).isNotNull();
+		assertThat(print(ASTCache.analyze(source))).isEqualTo(analyzed);
+	}
+
+	@Test
+	void editedSourceMissesTheCache() throws Exception {
+		Path source = directory.resolve("program.txt");
+		Files.writeString(source, "(setq a 1)\n");
+		ASTCache.analyze(source);
+		byte[] before = ASTCache.contentHash(InputFileReader.mapInputFromFile(source.toString()));
+
+		Files.writeString(source, "(setq a 2)\n");
+		byte[] after = ASTCache.contentHash(InputFileReader.mapInputFromFile(source.toString()));
+		assertThat(ASTCache.read(ASTCache.cachePath(source), after)).isNull();
+
+		assertThat(print(ASTCache.analyze(source))).contains("2");
+		assertThat(ASTCache.read(ASTCache.cachePath(source), after)).isNotNull();
+		assertThat(ASTCache.read(ASTCache.cachePath(source), before)).isNull();
+	}
+
+	@Test
+	void corruptEntryIsIgnored() throws Exception {
+		Path source = directory.resolve("program.txt");
+		Files.writeString(source, "(setq a 1)\n");
+		String analyzed = print(ASTCache.analyze(source));
+
+		Path cache = ASTCache.cachePath(source);
+		byte[] entry = Files.readAllBytes(cache);
+		Files.write(cache, Arrays.copyOf(entry, entry.length / 2));
+
+		byte[] hash = ASTCache.contentHash(InputFileReader.mapInputFromFile(source.toString()));
+		assertThat(ASTCache.read(cache, hash)).isNull();
+		assertThat(print(ASTCache.analyze(source))).isEqualTo(analyzed);
+		assertThat(ASTCache.read(cache, hash)).isNotNull();
+	}
+
+	@Test
+	void entryWithBadRowsIsIgnored() throws Exception {
+		Path source = directory.resolve("program.txt");
+		Files.writeString(source, "(setq a 1)\n");
+		ASTNode ast = ASTCache.analyze(source);
+		String analyzed = print(ast);
+		int size = FlatAST.of(ast).size();
+
+		Path cache = ASTCache.cachePath(source);
+		byte[] entry = Files.readAllBytes(cache);
+		byte[] hash = ASTCache.contentHash(InputFileReader.mapInputFromFile(source.toString()));
+		//the int columns end the entry: first, next, payloads, lines and end lines
+		int next = entry.length - 16 * size;
+		int payloads = entry.length - 12 * size;
+		int last = 4 * (size - 1);
+		for (int[] corruption : new int[][]{{next + last, 0}, {next, 1}, {payloads + last, 1000}}) {
+			byte[] corrupt = entry.clone();
+			ByteBuffer.wrap(corrupt).putInt(corruption[0], corruption[1]);
+			Files.write(cache, corrupt);
+
+			assertThat(ASTCache.read(cache, hash)).isNull();
+			assertThat(print(ASTCache.analyze(source))).isEqualTo(analyzed);
+			assertThat(ASTCache.read(cache, hash)).isNotNull();
+		}
+	}
+
+	private static String print(ASTNode ast) throws IOException {
+		StringWriter writer = new StringWriter();
+		ASTPrinter.printAST(writer, ast, new PrettyVisitor(), 0);
+		return writer.toString().replaceAll("@[0-9a-f]+", "");
+	}
+}
@@ -0,0 +1,118 @@
+package tests;
+
+import ast.ASTNodeFactory;
+import ast.nodes.ASTNode;
+import ast.nodes.Opcode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.FSemanter;
+import steps.Flexer;
+import steps.Parser;
+import things.ASTPrinter;
+import things.InputFileReader;
+import visitors.ASTWalker;
+import visitors.PrettyVisitor;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ASTWalkerTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	@Test
+	void walksInTheOrderOfARecursiveWalk() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i));
+			ASTNode ast = parse(input);
+
+			List<String> pre = new ArrayList<>();
+			ASTWalker.preOrder(ast, (node, depth) -> pre.add(depth + " " + node.getClass().getSimpleName()));
+			List<String> post = new ArrayList<>();
+			ASTWalker.postOrder(ast, ASTWalker::parts, (node, depth) -> post.add(depth + " " + node.getClass().getSimpleName()));
+
+			List<String> expectedPre = new ArrayList<>();
+			preOrder(ast, 0, expectedPre);
+			List<String> expectedPost = new ArrayList<>();
+			postOrder(ast, 0, expectedPost);
+			assertThat(pre).as("test %d", i).isEqualTo(expectedPre);
+			assertThat(post).as("test %d", i).isEqualTo(expectedPost);
+		}
+	}
+
+	@Test
+	void deepTreesAreAnalyzedAndPrintedInConstantStack() throws Throwable {
+		ASTNodeFactory factory = new ASTNodeFactory();
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		AtomicReference<String> printed = new AtomicReference<>();
+		//a recursive walk overflows this stack a few hundred levels down
+		Thread thread = new Thread(null, () -> {
+			try {
+				ProgNode deep = program(factory, 100_000);
+				new FSemanter().analyze(deep);
+				assertThat(deep.getAnnotations().valueType(deep.getStatements().getFirst())).isEqualTo(ASTNode.ValueType.INT);
+
+				ProgNode shallower = program(factory, 1_000);
+				ASTPrinter.printAST(Writer.nullWriter(), shallower, new PrettyVisitor(), 0);
+				printed.set(shallower.accept(new PrettyVisitor()));
+			} catch (Throwable e) {
+				failure.set(e);
+			}
+		}, "deep", 128 * 1024);
+		thread.start();
+		thread.join();
+
+		if (failure.get() != null) {
+			throw failure.get();
+		}
+		assertThat(printed.get()).startsWith("ProgNode(statements=[OperationNode(operator=plus, operands=[LiteralNode(1), OperationNode(")
+				.endsWith("LiteralNode(1)" + "])".repeat(1_000) + "])");
+	}
+
+	@Test
+	void printsWhatItPrintedBefore() throws Exception {
+		StringWriter writer = new StringWriter();
+		ASTPrinter.printAST(writer, parse("(setq a (plus 1 (times 2 3)))\n(cond (less a 2) (plus a 1) (minus a 1))"), new PrettyVisitor(), 1);
+
+		assertThat(writer.toString().lines().toList().getFirst()).startsWith("  ProgNode(statements=[AssignmentNode(variable=a");
+		assertThat(writer.toString().lines().toList().get(1)).startsWith("    AssignmentNode(variable=a, value=OperationNode(operator=plus");
+	}
+
+	//(plus 1 (plus 1 ... 1))
+	private static ProgNode program(ASTNodeFactory factory, int depth) {
+		ASTNode expression = factory.createIntegerNode(1);
+		for (int i = 0; i < depth; i++) {
+			expression = factory.createOperationNode(Opcode.PLUS, List.of(factory.createIntegerNode(1), expression), false, 1);
+		}
+		return factory.createProgNode(List.of(expression), 1, 1);
+	}
+
+	private static void preOrder(ASTNode node, int depth, List<String> order) {
+		order.add(depth + " " + node.getClass().getSimpleName());
+		for (ASTNode child : node.getChildren()) {
+			preOrder(child, depth + 1, order);
+		}
+	}
+
+	private static void postOrder(ASTNode node, int depth, List<String> order) {
+		for (ASTNode part : ASTWalker.parts(node)) {
+			if (part != null) {
+				postOrder(part, depth + 1, order);
+			}
+		}
+		order.add(depth + " " + node.getClass().getSimpleName());
+	}
+
+	private static ASTNode parse(String source) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		Parser parser = new Parser();
+		parser.setTokens(lexer.tokenizeToBuffer());
+		return parser.parse();
+	}
+}
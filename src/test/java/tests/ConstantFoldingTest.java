@@ -0,0 +1,150 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.AssignmentNode;
+import ast.nodes.AtomNode;
+import ast.nodes.BooleanNode;
+import ast.nodes.ConditionNode;
+import ast.nodes.LiteralNode;
+import ast.nodes.NullNode;
+import ast.nodes.OperationNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.ConstantFoldingPass;
+import steps.Optimizer;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tests.Programs.analyze;
+import static tests.Programs.assertOptimizedPrintsTheSame;
+import static tests.Programs.smallInteger;
+import static tests.Programs.statements;
+
+class ConstantFoldingTest {
+
+	@Test
+	void foldsExpressionsOverConstants() throws Exception {
+		List<ASTNode> statements = optimize("(plus 1 (times 2 3))\n(divide 1 4)\n(less 1 2.5)\n"
+				+ "(and true (not false))\n(isint 3)\n(isnull null)\n(divide 1 0)");
+
+		assertThat(((LiteralNode) statements.get(0)).getIntegerValue()).isEqualTo(7);
+		assertThat(((LiteralNode) statements.get(1)).getRealValue()).isEqualTo(0.25);
+		assertThat(((BooleanNode) statements.get(2)).getValue()).isTrue();
+		assertThat(((BooleanNode) statements.get(3)).getValue()).isTrue();
+		assertThat(((BooleanNode) statements.get(4)).getValue()).isTrue();
+		assertThat(((BooleanNode) statements.get(5)).getValue()).isTrue();
+		//left for run time to report
+		assertThat(statements.get(6)).isInstanceOf(OperationNode.class);
+	}
+
+	@Test
+	void prunesConstantConditions() throws Exception {
+		List<ASTNode> statements = optimize("(cond (less 1 2) (plus 1 1) (plus 2 3))\n(cond (greater 1 2) 4 (plus 2 3))\n"
+				+ "(cond false 4)\n(cond true (prog () (plus 1 2)))");
+
+		assertThat(((LiteralNode) statements.get(0)).getIntegerValue()).isEqualTo(2);
+		assertThat(((LiteralNode) statements.get(1)).getIntegerValue()).isEqualTo(5);
+		assertThat(statements.get(2)).isInstanceOf(NullNode.class);
+		//a prog action prints its statements, on its own it would not
+		assertThat(statements.get(3)).isInstanceOf(ConditionNode.class);
+	}
+
+	@Test
+	void propagatesNumbersBoundOnce() throws Exception {
+		List<ASTNode> statements = optimize("(setq a 2)\n(setq b (times a 10))\n(setq c 1)\n(setq c 2)\n"
+				+ "(func f (d) (plus d b))\n(plus a b c)");
+
+		assertThat(((LiteralNode) ((AssignmentNode) statements.get(1)).getValue()).getIntegerValue()).isEqualTo(20);
+		OperationNode last = (OperationNode) statements.get(5);
+		assertThat(((LiteralNode) last.getOperands().get(0)).getIntegerValue()).isEqualTo(2);
+		assertThat(((LiteralNode) last.getOperands().get(1)).getIntegerValue()).isEqualTo(20);
+		//c is assigned twice
+		assertThat(last.getOperands().get(2)).isInstanceOf(AtomNode.class);
+	}
+
+	@Test
+	void parametersAreNeverPropagated() throws Exception {
+		List<ASTNode> statements = optimize("(setq x 1)\n(func f (x) (plus x 1))\n(plus x 1)");
+
+		assertThat(statements.get(2)).isInstanceOf(OperationNode.class);
+	}
+
+	@Test
+	void analyzedTreeIsLeftAsItWas() throws Exception {
+		ASTNode ast = analyze("(setq a 1)\n(plus a 2)");
+		ASTNode statement = ((ProgNode) ast).getStatements().get(1);
+
+		new Optimizer().optimize(ast);
+
+		assertThat(((ProgNode) ast).getStatements().get(1)).isSameAs(statement);
+	}
+
+	@Test
+	void optimizedProgramsPrintTheSame() throws Exception {
+		String[] fixed = {
+				"(setq counter 0)\n(while (less counter 10)\n(cond (equal counter 5) (setq counter (plus counter 5)) (setq counter (plus counter 1))))\ncounter",
+				"(setq n 3)\n(while true (cond (less n 1) (break)) (setq m n) (break))\n(while (less 1 2) (cond true (break)))\nn",
+				"(cond (less 2 1) 1 (plus 1 (plus 1 1)))\n(setq q (cond true (quote x)))\n(isnull (cond false 1))\n(islist (cond true (cons 1 ())))\n(setq t (less 1 2))\nt",
+				"(setq k 4)\n(func g (y) (times y k))\n(g 2)\n(prog () (plus k 1))\n(cond (isreal k) (prog () (plus k 2)))"
+		};
+		for (String source : fixed) {
+			assertOptimizedPrintsTheSame(source);
+		}
+
+		assertOptimizedPrintsTheSame(17, random -> {
+			//a and b are bound once and get propagated, c is rebound by the statements
+			StringBuilder source = new StringBuilder("(setq a " + smallInteger(random) + ")\n(setq b 3.5)\n(setq c 1)\n");
+			for (int s = 0; s < 8; s++) {
+				source.append(statement(random, 2)).append('\n');
+			}
+			return source.toString();
+		});
+	}
+
+	private static final String[] OPERATORS = {"plus", "minus", "times", "divide"};
+	private static final String[] COMPARISONS = {"equal", "nonequal", "less", "greatereq"};
+	private static final String[] LOGICAL = {"and", "or", "xor"};
+	private static final String[] PREDICATES = {"isint", "isreal", "isbool", "isnull"};
+	private static final String[] VARIABLES = {"a", "b", "c"};
+
+	private static String statement(Random random, int depth) {
+		return switch (random.nextInt(5)) {
+			case 0, 1 -> "(setq c " + number(random, depth) + ")";
+			case 2 -> "(cond " + bool(random, depth) + " " + number(random, depth) + (random.nextBoolean() ? " " + operation(random, depth) : "") + ")";
+			case 3 -> bool(random, depth);
+			default -> number(random, depth);
+		};
+	}
+
+	private static String number(Random random, int depth) {
+		int choice = depth <= 0 ? random.nextInt(2) : random.nextInt(4);
+		return switch (choice) {
+			case 0 -> random.nextBoolean() ? smallInteger(random) : Double.toString(random.nextInt(9) / 4.0);
+			case 1 -> VARIABLES[random.nextInt(VARIABLES.length)];
+			case 2 -> operation(random, depth);
+			default -> "(cond " + bool(random, depth - 1) + " " + number(random, depth - 1) + " " + operation(random, depth) + ")";
+		};
+	}
+
+	//a cond default has to be parenthesized
+	private static String operation(Random random, int depth) {
+		return "(" + OPERATORS[random.nextInt(OPERATORS.length)] + " " + number(random, depth - 1) + " " + number(random, depth - 1) + ")";
+	}
+
+	private static String bool(Random random, int depth) {
+		int choice = depth <= 0 ? random.nextInt(2) : random.nextInt(5);
+		return switch (choice) {
+			case 0 -> random.nextBoolean() ? "true" : "false";
+			case 1 -> "(" + PREDICATES[random.nextInt(PREDICATES.length)] + " " + number(random, 0) + ")";
+			case 2 -> "(" + COMPARISONS[random.nextInt(COMPARISONS.length)] + " " + number(random, depth - 1) + " " + number(random, depth - 1) + ")";
+			case 3 -> "(" + LOGICAL[random.nextInt(LOGICAL.length)] + " " + bool(random, depth - 1) + " " + bool(random, depth - 1) + ")";
+			default -> "(not " + bool(random, depth - 1) + ")";
+		};
+	}
+
+	private static List<ASTNode> optimize(String source) throws Exception {
+		return statements(new ConstantFoldingPass().transform(analyze(source)));
+	}
+}
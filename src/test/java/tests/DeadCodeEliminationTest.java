@@ -0,0 +1,92 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.FunctionNode;
+import ast.nodes.ProgNode;
+import ast.nodes.WhileNode;
+import org.junit.jupiter.api.Test;
+import steps.Optimizer;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tests.Programs.analyze;
+import static tests.Programs.assertOptimizedPrintsTheSame;
+import static tests.Programs.statements;
+
+class DeadCodeEliminationTest {
+
+	@Test
+	void dropsStatementsAfterBreak() throws Exception {
+		Optimizer optimizer = new Optimizer();
+		List<ASTNode> statements = optimize(optimizer, "(setq n 0)\n(while (less n 3) (setq n (plus n 1)) (break) (setq n 100) (plus n 2))\nn");
+
+		assertThat(((WhileNode) statements.get(1)).getBody()).hasSize(2);
+		assertThat(optimizer.getCounts().get("dead-code")).containsEntry("unreachable", 2);
+	}
+
+	@Test
+	void dropsUnusedDefinitions() throws Exception {
+		Optimizer optimizer = new Optimizer();
+		List<ASTNode> statements = optimize(optimizer, "(setq q (quote (plus 1 2)))\n(setq used 1.5)\n"
+				+ "(func never (x) (never x))\n(func callee () 1)\n(func caller () (callee))\n(func f (y) (divide used y))\n(f 2)");
+
+		assertThat(statements).hasSize(2);
+		assertThat(((FunctionNode) statements.get(0)).getFunctionName()).isEqualTo("f");
+		//used is propagated into f first, callee is only called from caller, which nothing calls
+		assertThat(optimizer.getCounts().get("dead-code")).containsEntry("uncalled func", 3).containsEntry("unused setq", 2);
+		assertThat(optimizer.report()).contains("constant-folding: 1 propagated\ndead-code: 2 unused setq, 3 uncalled func");
+	}
+
+	@Test
+	void propagatedConstantsLoseTheirSetq() throws Exception {
+		List<ASTNode> statements = optimize(new Optimizer(), "(setq a 2)\n(setq b (times a 10))\n(plus a b)");
+
+		assertThat(statements).hasSize(1);
+	}
+
+	@Test
+	void keepsWhatCanBeSeen() throws Exception {
+		//the last statement is the value of a function body, and evaluating a call can fail
+		List<ASTNode> statements = optimize(new Optimizer(), "(func f () (prog () (setq t 1)))\n(setq u (f))\n(f)");
+		ProgNode body = (ProgNode) ((FunctionNode) statements.get(0)).getBody();
+
+		assertThat(statements).hasSize(3);
+		assertThat(body.getStatements()).hasSize(1);
+	}
+
+	@Test
+	void optimizedProgramsPrintTheSame() throws Exception {
+		assertOptimizedPrintsTheSame(18, random -> {
+			StringBuilder source = new StringBuilder("(setq n 0)\n(setq m 0)\n(setq k 0)\n(func inc (x) (plus x 1))\n"
+					+ "(func nf (x) x)\n(func mf (x) (inc x))\n(func kf (x) (setq m x))\n");
+			for (int s = 0; s < 6; s++) {
+				source.append(statement(random, 2)).append('\n');
+			}
+			return source.toString();
+		});
+	}
+
+	//n only grows, so every loop ends
+	private static final String[] NAMES = {"n", "m", "k"};
+
+	private static String statement(Random random, int depth) {
+		String name = NAMES[random.nextInt(NAMES.length)];
+		return switch (depth <= 0 ? random.nextInt(4) : random.nextInt(8)) {
+			case 0 -> "(setq " + NAMES[1 + random.nextInt(NAMES.length - 1)] + " " + random.nextInt(5) + ")";
+			case 1 -> "(setq " + name + " (inc n))";
+			case 2 -> "(inc n)";
+			case 3 -> "(break)";
+			//bodies make no calls, so nothing recurses
+			case 4 -> "(func " + name + "f (x) " + statement(random, 0) + ")";
+			case 5 -> "(" + name + "f 1)";
+			case 6 -> "(prog () " + statement(random, depth - 1) + " " + statement(random, depth - 1) + ")";
+			default -> "(while (less n 3) (setq n (inc n)) " + statement(random, depth - 1) + " " + statement(random, depth - 1) + ")";
+		};
+	}
+
+	private static List<ASTNode> optimize(Optimizer optimizer, String source) throws Exception {
+		return statements(optimizer.optimize(analyze(source)));
+	}
+}
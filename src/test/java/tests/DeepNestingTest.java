@@ -0,0 +1,48 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.Flexer;
+import steps.Parser;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeepNestingTest {
+
+	private static final int DEPTH = 200_000;
+
+	@Test
+	void deeplyNestedOperationsParse() throws Exception {
+		ASTNode root = parse("(plus 1 ".repeat(DEPTH) + "1" + ")".repeat(DEPTH));
+
+		assertThat(depth(root)).isEqualTo(DEPTH + 1);
+	}
+
+	@Test
+	void deeplyNestedListsAndQuotesParse() throws Exception {
+		ASTNode lists = parse("(1 ".repeat(DEPTH) + ")".repeat(DEPTH));
+		ASTNode quotes = parse("'".repeat(DEPTH) + "1");
+
+		assertThat(depth(lists)).isEqualTo(DEPTH + 1);
+		assertThat(depth(quotes)).isEqualTo(DEPTH + 1);
+	}
+
+	private static ASTNode parse(String input) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		Parser parser = new Parser();
+		parser.setTokens(lexer.tokenizeToBuffer());
+		return ((ProgNode) parser.parse()).getStatements().getFirst();
+	}
+
+	//follows the last child down, iteratively
+	private static int depth(ASTNode node) {
+		int depth = 1;
+		while (!node.getChildren().isEmpty()) {
+			node = node.getChildren().getLast();
+			depth++;
+		}
+		return depth;
+	}
+}
@@ -0,0 +1,69 @@
+package tests;
+
+import ast.FlatAST;
+import ast.nodes.ASTNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.Flexer;
+import steps.Parser;
+import things.ASTPrinter;
+import things.InputFileReader;
+import visitors.PrettyVisitor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlatASTTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	@Test
+	void flatTreeRoundTrips() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			ASTNode ast = parse(InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i)));
+			ASTNode rebuilt = FlatAST.of(ast).toTree();
+
+			assertThat(print(rebuilt)).isEqualTo(print(ast));
+			assertThat(shape(rebuilt)).isEqualTo(shape(ast));
+		}
+	}
+
+	@Test
+	void subtreesAreContiguousRanges() throws Exception {
+		FlatAST flat = FlatAST.of(parse("(setq a 1)\n(plus a (times 2 3))\n(plus 2 3)"));
+
+		assertThat(flat.kind(0)).isEqualTo(FlatAST.Kind.PROG);
+		int second = flat.nextSibling(flat.firstChild(0));
+		assertThat(flat.kind(second)).isEqualTo(FlatAST.Kind.OPERATION);
+		assertThat(flat.end(second)).isEqualTo(second + 5);
+		assertThat(((ProgNode) flat.toTree()).getStatements().get(1).accept(new PrettyVisitor()))
+				.isEqualTo("OperationNode(operator=plus, operands=[AtomNode(a), OperationNode(operator=times, operands=[LiteralNode(2), LiteralNode(3)])])");
+		//operators are stored as opcodes, 1, 2 and 3 are pooled once each
+		assertThat(flat.constantCount()).isEqualTo(3);
+	}
+
+	private static ASTNode parse(String input) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		Parser parser = new Parser();
+		parser.setTokens(lexer.tokenizeToBuffer());
+		return parser.parse();
+	}
+
+	private static String print(ASTNode ast) throws IOException {
+		StringWriter writer = new StringWriter();
+		ASTPrinter.printAST(writer, ast, new PrettyVisitor(), 0);
+		return writer.toString().replaceAll("@[0-9a-f]+", "");
+	}
+
+	//classes, node types and children lists, which the printer above only partly shows
+	private static String shape(ASTNode node) {
+		StringBuilder shape = new StringBuilder(node.getClass().getSimpleName()).append(':').append(node.getType()).append('[');
+		for (ASTNode child : node.getChildren()) {
+			shape.append(shape(child)).append(' ');
+		}
+		return shape.append(']').toString();
+	}
+}
@@ -0,0 +1,137 @@
+package tests;
+
+import ast.ASTNodeFactory;
+import ast.nodes.ASTNode;
+import ast.nodes.AssignmentNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.FSemanter;
+import steps.Flexer;
+import steps.Parser;
+import things.InputFileReader;
+import things.SymbolTable;
+import visitors.InterpreterVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HashConsingTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	@Test
+	void identicalSubtreesAreShared() throws Exception {
+		List<ASTNode> statements = parse(new Parser(new ASTNodeFactory(true)),
+				"(setq x 1)\n(setq a (plus 2 (times 3 4))) (setq b (plus 2 (times 3 4))) (setq c (plus 5 (times 3 4)))\n"
+						+ "(setq d (quote (1 2 3))) (setq e (quote (1 2 3)))\n(setq f (plus 2 (times 3 4)))\n(setq g (plus x 1))\n"
+						+ "(setq h (plus x 1))\n(setq i x)\n(func sq (n) (times n n))\n(setq j (sq x))\n(setq k (sq x))");
+
+		assertThat(value(statements, 1)).isSameAs(value(statements, 2));
+		assertThat(value(statements, 3)).isNotSameAs(value(statements, 1));
+		assertThat(value(statements, 3).getChildren().get(1)).isSameAs(value(statements, 1).getChildren().get(1));
+		assertThat(value(statements, 4)).isSameAs(value(statements, 5));
+		//shared nodes carry no line, so the same expression on other lines is the same node
+		assertThat(value(statements, 6)).isSameAs(value(statements, 1));
+		assertThat(value(statements, 7)).isSameAs(value(statements, 8));
+		assertThat(value(statements, 7).getLine()).isEqualTo(ASTNode.NO_LINE);
+		//and so are names and calls
+		assertThat(value(statements, 9)).isSameAs(value(statements, 7).getChildren().getFirst());
+		assertThat(value(statements, 11)).isSameAs(value(statements, 12));
+		//statements themselves are never shared
+		assertThat(statements.get(1)).isNotSameAs(statements.get(2));
+	}
+
+	@Test
+	void expressionStatementsKeepTheirLine() throws Exception {
+		List<ASTNode> statements = parse(new Parser(new ASTNodeFactory(true)), "(setq x 1)\n(plus x 1)\n(setq y (plus x 1))\n(plus x 1)");
+
+		assertThat(statements.get(1).getLine()).isEqualTo(2);
+		assertThat(statements.get(3).getLine()).isEqualTo(4);
+		assertThat(statements.get(1).getChildren()).containsExactlyElementsOf(value(statements, 2).getChildren());
+	}
+
+	@Test
+	void errorsReportTheLineOfTheirOwnOccurrence() throws Exception {
+		String source = "(setq n 1)\n(cond (equal n 0) (head ()) (plus 1 1))\n(head ())";
+
+		assertThat(run(new Parser(new ASTNodeFactory(true)), source)).isEqualTo(run(new Parser(), source)).endsWith("at line: 3\n");
+	}
+
+	@Test
+	void errorsInSharedExpressionsReportTheirStatement() throws Exception {
+		String source = "(setq e ())\n(setq a\n(head e))";
+
+		assertThat(run(new Parser(), source)).endsWith("at line: 3\n");
+		assertThat(run(new Parser(new ASTNodeFactory(true)), source)).endsWith("at line: 2\n");
+	}
+
+	@Test
+	void defaultFactoryBuildsFreshNodes() throws Exception {
+		List<ASTNode> statements = parse(new Parser(), "(setq x 1)\n(setq a (plus x 1))\n(setq b (plus x 1))");
+
+		assertThat(value(statements, 1)).isNotSameAs(value(statements, 2));
+	}
+
+	@Test
+	void leavesAreFlyweights() throws Exception {
+		List<ASTNode> statements = parse(new Parser(), "(setq a true)\n(setq b true)\n(setq c null)\n(setq d null)\n"
+				+ "(setq e 7)\n(setq f 7)\n(setq g 2.5)\n(setq h 2.5)\n(setq i 100000)\n(setq j 100000)");
+
+		for (int i = 0; i < 8; i += 2) {
+			assertThat(value(statements, i)).isSameAs(value(statements, i + 1));
+		}
+		//large integers are only shared when hash-consing
+		assertThat(value(statements, 8)).isNotSameAs(value(statements, 9));
+	}
+
+	@Test
+	void onlyCommonRealsArePooled() {
+		ASTNodeFactory first = new ASTNodeFactory();
+		ASTNodeFactory second = new ASTNodeFactory();
+
+		assertThat(first.createRealNode(2.5)).isSameAs(second.createRealNode(2.5));
+		assertThat(first.createRealNode(-31.75)).isSameAs(second.createRealNode(-31.75));
+		//whatever a script happens to use stays with it
+		assertThat(first.createRealNode(2.7)).isNotSameAs(first.createRealNode(2.7));
+		assertThat(first.createRealNode(64.5)).isNotSameAs(first.createRealNode(64.5));
+		assertThat(first.createRealNode(-0.0)).isNotSameAs(first.createRealNode(0.0));
+	}
+
+	@Test
+	void sharedTreesRunLikeFreshOnes() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i));
+			assertThat(run(new Parser(new ASTNodeFactory(true)), input)).isEqualTo(run(new Parser(), input));
+		}
+	}
+
+	private static List<ASTNode> parse(Parser parser, String source) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		parser.setTokens(lexer.tokenizeToBuffer());
+		return ((ProgNode) parser.parse()).getStatements();
+	}
+
+	private static ASTNode value(List<ASTNode> statements, int index) {
+		return ((AssignmentNode) statements.get(index)).getValue();
+	}
+
+	private static String run(Parser parser, String source) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream previous = System.out;
+		System.setOut(new PrintStream(output));
+		try {
+			ProgNode program = new ProgNode(parse(parser, source), 0, 0);
+			new FSemanter().analyze(program);
+			new InterpreterVisitor(new SymbolTable(null), true).visitProgNode(program);
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+		} finally {
+			System.setOut(previous);
+		}
+		return output.toString().replaceAll("@[0-9a-f]+", "");
+	}
+}
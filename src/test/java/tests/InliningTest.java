@@ -0,0 +1,119 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.AssignmentNode;
+import ast.nodes.AtomNode;
+import ast.nodes.FunctionCallNode;
+import ast.nodes.OperationNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.InliningPass;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tests.Programs.analyze;
+import static tests.Programs.assertOptimizedPrintsTheSame;
+import static tests.Programs.run;
+import static tests.Programs.smallInteger;
+import static tests.Programs.statements;
+
+class InliningTest {
+
+	private static final String FUNCTIONS = "(func sq (x) (times x x))\n(func avg (a b) (divide (plus a b) 2))\n"
+			+ "(func big (a b) (prog () (setq t (plus a b)) (setq u (times t t)) (minus u a)))\n"
+			+ "(func sign (x) (cond (less x 0) -1 (plus 0 1)))\n(func twice (x) (sq (sq x)))\n(func inc (x) (plus x 1))\n"
+			+ "(func fact (n) (cond (less n 2) 1 (times n (fact (minus n 1)))))\n(func risky (x) (divide 10 x))\n";
+
+	@Test
+	void inlinesSmallFunctions() throws Exception {
+		InliningPass inlining = new InliningPass();
+		List<ASTNode> statements = inline(inlining, "(func sq (x) (times x x))\n(setq k 3)\n(sq k)\n(plus (sq 2) 1)");
+
+		OperationNode square = (OperationNode) statements.get(2);
+		assertThat(square.getOperator()).isEqualTo("times");
+		assertThat(((AtomNode) square.getOperands().get(0)).getValue()).isEqualTo("k");
+		assertThat(((OperationNode) statements.get(3)).getOperands().get(0)).isInstanceOf(OperationNode.class);
+		assertThat(inlining.getCounts()).containsEntry("inlined", 2);
+	}
+
+	@Test
+	void callersAreInlinedOnceTheirCalleesAre() throws Exception {
+		List<ASTNode> statements = inline(new InliningPass(), "(func inc (x) (plus x 1))\n(func twice (x) (inc (inc x)))\n(twice 3)");
+
+		assertThat(statements.get(2)).isInstanceOf(OperationNode.class);
+	}
+
+	@Test
+	void leavesRecursiveAndFailingFunctionsAlone() throws Exception {
+		List<ASTNode> statements = inline(new InliningPass(), FUNCTIONS + "(fact 5)\n(risky 2)\n(sq (head (cons 1 ())))");
+
+		assertThat(statements.subList(8, 11)).allMatch(statement -> statement instanceof FunctionCallNode);
+	}
+
+	@Test
+	void leavesLargeFunctionsAlone() throws Exception {
+		//times x x is three nodes
+		assertThat(inline(new InliningPass(2), FUNCTIONS + "(sq 2)").get(8)).isInstanceOf(FunctionCallNode.class);
+		assertThat(inline(new InliningPass(3), FUNCTIONS + "(sq 2)").get(8)).isInstanceOf(OperationNode.class);
+	}
+
+	@Test
+	void localsAndArgumentsGetFreshNames() throws Exception {
+		String source = "(setq t 100)\n(func f (x) (prog () (setq t (times x 2)) (plus t 1)))\n(prog () (f (plus t 1)) t)\n(prog () (f 3))";
+		List<ASTNode> statements = inline(new InliningPass(), source);
+
+		ProgNode inlined = (ProgNode) ((ProgNode) statements.get(2)).getStatements().get(0);
+		String local = ((AssignmentNode) inlined.getStatements().get(0)).getVariable();
+		assertThat(local).startsWith("t$").isNotEqualTo("t");
+		assertThat(run(source, true)).isEqualTo(run(source, false)).isEqualTo("100\n7\n");
+	}
+
+	@Test
+	void progBodiesAreNotInlinedWhereTheyWouldPrint() throws Exception {
+		List<ASTNode> statements = inline(new InliningPass(), "(func big (a b) (prog () (setq t (plus a b)) (minus t a)))\n(big 1 2)\n(prog () (big 1 2))");
+
+		assertThat(statements.get(1)).isInstanceOf(FunctionCallNode.class);
+		assertThat(((ProgNode) statements.get(2)).getStatements().get(0)).isInstanceOf(ProgNode.class);
+	}
+
+	@Test
+	void optimizedProgramsPrintTheSame() throws Exception {
+		assertOptimizedPrintsTheSame(19, random -> {
+			StringBuilder source = new StringBuilder(FUNCTIONS).append("(setq v 2)\n(setq w 3.5)\n(setq i 0)\n");
+			for (int s = 0; s < 6; s++) {
+				String expression = number(random, 3);
+				source.append(switch (random.nextInt(5)) {
+					case 0 -> "(setq v " + expression + ")";
+					case 1 -> "(prog () " + expression + ")";
+					case 2 -> "(func g (y) (plus y " + expression + "))\n(g " + number(random, 1) + ")";
+					case 3 -> "(while (less i 3) (setq i (plus i 1)) (setq w " + expression + "))\nw";
+					default -> expression;
+				}).append('\n');
+			}
+			return source.toString();
+		});
+	}
+
+	private static final String[] CALLS = {"sq", "avg", "big", "sign", "twice", "inc", "risky"};
+
+	private static String number(Random random, int depth) {
+		return switch (depth <= 0 ? random.nextInt(2) : random.nextInt(6)) {
+			case 0 -> random.nextBoolean() ? smallInteger(random) : "1.5";
+			case 1 -> random.nextBoolean() ? "v" : "w";
+			case 2 -> "(plus " + number(random, depth - 1) + " " + number(random, depth - 1) + ")";
+			//recursion stays shallow
+			case 3 -> "(fact " + random.nextInt(6) + ")";
+			default -> {
+				String call = CALLS[random.nextInt(CALLS.length)];
+				boolean binary = call.equals("avg") || call.equals("big");
+				yield "(" + call + " " + number(random, depth - 1) + (binary ? " " + number(random, depth - 1) : "") + ")";
+			}
+		};
+	}
+
+	private static List<ASTNode> inline(InliningPass inlining, String source) throws Exception {
+		return statements(inlining.transform(analyze(source)));
+	}
+}
@@ -0,0 +1,110 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.AssignmentNode;
+import ast.nodes.FunctionNode;
+import ast.nodes.ProgNode;
+import ast.nodes.WhileNode;
+import org.junit.jupiter.api.Test;
+import steps.LoopInvariantCodeMotionPass;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tests.Programs.analyze;
+import static tests.Programs.assertOptimizedPrintsTheSame;
+import static tests.Programs.run;
+import static tests.Programs.smallInteger;
+import static tests.Programs.statements;
+
+class LoopInvariantCodeMotionTest {
+
+	private static final String PREFIX = "(setq n 10)\n(setq n (plus n 5))\n(setq i 0)\n(setq s 0)\n";
+
+	@Test
+	void hoistsInvariantArithmetic() throws Exception {
+		LoopInvariantCodeMotionPass pass = new LoopInvariantCodeMotionPass();
+		String source = PREFIX + "(while (less i (times n 2)) (setq s (plus s (divide n 2))) (setq i (plus i 1)))\ns";
+		List<ASTNode> statements = hoist(pass, source);
+
+		assertThat(statements).hasSize(8);
+		assertThat(((AssignmentNode) statements.get(4)).getVariable()).startsWith("$loop");
+		assertThat(((AssignmentNode) statements.get(5)).getVariable()).startsWith("$loop");
+		assertThat(statements.get(6)).isInstanceOf(WhileNode.class);
+		assertThat(pass.getCounts()).containsEntry("hoisted", 2);
+		assertThat(run(source, true)).isEqualTo(run(source, false)).isEqualTo("225\n");
+	}
+
+	@Test
+	void leavesWhatMightFailOrChange() throws Exception {
+		LoopInvariantCodeMotionPass pass = new LoopInvariantCodeMotionPass();
+		hoist(pass, PREFIX + "(setq z 2)\n(func f (m) (while (less m 3) (setq z (plus z m))))\n"
+				+ "(while (less i 3) (setq i (plus i 1)) (setq s (divide 1 n)) (setq n (plus n 1)))\n"
+				+ "(while (less i 6) (setq i (plus i 1)) (setq s (plus z 1)) (eval (quote (setq z 0))))\n"
+				+ "(cond (less s 1) (setq q 1))\n(while (less i 9) (setq i (plus i 1)) (setq s (plus q 1)))");
+
+		//f's m is never changed in its loop, but z is; n is set by its loop; eval could set z; q is only set by a cond
+		assertThat(pass.getCounts()).isEmpty();
+	}
+
+	@Test
+	void parametersAndInnerLoopsAreHoistedFrom() throws Exception {
+		LoopInvariantCodeMotionPass pass = new LoopInvariantCodeMotionPass();
+		List<ASTNode> statements = hoist(pass, PREFIX + "(func f (m) (prog () (setq t 0) (while (less t 3) (setq t (plus t (times m 0.5))))))\n(f 2)\n"
+				+ "(while (less i 2) (setq i (plus i 1)) (setq s 0) (while (less s 5) (setq s (plus s (minus n 14)))))");
+
+		ProgNode body = (ProgNode) ((FunctionNode) statements.get(4)).getBody();
+		assertThat(((ProgNode) body.getStatements().getFirst()).getStatements()).hasSize(3);
+		//the inner loop's (minus n 14) is set in the outer loop first, then read from before it
+		assertThat(statements.get(6)).isInstanceOf(AssignmentNode.class);
+		assertThat(pass.getCounts()).containsEntry("hoisted", 3);
+	}
+
+	@Test
+	void optimizedProgramsPrintTheSame() throws Exception {
+		assertOptimizedPrintsTheSame(22, random -> {
+			StringBuilder source = new StringBuilder(PREFIX).append("(setq j 0)\n(setq r 2.5)\n(setq r (times r 2))\n(setq b true)\n");
+			for (int s = 0; s < 5; s++) {
+				source.append(statement(random, 2)).append('\n');
+			}
+			return source.append("s\nn\n").toString();
+		});
+	}
+
+	private static final String[] NAMES = {"n", "s", "r", "b"};
+	private static final String[] NUMBERS = {"n", "s", "r"};
+
+	//a loop only counts its own counter up, so every loop ends
+	private static final String[] COUNTERS = {"j", "i"};
+
+	private static String statement(Random random, int depth) {
+		String name = NAMES[random.nextInt(NAMES.length)];
+		return switch (depth <= 0 ? random.nextInt(3) : random.nextInt(6)) {
+			case 0 -> "(setq " + name + " " + number(random, 2) + ")";
+			case 1 -> "(setq s (plus s " + number(random, 2) + "))";
+			case 2 -> number(random, 2);
+			case 3 -> "(prog () " + statement(random, depth - 1) + " " + statement(random, depth - 1) + ")";
+			case 4 -> "(cond (less s " + number(random, 1) + ") " + statement(random, depth - 1) + ")";
+			default -> {
+				String counter = COUNTERS[depth - 1];
+				yield "(prog () (setq " + counter + " 0) (while (less " + counter + " " + (random.nextInt(4) + 1) + ") (setq " + counter
+						+ " (plus " + counter + " 1)) " + statement(random, depth - 1) + " " + statement(random, depth - 1) + "))";
+			}
+		};
+	}
+
+	private static String number(Random random, int depth) {
+		return switch (depth <= 0 ? random.nextInt(3) : random.nextInt(6)) {
+			case 0 -> smallInteger(random);
+			case 1 -> "1.5";
+			case 2 -> NUMBERS[random.nextInt(NUMBERS.length)];
+			case 3 -> "(divide " + number(random, depth - 1) + " " + number(random, depth - 1) + ")";
+			default -> "(" + (random.nextBoolean() ? "plus " : "times ") + number(random, depth - 1) + " " + number(random, depth - 1) + ")";
+		};
+	}
+
+	private static List<ASTNode> hoist(LoopInvariantCodeMotionPass pass, String source) throws Exception {
+		return statements(pass.transform(analyze(source)));
+	}
+}
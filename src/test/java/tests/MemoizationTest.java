@@ -0,0 +1,134 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.FunctionNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.PurityPass;
+import things.MemoCache;
+import things.SymbolTable;
+import visitors.InterpreterVisitor;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tests.Programs.analyze;
+import static tests.Programs.assertOptimizedPrintsTheSame;
+import static tests.Programs.run;
+
+class MemoizationTest {
+
+	@Test
+	void marksOnlyFunctionsThatDependOnTheirArguments() throws Exception {
+		Map<String, Boolean> pure = purity("(setq k 2)\n(setq t 0)\n(func fib (n) (cond (less n 2) n (plus (fib (minus n 1)) (fib (minus n 2)))))\n"
+				+ "(func local (x) (prog () (setq t (times x 2)) (plus t 1)))\n(func free (x) (plus x k))\n"
+				+ "(func early (x) (prog () (setq y t) (setq t x) y))\n(func caller (x) (free x))\n"
+				+ "(func quoted (x) (eval (quote (plus 1 2))))\n(func loop (x) (prog () (while (less x 3) (setq s x) (setq x (plus x 1))) s))\n"
+				+ "(func twice (x) (plus (fib x) (local x)))");
+
+		assertThat(pure).containsExactlyInAnyOrderEntriesOf(Map.of("fib", true, "local", true, "free", false, "early", false,
+				"caller", false, "quoted", false, "loop", false, "twice", true));
+	}
+
+	@Test
+	void calleesMustBeTheSameWhereverTheCallRuns() throws Exception {
+		//g is defined twice, h is a parameter name somewhere, so neither call resolves to one func
+		Map<String, Boolean> pure = purity("(func g (x) x)\n(func f (x) (g x))\n(func g (x) (plus x 1))\n"
+				+ "(func h (x) x)\n(func u (x) (h x))\n(func v (h) h)");
+
+		assertThat(pure.get("f")).isFalse();
+		assertThat(pure.get("u")).isFalse();
+		assertThat(pure.get("v")).isTrue();
+	}
+
+	@Test
+	void repeatedCallsHitTheCache() throws Exception {
+		InterpreterVisitor interpreter = new InterpreterVisitor(new SymbolTable(null), true);
+		String output = run("(func fib (n) (cond (less n 2) n (plus (fib (minus n 1)) (fib (minus n 2)))))\n(fib 30)\n(fib 30)", interpreter, true);
+
+		assertThat(output).isEqualTo("832040\n832040\n");
+		assertThat(interpreter.getMemo().getMisses()).isEqualTo(31);
+		assertThat(interpreter.getMemo().getHits()).isEqualTo(29);
+	}
+
+	@Test
+	void failedCallsAreNotCached() throws Exception {
+		InterpreterVisitor interpreter = new InterpreterVisitor(new SymbolTable(null), true);
+		String output = run("(func inv (x) (divide 1 x))\n(inv 0)", interpreter, true);
+
+		assertThat(output).startsWith("ERROR: IN FUNCTION CALL ERROR: DIVISION BY ZERO");
+		assertThat(interpreter.getMemo().size()).isZero();
+	}
+
+	@Test
+	void evictsTheLeastRecentlyUsedResult() {
+		MemoCache memo = new MemoCache(2);
+		FunctionNode f = new FunctionNode("f", List.of("x"), null, 1, 1);
+		memo.get(f, List.of(1), () -> 1);
+		memo.get(f, List.of(2), () -> 2);
+		memo.get(f, List.of(1), () -> 0);
+		memo.get(f, List.of(3), () -> 3);
+
+		assertThat(memo.get(f, List.of(1), () -> 0)).isEqualTo(1);
+		assertThat(memo.get(f, List.of(2), () -> 0)).isEqualTo(0);
+		assertThat(memo.getHits()).isEqualTo(2);
+		assertThat(memo.getMisses()).isEqualTo(4);
+		assertThat(memo.size()).isEqualTo(2);
+	}
+
+	@Test
+	void argumentsAreKeyedByWhatTheBodySees() throws Exception {
+		//1 and 1.0 differ for isint, so they are different calls
+		String source = "(func kind (x) (isint x))\n(kind 1)\n(kind 1.0)\n(kind (plus 0.5 0.5))";
+
+		assertThat(run(source, true)).isEqualTo("true\nfalse\ntrue\n");
+	}
+
+	@Test
+	void memoizedProgramsPrintTheSame() throws Exception {
+		assertOptimizedPrintsTheSame(20, random -> {
+			StringBuilder source = new StringBuilder("(setq k 1)\n(func sq (x) (times x x))\n(func addk (x) (plus x k))\n"
+					+ "(func fib (n) (cond (less n 2) n (plus (fib (minus n 1)) (fib (minus n 2)))))\n(func g (x) x)\n(func h (x) (addk x))\n");
+			for (int s = 0; s < 8; s++) {
+				source.append(switch (random.nextInt(6)) {
+					case 0 -> "(setq k " + number(random, 1) + ")";
+					//no calls in the body, g would call itself
+					case 1 -> "(func g (x) (plus (sq x) " + number(random, 0) + "))\n(g " + number(random, 1) + ")";
+					case 2 -> "(func h (x) (prog () (setq k (plus x 1)) (addk k)))\n(h " + number(random, 1) + ")";
+					default -> number(random, 2);
+				}).append('\n');
+			}
+			return source.toString();
+		});
+	}
+
+	private static final String[] CALLS = {"sq", "addk", "fib", "g", "h"};
+
+	private static String number(Random random, int depth) {
+		return switch (depth <= 0 ? random.nextInt(2) : random.nextInt(4)) {
+			case 0 -> Integer.toString(random.nextInt(9) - 2);
+			case 1 -> random.nextBoolean() ? "k" : "2.5";
+			case 2 -> "(minus " + number(random, depth - 1) + " " + number(random, depth - 1) + ")";
+			default -> {
+				String call = CALLS[random.nextInt(CALLS.length)];
+				//fib stays small
+				yield "(" + call + " " + (call.equals("fib") ? Integer.toString(random.nextInt(12)) : number(random, depth - 1)) + ")";
+			}
+		};
+	}
+
+	private static Map<String, Boolean> purity(String source) throws Exception {
+		ASTNode ast = analyze(source);
+		new PurityPass().transform(ast);
+		Map<String, Boolean> pure = new LinkedHashMap<>();
+		for (ASTNode statement : ((ProgNode) ast).getStatements()) {
+			if (statement instanceof FunctionNode function) {
+				pure.merge(function.getFunctionName(), function.isPure(), Boolean::logicalAnd);
+			}
+		}
+		return pure;
+	}
+}
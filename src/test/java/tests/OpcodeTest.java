@@ -0,0 +1,65 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.ComparisonNode;
+import ast.nodes.LogicalOperationNode;
+import ast.nodes.Opcode;
+import ast.nodes.OperationNode;
+import ast.nodes.PredicateNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static tests.Programs.parse;
+import static tests.Programs.run;
+
+class OpcodeTest {
+
+	@Test
+	void theParserResolvesEveryOperatorOnce() throws Exception {
+		ASTNode ast = parse("(setq a 1)\n(plus a 2)\n(minus a)\n(times a 3)\n(divide a 4)\n(equal a 1)\n(nonequal a 1)\n(less a 1)\n"
+				+ "(lesseq a 1)\n(greater a 1)\n(greatereq a 1)\n(and true false)\n(or true false)\n(xor true false)\n"
+				+ "(isint a)\n(isreal a)\n(isbool a)\n(isnull a)\n(isatom a)\n(islist a)");
+
+		List<String> resolved = new ArrayList<>();
+		for (ASTNode statement : ((ProgNode) ast).getStatements()) {
+			switch (statement) {
+				case OperationNode n -> resolved.add(n.getOpcode() + "=" + n.getOperator());
+				case ComparisonNode n -> resolved.add(n.getOpcode() + "=" + n.getComparison());
+				case LogicalOperationNode n -> resolved.add(n.getOpcode() + "=" + n.getOperator());
+				case PredicateNode n -> resolved.add(n.getOpcode() + "=" + n.getPredicate());
+				default -> {
+				}
+			}
+		}
+
+		assertThat(resolved).hasSize(19).allSatisfy(pair -> assertThat(pair.split("=")[0]).isEqualTo(pair.split("=")[1]));
+		assertThat(((OperationNode) ((ProgNode) ast).getStatements().get(1)).getOpcode()).isSameAs(Opcode.PLUS);
+		assertThat(((PredicateNode) ((ProgNode) ast).getStatements().get(19)).getOpcode()).isSameAs(Opcode.ISLIST);
+	}
+
+	@Test
+	void namesOutsideTheLanguageAreRejected() {
+		for (Opcode opcode : Opcode.values()) {
+			assertThat(Opcode.of(opcode.text())).isSameAs(opcode);
+			assertThat(Opcode.of(opcode.ordinal())).isSameAs(opcode);
+		}
+		assertThatThrownBy(() -> Opcode.of("PLUS")).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> Opcode.of("modulo")).hasMessage("ERROR: UNKNOWN OPERATOR modulo");
+	}
+
+	@Test
+	void everyOpcodeEvaluatesAsItsNameDid() throws Exception {
+		String output = run("(setq a 7)\n(setq b 2.5)\n(plus a 2)\n(minus a)\n(minus a b)\n(times a b)\n(divide a 2)\n(divide a 0)", false);
+
+		//a lone minus operand is returned as it is
+		assertThat(output).isEqualTo("9\n7\n4.5\n17.5\n3.5\nERROR: DIVISION BY ZERO\n");
+		assertThat(run("(setq a 7)\n(setq b 2.5)\n(equal a 7)\n(nonequal a 7)\n(less b a)\n(lesseq a a)\n(greater b a)\n(greatereq a b)\n"
+				+ "(and true false)\n(or true false)\n(xor true true)\n(isint a)\n(isreal b)\n(isbool a)\n(isnull null)\n(islist (cons 1 (2)))", false))
+				.isEqualTo("true\nfalse\ntrue\ntrue\nfalse\ntrue\nfalse\ntrue\nfalse\ntrue\ntrue\nfalse\ntrue\ntrue\n");
+	}
+}
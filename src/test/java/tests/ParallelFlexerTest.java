@@ -0,0 +1,67 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import steps.Flexer;
+import steps.ParallelFlexer;
+import steps.Token;
+import steps.TokenBuffer;
+import things.InputFileReader;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ParallelFlexerTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	//tiny chunks so that every top-level form is lexed on its own
+	private final ParallelFlexer parallel = new ParallelFlexer(new ForkJoinPool(4), 1);
+
+	@Test
+	void parallelTokensMatchTokenize() throws Exception {
+		String input = readAllTests();
+
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		List<Token> expected = lexer.tokenize();
+		List<Token> actual = parallel.tokenize(input);
+
+		assertThat(actual).map(Token::toString).containsExactlyElementsOf(expected.stream().map(Token::toString).toList());
+		assertThat(actual).map(Token::getLine).containsExactlyElementsOf(expected.stream().map(Token::getLine).toList());
+	}
+
+	@Test
+	void parallelBufferMatchesTokenize() throws Exception {
+		String input = readAllTests();
+
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		List<Token> expected = lexer.tokenize();
+		TokenBuffer buffer = parallel.tokenizeToBuffer(input);
+
+		assertThat(buffer.size()).isEqualTo(expected.size());
+		for (int i = 0; i < buffer.size(); i++) {
+			assertThat(buffer.get(i).toString()).isEqualTo(expected.get(i).toString());
+			assertThat(buffer.line(i)).isEqualTo(expected.get(i).getLine());
+		}
+	}
+
+	@Test
+	void firstErrorInSourceOrderIsReported() {
+		String input = "(setq a 1)\n(setq b #)\n(setq c 2)\n(setq d $)";
+
+		assertThatThrownBy(() -> parallel.tokenize(input))
+				.hasMessage("ERROR: UNKNOWN CHARACTER: #at line: 2");
+	}
+
+	private static String readAllTests() throws Exception {
+		StringBuilder input = new StringBuilder();
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			input.append(InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i))).append('\n');
+		}
+		return input.toString();
+	}
+}
@@ -0,0 +1,82 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import org.junit.jupiter.api.Test;
+import steps.Flexer;
+import steps.ParallelParser;
+import steps.Parser;
+import steps.TokenBuffer;
+import things.ASTPrinter;
+import things.InputFileReader;
+import visitors.PrettyVisitor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ParallelParserTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@Test
+	void parallelParseMatchesParse() throws Exception {
+		StringBuilder all = new StringBuilder();
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i));
+			assertSameResult(input);
+			all.append(input).append('\n');
+		}
+		assertSameResult(all.toString());
+	}
+
+	@Test
+	void callsOnlySeeEarlierDefinitions() throws Exception {
+		assertSameResult("(setq a 1)\n(f a)\n(func f (x) (plus x 1))\n(f a)");
+		assertSameResult("(func f (x) x)\n(setq g (lambda (y) y))\n(g 2)\n(func f (x y) x)\n(f 1)");
+		assertSameResult("(prog (b) (setq b 1))\n(plus b 1)");
+		assertSameResult("(cond true (setq c 1))\n(plus c 1)");
+	}
+
+	@Test
+	void definitionsStayInParserScope() throws Exception {
+		Parser parser = new Parser();
+		new ParallelParser(parser, pool, 1).parse(tokenize("(setq a 1)\n(func f (x) x)"));
+
+		parser.setTokens(tokenize("(f a)"));
+		assertThat(print(parser.parse())).contains("FunctionCallNode(functionName=f");
+	}
+
+	private void assertSameResult(String input) throws Exception {
+		assertThat(result(new ParallelParser(new Parser(), pool, 1), input)).isEqualTo(result(null, input));
+	}
+
+	private static String result(ParallelParser parallel, String input) throws Exception {
+		try {
+			TokenBuffer tokens = tokenize(input);
+			if (parallel != null) {
+				return print(parallel.parse(tokens));
+			}
+			Parser parser = new Parser();
+			parser.setTokens(tokens);
+			return print(parser.parse());
+		} catch (Exception e) {
+			return e.getMessage();
+		}
+	}
+
+	private static TokenBuffer tokenize(String input) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		return lexer.tokenizeToBuffer();
+	}
+
+	private static String print(ASTNode ast) throws IOException {
+		StringWriter writer = new StringWriter();
+		ASTPrinter.printAST(writer, ast, new PrettyVisitor(), 0);
+		return writer.toString().replaceAll("@[0-9a-f]+", "");
+	}
+}
@@ -0,0 +1,117 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.AtomNode;
+import org.junit.jupiter.api.Test;
+import steps.FSemanter;
+import steps.Flexer;
+import steps.Parser;
+import things.InputFileReader;
+import visitors.OperandCheckPass;
+import visitors.SemanticPass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PassManagerTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	private final List<String> events = new ArrayList<>();
+
+	@Test
+	void independentPassesShareOneTraversal() throws Exception {
+		FSemanter semanter = new FSemanter();
+		semanter.register(new AtomCounter("first")).register(new AtomCounter("second"));
+
+		semanter.analyze(parse("(setq a 1)\n(setq b (plus a a))"));
+
+		assertThat(semanter.getTraversals()).isEqualTo(1);
+		assertThat(events).containsExactly("first begin", "second begin", "first atoms 2", "second atoms 2");
+	}
+
+	@Test
+	void dependentPassRunsAfterItsDependency() throws Exception {
+		FSemanter semanter = new FSemanter();
+		semanter.register(new AtomCounter("counter")).register(new AfterCounter());
+
+		semanter.analyze(parse("(setq a 1)\n(plus a 2)"));
+
+		assertThat(semanter.getTraversals()).isEqualTo(2);
+		assertThat(events).containsExactly("counter begin", "counter atoms 1", "after begin");
+	}
+
+	@Test
+	void timingCoversEveryPass() throws Exception {
+		FSemanter semanter = new FSemanter();
+		semanter.register(new AtomCounter("counter"));
+		semanter.setTiming(true);
+
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i));
+			semanter.analyze(parse(input));
+			assertThat(semanter.getTimings()).containsOnlyKeys("operand-check", "type-inference", "counter");
+			assertThat(semanter.getTimings().values()).allMatch(nanos -> nanos >= 0);
+		}
+	}
+
+	@Test
+	void checksKeepTheirMessages() throws Exception {
+		ASTNode ast = parse("(setq a 1)\n(less a true)");
+		assertThatThrownBy(() -> new FSemanter().analyze(ast))
+				.isExactlyInstanceOf(Exception.class)
+				.hasMessage("ERROR: ATOM CANNOT BE COMPARED WITH BOOL at line 2");
+	}
+
+	private static ASTNode parse(String source) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		Parser parser = new Parser();
+		parser.setTokens(lexer.tokenizeToBuffer());
+		return parser.parse();
+	}
+
+	private class AtomCounter extends SemanticPass {
+		int atoms;
+
+		AtomCounter(String name) {
+			super(name);
+		}
+
+		@Override
+		public void begin(ASTNode root) {
+			atoms = 0;
+			events.add(getName() + " begin");
+		}
+
+		@Override
+		public Void visitAtomNode(AtomNode node) {
+			atoms++;
+			return null;
+		}
+
+		@Override
+		public void end(ASTNode root) {
+			events.add(getName() + " atoms " + atoms);
+		}
+	}
+
+	private class AfterCounter extends SemanticPass {
+		AfterCounter() {
+			super("after");
+		}
+
+		@Override
+		public List<Class<? extends SemanticPass>> dependsOn() {
+			return List.of(AtomCounter.class, OperandCheckPass.class);
+		}
+
+		@Override
+		public void begin(ASTNode root) {
+			events.add("after begin");
+		}
+	}
+}
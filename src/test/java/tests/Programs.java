@@ -0,0 +1,84 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.ProgNode;
+import steps.FSemanter;
+import steps.Flexer;
+import steps.Optimizer;
+import steps.Parser;
+import things.SymbolTable;
+import visitors.InterpreterVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//parsing, running and random programs for the tests of the optimizer and the interpreter
+final class Programs {
+	static final int RANDOM_PROGRAMS = 300;
+
+	private Programs() {
+	}
+
+	static ASTNode parse(String source) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		Parser parser = new Parser();
+		parser.setTokens(lexer.tokenizeToBuffer());
+		return parser.parse();
+	}
+
+	static ASTNode analyze(String source) throws Exception {
+		ASTNode ast = parse(source);
+		new FSemanter().analyze(ast);
+		return ast;
+	}
+
+	static List<ASTNode> statements(ASTNode ast) {
+		return ((ProgNode) ast).getStatements();
+	}
+
+	//what the program prints, errors included, with object hashes left out
+	static String run(String source, boolean optimized) {
+		return run(source, new InterpreterVisitor(new SymbolTable(null), true), optimized);
+	}
+
+	static String run(String source, InterpreterVisitor interpreter, boolean optimized) {
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream previous = System.out;
+		System.setOut(new PrintStream(output));
+		try {
+			ASTNode ast = analyze(source);
+			if (optimized) {
+				ast = new Optimizer().optimize(ast);
+			}
+			interpreter.visitProgNode((ProgNode) ast);
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+		} finally {
+			System.setOut(previous);
+		}
+		return output.toString().replaceAll("@[0-9a-f]+", "");
+	}
+
+	static void assertOptimizedPrintsTheSame(String source) {
+		assertThat(run(source, true)).as(source).isEqualTo(run(source, false));
+	}
+
+	//random programs from the given seed, each must print the same with and without the optimizer
+	static void assertOptimizedPrintsTheSame(long seed, Function<Random, String> program) {
+		Random random = new Random(seed);
+		for (int i = 0; i < RANDOM_PROGRAMS; i++) {
+			assertOptimizedPrintsTheSame(program.apply(random));
+		}
+	}
+
+	//an integer literal from -2 to 4
+	static String smallInteger(Random random) {
+		return Integer.toString(random.nextInt(7) - 2);
+	}
+}
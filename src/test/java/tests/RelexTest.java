@@ -0,0 +1,76 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import steps.Flexer;
+import steps.TokenBuffer;
+import things.InputFileReader;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RelexTest {
+
+	private static final int TOTAL_TESTS = 17;
+	private static final int EDITS_PER_TEST = 200;
+	private static final String ALPHABET = "abcxyz019.-+ ()'\n";
+
+	@Test
+	void relexMatchesFullTokenize() throws Exception {
+		Random random = new Random(42);
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String source = InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i));
+			Flexer lexer = new Flexer();
+			lexer.setInput(source);
+			TokenBuffer tokens = lexer.tokenizeToBuffer();
+
+			for (int j = 0; j < EDITS_PER_TEST; j++) {
+				int offset = random.nextInt(source.length() + 1);
+				int removed = random.nextInt(Math.min(4, source.length() - offset) + 1);
+				String inserted = randomText(random, random.nextInt(4));
+				String edited = source.substring(0, offset) + inserted + source.substring(offset + removed);
+
+				String expectedError = null;
+				TokenBuffer expected = null;
+				try {
+					lexer.setInput(edited);
+					expected = lexer.tokenizeToBuffer();
+				} catch (Exception e) {
+					expectedError = e.getMessage();
+				}
+
+				TokenBuffer actual;
+				try {
+					actual = lexer.relex(tokens, offset, removed, inserted);
+				} catch (Exception e) {
+					assertThat(e.getMessage()).isEqualTo(expectedError);
+					continue;
+				}
+				assertThat(expectedError).isNull();
+				assertSameTokens(actual, expected);
+
+				//keep editing the valid result so edits pile up
+				source = edited;
+				tokens = actual;
+			}
+		}
+	}
+
+	private static void assertSameTokens(TokenBuffer actual, TokenBuffer expected) {
+		assertThat(actual.size()).isEqualTo(expected.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertThat(actual.get(i).toString()).isEqualTo(expected.get(i).toString());
+			assertThat(actual.start(i)).isEqualTo(expected.start(i));
+			assertThat(actual.length(i)).isEqualTo(expected.length(i));
+			assertThat(actual.line(i)).isEqualTo(expected.line(i));
+		}
+	}
+
+	private static String randomText(Random random, int length) {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < length; i++) {
+			text.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+		}
+		return text.toString();
+	}
+}
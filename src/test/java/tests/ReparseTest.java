@@ -0,0 +1,134 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.AssignmentNode;
+import ast.nodes.FunctionCallNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.Flexer;
+import steps.Parser;
+import steps.TokenBuffer;
+import things.ASTPrinter;
+import things.InputFileReader;
+import visitors.PrettyVisitor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ReparseTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	@Test
+	void reparseMatchesParse() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", i));
+			Flexer lexer = new Flexer();
+			lexer.setInput(input);
+			TokenBuffer tokens = lexer.tokenizeToBuffer();
+
+			Parser fresh = new Parser();
+			fresh.setTokens(tokens);
+			String expected = print(fresh.parse());
+
+			Parser incremental = new Parser();
+			assertThat(print(incremental.reparse(tokens))).isEqualTo(expected);
+			assertThat(print(incremental.reparse(tokens))).isEqualTo(expected);
+		}
+	}
+
+	@Test
+	void unchangedFormsAreReused() throws Exception {
+		String source = "(func inc (x) (plus x 1))\n(setq a 5)\n(inc a)\n(setq b (times a 2))";
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		TokenBuffer tokens = lexer.tokenizeToBuffer();
+
+		Parser parser = new Parser();
+		List<ASTNode> before = ((ProgNode) parser.reparse(tokens)).getStatements();
+
+		int offset = source.indexOf("5");
+		TokenBuffer edited = lexer.relex(tokens, offset, 1, "7");
+		List<ASTNode> after = ((ProgNode) parser.reparse(edited)).getStatements();
+
+		assertThat(after.get(0)).isSameAs(before.get(0));
+		assertThat(after.get(1)).isNotSameAs(before.get(1));
+		assertThat(after.get(2)).isSameAs(before.get(2));
+		assertThat(after.get(3)).isSameAs(before.get(3));
+	}
+
+	@Test
+	void movedFormsAreShiftedInsteadOfParsed() throws Exception {
+		String source = "(func inc (x) (plus x 1))\n(setq a 5000)\n(inc a)\n(inc a)";
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		TokenBuffer tokens = lexer.tokenizeToBuffer();
+
+		Parser parser = new Parser();
+		List<ASTNode> before = ((ProgNode) parser.reparse(tokens)).getStatements();
+		assertThat(before.get(3)).isNotSameAs(before.get(2));
+
+		TokenBuffer edited = lexer.relex(tokens, 0, 0, "\n\n");
+		ASTNode reparsed = parser.reparse(edited);
+		List<ASTNode> after = ((ProgNode) reparsed).getStatements();
+
+		Parser fresh = new Parser();
+		fresh.setTokens(edited);
+		assertThat(print(reparsed)).isEqualTo(print(fresh.parse()));
+		assertThat(after.get(1)).isNotSameAs(before.get(1));
+		//the literal has no line, the shifted copy still holds the one parsed before
+		assertThat(((AssignmentNode) after.get(1)).getValue()).isSameAs(((AssignmentNode) before.get(1)).getValue());
+		assertThat(((FunctionCallNode) after.get(2)).getLine()).isEqualTo(5);
+		assertThat(after.get(3)).isNotSameAs(after.get(2));
+	}
+
+	@Test
+	void reusedFormsMatchTheirTokens() throws Exception {
+		String source = "(setq a +3)\n(setq b 2)";
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		TokenBuffer tokens = lexer.tokenizeToBuffer();
+
+		Parser parser = new Parser();
+		List<ASTNode> before = ((ProgNode) parser.reparse(tokens)).getStatements();
+
+		//same kinds, lengths and values, only the text differs
+		TokenBuffer edited = lexer.relex(tokens, source.indexOf("+3"), 2, "03");
+		List<ASTNode> after = ((ProgNode) parser.reparse(edited)).getStatements();
+
+		assertThat(after.get(0)).isNotSameAs(before.get(0));
+		assertThat(print(after.get(0))).contains("03");
+		assertThat(after.get(1)).isSameAs(before.get(1));
+	}
+
+	@Test
+	void editedFunctionInvalidatesCalls() throws Exception {
+		String source = "(func inc (x) (plus x 1))\n(inc 1)";
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		TokenBuffer tokens = lexer.tokenizeToBuffer();
+
+		Parser parser = new Parser();
+		parser.reparse(tokens);
+
+		TokenBuffer moreParameters = lexer.relex(tokens, source.indexOf("(x)"), 3, "(x y)");
+		assertThatThrownBy(() -> parser.reparse(moreParameters))
+				.hasMessageContaining("INCORRECT NUMBER OF PARAMETERS FOR FUNCTION inc");
+
+		TokenBuffer removed = lexer.relex(tokens, 0, source.indexOf('\n'), "");
+		assertThatThrownBy(() -> parser.reparse(removed))
+				.hasMessageContaining("UNDEFINED VARIABLE inc");
+
+		assertThat(print(parser.reparse(tokens))).contains("FunctionCallNode");
+	}
+
+	private static String print(ASTNode ast) throws IOException {
+		StringWriter writer = new StringWriter();
+		ASTPrinter.printAST(writer, ast, new PrettyVisitor(), 0);
+		return writer.toString().replaceAll("@[0-9a-f]+", "");
+	}
+}
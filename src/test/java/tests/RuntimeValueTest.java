@@ -0,0 +1,41 @@
+package tests;
+
+import org.junit.jupiter.api.Test;
+import things.SymbolTable;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static tests.Programs.run;
+
+class RuntimeValueTest {
+
+	@Test
+	void scopesHoldValuesAsTheyAre() throws Exception {
+		SymbolTable global = new SymbolTable(null);
+		List<Object> list = List.of(1, 2.5, true);
+		global.define("l", list);
+		global.define("n", null);
+
+		SymbolTable local = new SymbolTable(global);
+		assertThat(local.lookup("l")).isSameAs(list);
+		assertThat(local.lookup("n")).isNull();
+		assertThat(local.isDefined("n")).isTrue();
+	}
+
+	@Test
+	void variablesReadBackWhatWasSet() throws Exception {
+		String output = run("(setq i 7)\n(setq g 9007199254740993)\n(setq r 2.5)\n(setq b true)\n(setq l (cons 1 (2 3)))\n(setq q (quote (plus 1 2)))\n"
+				+ "(setq c q)\n(isint i)\n(isreal r)\n(isbool b)\n(and b true)\n(head l)\n(tail l)\n(eval c)\ni\ng", false);
+
+		assertThat(output).isEqualTo("true\ntrue\ntrue\ntrue\n1\n[2, 3]\n3\n7\n9007199254740993\n");
+	}
+
+	@Test
+	void argumentsReadBackWhatWasPassed() throws Exception {
+		String output = run("(func pick (b l) (cond b (head l) (tail l)))\n(setq t true)\n(pick t (cons 4 (5)))\n(pick (not t) (cons 4 (5)))\n"
+				+ "(func sq (x) (times x x))\n(sq 1.5)\n(sq 3)\n(sq 3)", false);
+
+		assertThat(output).isEqualTo("4\n[5]\n2.25\n9\n9\n");
+	}
+}
@@ -0,0 +1,111 @@
+package tests;
+
+import ast.ASTNodeFactory;
+import ast.nodes.ASTNode;
+import ast.nodes.FunctionCallNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.FSemanter;
+import steps.Flexer;
+import steps.Parser;
+import steps.TailCallPass;
+import visitors.ASTTransformer;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static tests.Programs.assertOptimizedPrintsTheSame;
+import static tests.Programs.run;
+
+class TailCallTest {
+
+	@Test
+	void marksCallsInTailPosition() throws Exception {
+		List<String> tails = tails("(func f (n) (cond (less n 1) 0 (f (minus n 1))))\n(func g (n) (plus 1 (g n)))\n"
+				+ "(func h (n) (prog () (h 1) (return (h (minus n 2)))))\n(func s (n) (prog () (setq y (s 2)) (s 2)))\n(f 3)");
+
+		//with hash-consing the (s 2) that ends the body is a statement, a node of its own, and only it is marked
+		assertThat(tails).containsExactly("f:true", "g:false", "h:false", "h:true", "s:false", "s:true", "f:false");
+	}
+
+	@Test
+	void deepTailRecursionRunsInConstantStack() throws Exception {
+		String source = "(func count (n acc) (cond (less n 1) acc (count (minus n 1) (plus acc 1))))\n(count 200000 0)";
+
+		assertThat(run(source, true)).isEqualTo("200000\n");
+	}
+
+	@Test
+	void impureTailRecursionKeepsOneFrame() throws Exception {
+		//step is set twice, so count reads a global and is not pure
+		String source = "(setq step 2)\n(setq step 1)\n"
+				+ "(func count (n acc) (cond (equal n 0) acc (count (minus n step) (plus acc 1))))\n(count 150000 0)";
+
+		assertThat(assertTimeoutPreemptively(Duration.ofSeconds(10), () -> run(source, true))).isEqualTo("150000\n");
+	}
+
+	@Test
+	void calleesStillSeeTheCallersFrame() throws Exception {
+		String source = "(setq acc 0)\n(func g (x) (plus x acc))\n(func f (acc) (g 1))\n(f 41)";
+
+		assertThat(run(source, true)).isEqualTo(run(source, false)).isEqualTo("42\n");
+	}
+
+	@Test
+	void failuresAreWrappedOncePerCall() throws Exception {
+		String source = "(func down (n) (cond (less n 1) (divide 1 0) (down (minus n 1))))\n(func start (n) (down n))\n(start 3)";
+
+		assertThat(run(source, true)).isEqualTo(run(source, false))
+				.startsWith("ERROR: IN FUNCTION CALL ERROR: IN FUNCTION CALL ERROR: IN FUNCTION CALL ERROR: IN FUNCTION CALL");
+	}
+
+	@Test
+	void optimizedProgramsPrintTheSame() throws Exception {
+		assertOptimizedPrintsTheSame(21, random -> {
+			StringBuilder source = new StringBuilder("(setq acc 0)\n(setq k 1)\n(func g (x) (plus x k))\n"
+					+ "(func count (n acc) (cond (less n 1) acc (count (minus n 1) (plus acc 1))))\n");
+			for (int s = 0; s < 6; s++) {
+				source.append(switch (random.nextInt(6)) {
+					case 0 -> "(setq k " + (random.nextInt(5) - 2) + ")";
+					case 1 -> "(func g (x) " + body(random) + ")";
+					case 2 -> "(func f (k) (cond (less k 1) (g k) (f (minus k 1))))\n(f " + random.nextInt(30) + ")";
+					case 3 -> "(func h (n) (prog () (setq k n) (return (g n))))\n(h " + random.nextInt(5) + ")";
+					default -> "(count " + random.nextInt(30) + " " + (random.nextInt(5) - 2) + ")";
+				}).append('\n');
+			}
+			return source.toString();
+		});
+	}
+
+	private static String body(Random random) {
+		return switch (random.nextInt(4)) {
+			case 0 -> "(divide x k)";
+			case 1 -> "(count x k)";
+			case 2 -> "(cond (less x 0) (divide 1 0) (times x acc))";
+			default -> "(plus x (count k acc))";
+		};
+	}
+
+	private static List<String> tails(String source) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		Parser parser = new Parser(new ASTNodeFactory(true));
+		parser.setTokens(lexer.tokenizeToBuffer());
+		ASTNode ast = parser.parse();
+		new FSemanter().analyze(ast);
+		ProgNode marked = (ProgNode) new TailCallPass().transform(ast);
+		List<String> tails = new ArrayList<>();
+		new ASTTransformer("calls") {
+			@Override
+			public ASTNode visitFunctionCallNode(FunctionCallNode node) {
+				tails.add(node.getFunctionName() + ":" + marked.getAnnotations().isTail(node));
+				return super.visitFunctionCallNode(node);
+			}
+		}.transform(ast);
+		return tails;
+	}
+}
@@ -0,0 +1,318 @@
+package tests;
+
+import ast.ASTNodeFactory;
+import ast.FlatAST;
+import ast.nodes.ASTNode;
+import org.junit.jupiter.api.Test;
+import steps.Flexer;
+import steps.FlexerTokenStream;
+import steps.Parser;
+import steps.Token;
+import steps.TokenBuffer;
+import steps.TokenStream;
+import steps.TokenType;
+import things.ASTPrinter;
+import things.InputFileReader;
+import visitors.PrettyVisitor;
+
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenStreamTest {
+
+	private static final int TOTAL_TESTS = 17;
+
+	@Test
+	void streamedTokensMatchTokenize() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			assertStreamedTokensMatch(i);
+		}
+	}
+
+	@Test
+	void parserConsumesStream() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			assertStreamParseMatches(i);
+		}
+	}
+
+	@Test
+	void bufferedTokensMatchTokenize() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = readTest(i);
+
+			Flexer lexer = new Flexer();
+			lexer.setInput(input);
+			List<Token> expected = lexer.tokenize();
+
+			lexer.setInput(input);
+			TokenBuffer buffer = lexer.tokenizeToBuffer();
+
+			assertThat(buffer.size()).isEqualTo(expected.size());
+			for (int j = 0; j < buffer.size(); j++) {
+				assertThat(buffer.get(j).toString()).isEqualTo(expected.get(j).toString());
+				assertThat(buffer.line(j)).isEqualTo(expected.get(j).getLine());
+			}
+		}
+	}
+
+	@Test
+	void mappedBytesMatchTokenize() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String path = String.format("src/main/resources/inputs/test%d.txt", i);
+
+			Flexer lexer = new Flexer();
+			lexer.setInput(InputFileReader.readInputFromFile(path));
+			List<Token> expected = lexer.tokenize();
+
+			lexer.setInput(InputFileReader.mapInputFromFile(path));
+			List<Token> actual = lexer.tokenize();
+
+			assertThat(actual).map(Token::toString).containsExactlyElementsOf(expected.stream().map(Token::toString).toList());
+		}
+	}
+
+	@Test
+	void parserWalksBuffer() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = readTest(i);
+
+			Flexer lexer = new Flexer();
+			lexer.setInput(input);
+			Parser listParser = new Parser();
+			listParser.setTokens(lexer.tokenize());
+
+			lexer.setInput(input);
+			Parser bufferParser = new Parser();
+			bufferParser.setTokens(lexer.tokenizeToBuffer());
+
+			assertThat(print(bufferParser.parse())).isEqualTo(print(listParser.parse()));
+		}
+	}
+
+	@Test
+	void numbersAreDecodedWhileScanning() throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput("42 -7 +3 3.14 -0.5 12345678901");
+		List<Token> tokens = lexer.tokenize();
+
+		assertThat(tokens.get(0).getInteger()).isEqualTo(42);
+		assertThat(tokens.get(1).getInteger()).isEqualTo(-7);
+		assertThat(tokens.get(2).getInteger()).isEqualTo(3);
+		assertThat(tokens.get(3).getReal()).isEqualTo(3.14);
+		assertThat(tokens.get(4).getReal()).isEqualTo(-0.5);
+		assertThat(tokens.get(5).getInteger()).isEqualTo(12345678901L);
+	}
+
+	@Test
+	void numbersPrintAsWritten() throws Exception {
+		String input = "(setq a (cons 0.0001 (100000000.0 007 -0 +3 1.50 -0.0 42 2.5)))";
+		List<String> written = List.of("0.0001", "100000000.0", "007", "-0", "+3", "1.50", "-0.0", "42", "2.5");
+
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		assertThat(numbers(lexer.tokenize())).containsExactlyElementsOf(written);
+
+		lexer.setInput(input);
+		TokenBuffer buffer = lexer.tokenizeToBuffer();
+		List<Token> buffered = new ArrayList<>();
+		for (int j = 0; j < buffer.size(); j++) {
+			buffered.add(buffer.get(j));
+		}
+		assertThat(numbers(buffered)).containsExactlyElementsOf(written);
+
+		FlexerTokenStream stream = new FlexerTokenStream(new TrickleReader(new StringReader(input)));
+		List<Token> streamed = new ArrayList<>();
+		while (stream.hasNext()) {
+			streamed.add(stream.next());
+		}
+		assertThat(numbers(streamed)).containsExactlyElementsOf(written);
+
+		for (Parser parser : List.of(new Parser(), new Parser(new ASTNodeFactory(true)))) {
+			lexer.setInput(input);
+			parser.setTokens(lexer.tokenizeToBuffer());
+			ASTNode ast = parser.parse();
+			String printed = print(ast);
+			for (String number : written) {
+				assertThat(printed).contains("LiteralNode(" + number + ")");
+			}
+			assertThat(printed).doesNotContain("E-4", "E8");
+			assertThat(print(FlatAST.of(ast).toTree())).isEqualTo(printed);
+		}
+	}
+
+	@Test
+	void longRealsAreLexedAndLongIntegersRejected() throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput("12345678901234567890.5 -98765432109876543210.25");
+		List<Token> tokens = lexer.tokenize();
+		assertThat(tokens.get(0).getType()).isEqualTo(TokenType.REAL);
+		assertThat(tokens.get(0).getReal()).isEqualTo(12345678901234567890.5);
+		assertThat(tokens.get(1).getReal()).isEqualTo(-98765432109876543210.25);
+
+		lexer.setInput("(setq a 12345678901234567890)");
+		assertThatThrownBy(lexer::tokenize).hasMessageContaining("INTEGER OUT OF RANGE");
+	}
+
+	@Test
+	void parserBuildsNoTokensFromABuffer() throws Exception {
+		for (int i = 1; i <= TOTAL_TESTS; i++) {
+			String input = readTest(i);
+
+			Flexer lexer = new Flexer();
+			lexer.setInput(input);
+			CountingStream counting = new CountingStream(lexer.tokenizeToBuffer().stream());
+			Parser parser = new Parser();
+			parser.setTokens(counting);
+			String printed = print(parser.parse());
+
+			lexer.setInput(input);
+			Parser listParser = new Parser();
+			listParser.setTokens(lexer.tokenize());
+			assertThat(printed).isEqualTo(print(listParser.parse()));
+			assertThat(counting.built).isZero();
+		}
+	}
+
+	private static List<String> numbers(List<Token> tokens) {
+		return tokens.stream().filter(t -> t.getType() == TokenType.INTEGER || t.getType() == TokenType.REAL).map(Token::getValue).toList();
+	}
+
+	private void assertStreamedTokensMatch(int testNumber) throws Exception {
+		String input = readTest(testNumber);
+
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		List<Token> expected = lexer.tokenize();
+
+		FlexerTokenStream stream = new FlexerTokenStream(new TrickleReader(new StringReader(input)));
+		List<Token> actual = new ArrayList<>();
+		while (stream.hasNext()) {
+			actual.add(stream.next());
+		}
+
+		assertThat(actual).map(Token::toString).containsExactlyElementsOf(expected.stream().map(Token::toString).toList());
+		assertThat(actual).map(Token::getLine).containsExactlyElementsOf(expected.stream().map(Token::getLine).toList());
+	}
+
+	private void assertStreamParseMatches(int testNumber) throws Exception {
+		String input = readTest(testNumber);
+
+		Flexer lexer = new Flexer();
+		lexer.setInput(input);
+		Parser listParser = new Parser();
+		listParser.setTokens(lexer.tokenize());
+
+		Parser streamParser = new Parser();
+		streamParser.setTokens(new FlexerTokenStream(new TrickleReader(new StringReader(input))));
+
+		assertThat(print(streamParser.parse())).isEqualTo(print(listParser.parse()));
+	}
+
+	private static String readTest(int testNumber) throws IOException {
+		return InputFileReader.readInputFromFile(String.format("src/main/resources/inputs/test%d.txt", testNumber));
+	}
+
+	private static String print(ASTNode ast) throws IOException {
+		StringWriter writer = new StringWriter();
+		ASTPrinter.printAST(writer, ast, new PrettyVisitor(), 0);
+		return writer.toString().replaceAll("@[0-9a-f]+", "");
+	}
+
+	//forwards to a buffer cursor and counts the Tokens asked for
+	private static class CountingStream implements TokenStream {
+		private final TokenStream cursor;
+		int built;
+
+		CountingStream(TokenStream cursor) {
+			this.cursor = cursor;
+		}
+
+		@Override
+		public Token peek() {
+			built++;
+			return cursor.peek();
+		}
+
+		@Override
+		public boolean hasNext() {
+			return cursor.hasNext();
+		}
+
+		@Override
+		public Token next() {
+			built++;
+			return cursor.next();
+		}
+
+		@Override
+		public TokenType type() {
+			return cursor.type();
+		}
+
+		@Override
+		public int line() {
+			return cursor.line();
+		}
+
+		@Override
+		public int symbol() {
+			return cursor.symbol();
+		}
+
+		@Override
+		public String text() {
+			return cursor.text();
+		}
+
+		@Override
+		public long integer() {
+			return cursor.integer();
+		}
+
+		@Override
+		public double real() {
+			return cursor.real();
+		}
+
+		@Override
+		public CharSequence source() {
+			return cursor.source();
+		}
+
+		@Override
+		public int start() {
+			return cursor.start();
+		}
+
+		@Override
+		public int end() {
+			return cursor.end();
+		}
+
+		@Override
+		public void skip() {
+			cursor.skip();
+		}
+	}
+
+	//hands out at most three characters per read so tokens straddle chunk boundaries
+	private static class TrickleReader extends FilterReader {
+		TrickleReader(Reader in) {
+			super(in);
+		}
+
+		@Override
+		public int read(char[] buffer, int offset, int length) throws IOException {
+			return super.read(buffer, offset, Math.min(length, 3));
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package tests;
+
+import ast.nodes.ASTNode;
+import ast.nodes.ASTNode.ValueType;
+import ast.nodes.AssignmentNode;
+import ast.nodes.ProgNode;
+import org.junit.jupiter.api.Test;
+import steps.FSemanter;
+import steps.Flexer;
+import steps.Parser;
+import things.SymbolTable;
+import visitors.InterpreterVisitor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TypeInferenceTest {
+
+	private static final long[] EDGES = {0, 1, -1, 7, 1L << 31, (1L << 53) - 1, 1L << 53, (1L << 53) + 1, -(1L << 53), 1L << 62,
+			(1L << 62) + 12345, -(1L << 62), Integer.MAX_VALUE, Integer.MIN_VALUE, 94906267};
+	private static final String[] OPERATORS = {"plus", "minus", "times", "divide"};
+	private static final String[] COMPARISONS = {"equal", "nonequal", "less", "lesseq", "greater", "greatereq"};
+
+	@Test
+	void typesFlowThroughBindingsAndCalls() throws Exception {
+		ProgNode program = analyze("(setq a 1)\n(setq b 2.5)\n(func sq (x) (times x x))\n(setq c (sq a))\n"
+				+ "(setq d (plus a 1))\n(setq e (plus a b))\n(setq f (divide a 2))\n(setq g (less a 3))\n(setq h (cons 1 (2 3)))\n(setq i b)");
+
+		assertThat(value(program, 3)).isEqualTo(ValueType.INT);
+		assertThat(value(program, 4)).isEqualTo(ValueType.INT);
+		assertThat(value(program, 5)).isEqualTo(ValueType.UNKNOWN);
+		assertThat(value(program, 6)).isEqualTo(ValueType.UNKNOWN);
+		assertThat(value(program, 7)).isEqualTo(ValueType.BOOL);
+		assertThat(value(program, 8)).isEqualTo(ValueType.LIST);
+		assertThat(value(program, 9)).isEqualTo(ValueType.REAL);
+	}
+
+	@Test
+	void parametersJoinEveryCall() throws Exception {
+		ProgNode program = analyze("(func sq (x) (times x x))\n(setq a (sq 2))\n(setq b (sq 2.5))");
+
+		assertThat(value(program, 1)).isEqualTo(ValueType.UNKNOWN);
+		assertThat(value(program, 2)).isEqualTo(ValueType.UNKNOWN);
+	}
+
+	@Test
+	void reassignedVariablesLoseTheirType() throws Exception {
+		ProgNode program = analyze("(setq a 1)\n(setq b (plus a 1))\n(setq a 2.5)");
+
+		assertThat(value(program, 1)).isEqualTo(ValueType.UNKNOWN);
+	}
+
+	@Test
+	void fastPathsMatchTheGenericEvaluator() throws Exception {
+		Random random = new Random(16);
+		for (int program = 0; program < 300; program++) {
+			StringBuilder source = new StringBuilder();
+			for (int v = 0; v < 4; v++) {
+				source.append("(setq v").append(v).append(' ').append(number(random)).append(")\n");
+			}
+			for (int s = 0; s < 6; s++) {
+				String left = "v" + random.nextInt(4);
+				String right = random.nextBoolean() ? "v" + random.nextInt(4) : Long.toString(number(random));
+				if (random.nextInt(3) == 0) {
+					source.append('(').append(COMPARISONS[random.nextInt(COMPARISONS.length)]).append(' ')
+							.append(left).append(' ').append(right).append(")\n");
+				} else {
+					source.append('(').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ')
+							.append(left).append(' ').append(right).append(' ').append(number(random)).append(")\n");
+				}
+			}
+			assertThat(run(source.toString(), true)).isEqualTo(run(source.toString(), false));
+		}
+	}
+
+	private static long number(Random random) {
+		long edge = EDGES[random.nextInt(EDGES.length)];
+		return random.nextBoolean() ? edge : edge + random.nextInt(7) - 3;
+	}
+
+	private static ProgNode analyze(String source) throws Exception {
+		ASTNode ast = parse(source);
+		new FSemanter().analyze(ast);
+		return (ProgNode) ast;
+	}
+
+	private static ValueType value(ProgNode program, int index) {
+		return program.getAnnotations().valueType(((AssignmentNode) program.getStatements().get(index)).getValue());
+	}
+
+	private static ASTNode parse(String source) throws Exception {
+		Flexer lexer = new Flexer();
+		lexer.setInput(source);
+		Parser parser = new Parser();
+		parser.setTokens(lexer.tokenizeToBuffer());
+		return parser.parse();
+	}
+
+	//without analysis no node carries a type, so every operation takes the generic path
+	private static String run(String source, boolean analyzed) throws Exception {
+		ASTNode ast = parse(source);
+		if (analyzed) {
+			new FSemanter().analyze(ast);
+		}
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		PrintStream previous = System.out;
+		System.setOut(new PrintStream(output));
+		try {
+			new InterpreterVisitor(new SymbolTable(null), true).visitProgNode((ProgNode) ast);
+		} catch (RuntimeException e) {
+			System.out.println(e.getMessage());
+		} finally {
+			System.setOut(previous);
+		}
+		return output.toString();
+	}
+}